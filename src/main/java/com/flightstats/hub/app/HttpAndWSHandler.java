@@ -18,6 +18,7 @@ class HttpAndWSHandler extends HandlerCollection {
 
     private Handler httpHandler;
     private Handler wsHandler;
+    private Handler spokeHandler;
 
     void addHttpHandler(Handler httpHandler) {
         this.httpHandler = httpHandler;
@@ -29,6 +30,11 @@ class HttpAndWSHandler extends HandlerCollection {
         addHandler(wsHandler);
     }
 
+    void addSpokeHandler(Handler spokeHandler) {
+        this.spokeHandler = spokeHandler;
+        addHandler(spokeHandler);
+    }
+
     @Override
     public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
             throws IOException, ServletException {
@@ -36,6 +42,12 @@ class HttpAndWSHandler extends HandlerCollection {
             if (baseRequest.getHttpFields().contains("Upgrade", "websocket")) {
                 wsHandler.handle(target, baseRequest, request, response);
             } else {
+                if (spokeHandler != null) {
+                    spokeHandler.handle(target, baseRequest, request, response);
+                    if (baseRequest.isHandled()) {
+                        return;
+                    }
+                }
                 httpHandler.handle(target, baseRequest, request, response);
                 MetricsRequestFilter.finalStats();
             }
@@ -14,8 +14,8 @@ import com.flightstats.hub.metrics.MetricsRunner;
 import com.flightstats.hub.metrics.MetricsService;
 import com.flightstats.hub.replication.ReplicationManager;
 import com.flightstats.hub.rest.*;
-import com.flightstats.hub.spoke.FileSpokeStore;
 import com.flightstats.hub.spoke.GCRunner;
+import com.flightstats.hub.spoke.LocalSpokeStore;
 import com.flightstats.hub.spoke.SpokeClusterRegister;
 import com.flightstats.hub.spoke.SpokeFinalCheck;
 import com.flightstats.hub.spoke.SpokeReadContentDao;
@@ -119,7 +119,12 @@ public class HubBindings extends AbstractModule {
     @Singleton
     @Provides
     public static Cluster buildSpokeCluster(CuratorFramework curator, SpokeDecommissionCluster spokeDecommissionCluster) throws Exception {
-        return new CuratorCluster(curator, "/SpokeCluster", false, true, spokeDecommissionCluster);
+        CuratorCluster cluster = new CuratorCluster(curator, "/SpokeCluster", false, true, spokeDecommissionCluster);
+        if (HubProperties.getProperty("spoke.placement", "random").equals("rendezvous")) {
+            long historyMillis = TimeUnit.MINUTES.toMillis(HubProperties.getSpokeTtlMinutes(SpokeStore.WRITE) + 1);
+            cluster.setPlacement(new RendezvousPlacement(HubProperties.getProperty("spoke.write.factor", 3), historyMillis));
+        }
+        return cluster;
     }
 
     @Named("SpokeCuratorCluster")
@@ -182,15 +187,15 @@ public class HubBindings extends AbstractModule {
                 .annotatedWith(Names.named(ContentDao.READ_CACHE))
                 .to(SpokeReadContentDao.class).asEagerSingleton();
 
-        bind(FileSpokeStore.class)
+        bind(LocalSpokeStore.class)
                 .annotatedWith(Names.named(SpokeStore.WRITE.name()))
-                .toInstance(new FileSpokeStore(
+                .toInstance(LocalSpokeStore.create(
                         HubProperties.getSpokePath(SpokeStore.WRITE),
                         HubProperties.getSpokeTtlMinutes(SpokeStore.WRITE)));
 
-        bind(FileSpokeStore.class)
+        bind(LocalSpokeStore.class)
                 .annotatedWith(Names.named(SpokeStore.READ.name()))
-                .toInstance(new FileSpokeStore(
+                .toInstance(LocalSpokeStore.create(
                         HubProperties.getSpokePath(SpokeStore.READ),
                         HubProperties.getSpokeTtlMinutes(SpokeStore.READ)));
     }
@@ -1,5 +1,6 @@
 package com.flightstats.hub.app;
 
+import com.flightstats.hub.spoke.SpokePayloadHandler;
 import com.flightstats.hub.ws.*;
 import com.google.common.io.Resources;
 import org.eclipse.jetty.server.*;
@@ -53,6 +54,9 @@ public class HubJettyServer {
 
             HttpAndWSHandler handler = new HttpAndWSHandler();
             handler.addHttpHandler(ContainerFactory.createContainer(JettyHttpContainer.class, config));
+            if (HubProperties.getProperty("spoke.read.zeroCopy", true)) {
+                handler.addSpokeHandler(new SpokePayloadHandler());
+            }
 
             ServletContextHandler wsContext = new ServletContextHandler(server, "/", ServletContextHandler.SESSIONS);
             ServerContainer wsContainer = WebSocketServerContainerInitializer.configureContext(wsContext);
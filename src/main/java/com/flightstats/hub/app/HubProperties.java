@@ -137,7 +137,6 @@ public class HubProperties {
             properties.put("app.environment", "local");
             properties.put("s3.environment", "local");
             properties.put("s3.endpoint", "s3-external-1.amazonaws.com");
-            properties.put("s3.writeQueueSize", "2000");
             properties.put("dynamo.table_creation_wait_minutes", "10");
             properties.put("app.lib_path", "");
             properties.put("app.shutdown_delay_seconds", "2");
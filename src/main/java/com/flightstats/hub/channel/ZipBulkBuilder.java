@@ -16,7 +16,6 @@ import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.SortedSet;
@@ -31,15 +30,11 @@ public class ZipBulkBuilder {
 
     public static Response build(SortedSet<ContentKey> keys, String channel,
                                  ChannelService channelService, boolean descending, Consumer<Response.ResponseBuilder> headerBuilder) {
-        return write(getConsumer(keys, channel, channelService, descending, ActiveTraces.getLocal(), false), headerBuilder);
-    }
-
-    public static byte[] build(SortedSet<ContentKey> keys, String channel, ChannelService channelService, boolean descending, boolean skipLarge) {
-        return write(getConsumer(keys, channel, channelService, descending, ActiveTraces.getLocal(), skipLarge));
+        return write(getConsumer(keys, channel, channelService, descending, ActiveTraces.getLocal()), headerBuilder);
     }
 
     private static Consumer<ZipOutputStream> getConsumer(SortedSet<ContentKey> keys, String channel,
-                                                         ChannelService channelService, boolean descending, Traces traces, boolean skipLarge) {
+                                                         ChannelService channelService, boolean descending, Traces traces) {
         return (ZipOutputStream output) -> {
             ActiveTraces.setLocal(traces);
             channelService.get(StreamResults.builder()
@@ -47,7 +42,6 @@ public class ZipBulkBuilder {
                     .keys(keys)
                     .callback(content -> createZipEntry(output, content))
                     .descending(descending)
-                    .skipLarge(skipLarge)
                     .build()
             );
         };
@@ -64,12 +58,6 @@ public class ZipBulkBuilder {
         }, headerBuilder);
     }
 
-    private static byte[] write(Consumer<ZipOutputStream> consumer) {
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        handleOutput(consumer, os);
-        return os.toByteArray();
-    }
-
     private static Response write(Consumer<ZipOutputStream> consumer, Consumer<Response.ResponseBuilder> headerBuilder) {
         Traces traces = ActiveTraces.getLocal();
         Response.ResponseBuilder builder = Response.ok((StreamingOutput) os -> {
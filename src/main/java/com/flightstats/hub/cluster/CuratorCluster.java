@@ -32,6 +32,7 @@ public class CuratorCluster implements Cluster {
     private DecommissionCluster decommissionCluster;
     private final PathChildrenCache clusterCache;
     private String fullPath;
+    private RendezvousPlacement placement;
 
     @Inject
     public CuratorCluster(CuratorFramework curator, String clusterPath, boolean useName,
@@ -45,6 +46,13 @@ public class CuratorCluster implements Cluster {
         clusterCache.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
     }
 
+    /**
+     * Limits each channel to its own replicas, instead of writing to random servers and reading from all of them.
+     */
+    public void setPlacement(RendezvousPlacement placement) {
+        this.placement = placement;
+    }
+
     public void addCacheListener() {
         addListener((client, event) -> {
             logger.debug("event {} {}", event, clusterPath);
@@ -94,6 +102,13 @@ public class CuratorCluster implements Cluster {
         }
     }
 
+    public List<String> getWriteServers(String channel) {
+        if (placement == null) {
+            return getWriteServers();
+        }
+        return placement.getWriteServers(channel, decommissionCluster.filter(getAllServers()));
+    }
+
     @Override
     public Set<String> getAllServers() {
         Set<String> servers = new HashSet<>();
@@ -115,7 +130,11 @@ public class CuratorCluster implements Cluster {
 
     @Override
     public Set<String> getServers(String channel) {
-        return getAllServers();
+        Set<String> allServers = getAllServers();
+        if (placement == null) {
+            return allServers;
+        }
+        return placement.getReadServers(channel, decommissionCluster.filter(allServers), allServers);
     }
 
     public void delete() {
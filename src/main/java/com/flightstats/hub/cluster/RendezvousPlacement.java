@@ -0,0 +1,115 @@
+package com.flightstats.hub.cluster;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * RendezvousPlacement assigns each channel to a bounded set of servers using rendezvous (highest random weight) hashing,
+ * so every server independently agrees on the same replicas for a channel.
+ * <p>
+ * When the membership changes, some channels move to different servers, while their older items
+ * stay where they were written until the spoke ttl removes them.  The previous memberships are remembered for historyMillis,
+ * and the read servers for a channel include the replicas from each of them.
+ * Until this server has watched the cluster for historyMillis, it can not know the earlier memberships,
+ * so reads go to every server.
+ */
+public class RendezvousPlacement {
+
+    private static final HashFunction hashFunction = Hashing.murmur3_128();
+
+    private final int replicas;
+    private final long historyMillis;
+    private final long startMillis;
+    private final List<Membership> history = new ArrayList<>();
+
+    public RendezvousPlacement(int replicas, long historyMillis) {
+        this(replicas, historyMillis, System.currentTimeMillis());
+    }
+
+    RendezvousPlacement(int replicas, long historyMillis, long startMillis) {
+        this.replicas = replicas;
+        this.historyMillis = historyMillis;
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * @param writeServers the servers currently accepting writes
+     * @return the replicas for the channel, in order of preference
+     */
+    public List<String> getWriteServers(String channel, Collection<String> writeServers) {
+        return getWriteServers(channel, writeServers, System.currentTimeMillis());
+    }
+
+    List<String> getWriteServers(String channel, Collection<String> writeServers, long now) {
+        record(writeServers, now);
+        return rank(channel, writeServers);
+    }
+
+    /**
+     * @param writeServers the servers currently accepting writes
+     * @param allServers   every server in the cluster, including any which are decommissioning
+     * @return the servers which may hold items for the channel
+     */
+    public Set<String> getReadServers(String channel, Collection<String> writeServers, Set<String> allServers) {
+        return getReadServers(channel, writeServers, allServers, System.currentTimeMillis());
+    }
+
+    Set<String> getReadServers(String channel, Collection<String> writeServers, Set<String> allServers, long now) {
+        List<Membership> memberships = record(writeServers, now);
+        if (now - startMillis < historyMillis) {
+            return allServers;
+        }
+        Set<String> servers = new HashSet<>();
+        for (Membership membership : memberships) {
+            servers.addAll(rank(channel, membership.servers));
+        }
+        servers.retainAll(allServers);
+        return servers;
+    }
+
+    /**
+     * Records the current membership, and drops any which ended more than historyMillis ago.
+     *
+     * @return the memberships which may still hold items
+     */
+    private synchronized List<Membership> record(Collection<String> servers, long now) {
+        Set<String> current = new HashSet<>(servers);
+        if (current.isEmpty()) {
+            return new ArrayList<>(history);
+        }
+        Membership latest = history.isEmpty() ? null : history.get(history.size() - 1);
+        if (latest == null || !latest.servers.equals(current)) {
+            if (latest != null) {
+                latest.endedMillis = now;
+            }
+            history.add(new Membership(current));
+        }
+        history.removeIf(membership -> membership.endedMillis < now - historyMillis);
+        return new ArrayList<>(history);
+    }
+
+    private List<String> rank(String channel, Collection<String> servers) {
+        List<String> ranked = new ArrayList<>(servers);
+        Map<String, Long> weights = new HashMap<>();
+        for (String server : ranked) {
+            weights.put(server, hashFunction.hashString(channel + "|" + server, StandardCharsets.UTF_8).asLong());
+        }
+        ranked.sort(Comparator.comparing((String server) -> weights.get(server)).reversed().thenComparing(server -> server));
+        if (ranked.size() <= replicas) {
+            return ranked;
+        }
+        return new ArrayList<>(ranked.subList(0, replicas));
+    }
+
+    private static class Membership {
+        private final Set<String> servers;
+        private long endedMillis = Long.MAX_VALUE;
+
+        Membership(Set<String> servers) {
+            this.servers = servers;
+        }
+    }
+}
@@ -16,6 +16,7 @@ import com.flightstats.hub.replication.ReplicationManager;
 import com.flightstats.hub.time.TimeService;
 import com.flightstats.hub.util.TimeUtil;
 import com.flightstats.hub.webhook.TagWebhook;
+import com.flightstats.hub.webhook.WebhookNotifier;
 import com.google.common.base.Optional;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -55,6 +56,8 @@ public class ChannelService {
     private TimeService timeService;
     @Inject
     private MetricsService metricsService;
+    @Inject
+    private WebhookNotifier webhookNotifier;
 
     public boolean channelExists(String channelName) {
         return channelConfigDao.exists(channelName);
@@ -107,6 +110,7 @@ public class ChannelService {
         long start = System.currentTimeMillis();
         ContentKey contentKey = insertInternal(channelName, content);
         metricsService.insert(channelName, start, Insert.single, 1, content.getSize());
+        webhookNotifier.notify(channelName);
         return contentKey;
     }
 
@@ -116,6 +120,7 @@ public class ChannelService {
             Traces traces = ActiveTraces.getLocal();
             traces.add("ContentService.insert");
             try {
+                content.setCompression(Compression.fromName(channelConfig.getCompression()));
                 content.packageStream();
                 checkZeroBytes(content, channelConfig);
                 traces.add("ContentService.insert marshalled");
@@ -150,6 +155,7 @@ public class ChannelService {
             throw new InvalidRequestException(msg);
         }
         boolean insert = inFlightService.inFlight(() -> {
+            content.setCompression(Compression.fromName(channelConfig.getCompression()));
             content.packageStream();
             checkZeroBytes(content, channelConfig);
             return contentService.historicalInsert(normalizedChannelName, content);
@@ -175,9 +181,12 @@ public class ChannelService {
         Collection<ContentKey> contentKeys = inFlightService.inFlight(() -> {
             MultiPartParser multiPartParser = new MultiPartParser(bulkContent);
             multiPartParser.parse();
+            Compression compression = Compression.fromName(getCachedChannelConfig(channel).getCompression());
+            bulkContent.getItems().forEach(item -> item.setCompression(compression));
             return contentService.insert(bulkContent);
         });
         metricsService.insert(channel, start, Insert.bulk, bulkContent.getItems().size(), bulkContent.getSize());
+        webhookNotifier.notify(channel);
         return contentKeys;
     }
 
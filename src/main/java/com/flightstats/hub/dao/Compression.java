@@ -0,0 +1,110 @@
+package com.flightstats.hub.dao;
+
+import com.flightstats.hub.app.HubProperties;
+import org.apache.commons.lang3.StringUtils;
+import org.iq80.snappy.SnappyFramedInputStream;
+import org.iq80.snappy.SnappyFramedOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression is the codec ContentMarshaller uses for an item's payload.
+ * ZIP is the original format, with the meta data and payload as zip entries at the best compression.
+ * The others use the binary item format, and differ only in how the payload is compressed.
+ */
+public enum Compression {
+    ZIP(0),
+    NONE(1),
+    DEFLATE(2),
+    SNAPPY(3);
+
+    private final byte id;
+
+    Compression(int id) {
+        this.id = (byte) id;
+    }
+
+    byte getId() {
+        return id;
+    }
+
+    static Compression fromId(byte id) throws StreamCorruptedException {
+        for (Compression compression : values()) {
+            if (compression.id == id && compression != ZIP) {
+                return compression;
+            }
+        }
+        throw new StreamCorruptedException("unknown compression " + id);
+    }
+
+    public static boolean isValid(String name) {
+        if (StringUtils.isBlank(name)) {
+            return true;
+        }
+        for (Compression compression : values()) {
+            if (compression.name().equals(StringUtils.upperCase(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the named compression, or the hub's default if the name is blank.
+     */
+    public static Compression fromName(String name) {
+        if (StringUtils.isBlank(name)) {
+            name = HubProperties.getProperty("content.compression", ZIP.name());
+        }
+        return valueOf(StringUtils.upperCase(name));
+    }
+
+    OutputStream compress(OutputStream output) throws IOException {
+        switch (this) {
+            case DEFLATE:
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                return new DeflaterOutputStream(output, deflater) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            deflater.end();
+                        }
+                    }
+                };
+            case SNAPPY:
+                return new SnappyFramedOutputStream(output);
+            default:
+                return output;
+        }
+    }
+
+    InputStream decompress(InputStream input) throws IOException {
+        switch (this) {
+            case DEFLATE:
+                Inflater inflater = new Inflater();
+                return new InflaterInputStream(input, inflater) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            inflater.end();
+                        }
+                    }
+                };
+            case SNAPPY:
+                return new SnappyFramedInputStream(input, true);
+            default:
+                return input;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.flightstats.hub.dao;
 
 import com.flightstats.hub.metrics.Traces;
 import com.flightstats.hub.model.*;
+import com.flightstats.hub.util.TimeUtil;
 import com.google.common.base.Optional;
+import org.joda.time.DateTime;
 
 import java.io.IOException;
 import java.util.Collection;
@@ -42,6 +44,31 @@ public interface ContentDao {
         throw new UnsupportedOperationException("writeBatch is not supported");
     }
 
+    /**
+     * Writes a batch from the items itemSource hands to its callback, without holding the whole batch.
+     */
+    default void writeBatch(String channel, ContentPath path, Collection<ContentKey> keys, Consumer<Consumer<Content>> itemSource) {
+        throw new UnsupportedOperationException("writeBatch is not supported");
+    }
+
+    /**
+     * @return the items as they are stored, in the ContentMarshaller format, which may not include every key
+     */
+    default Map<ContentKey, byte[]> readMarshalled(String channelName, Collection<ContentKey> keys) {
+        throw new UnsupportedOperationException("readMarshalled is not supported");
+    }
+
+    /**
+     * Writes an item which is already in the ContentMarshaller format, without decoding the payload.
+     */
+    default void insertMarshalled(String channelName, ContentKey key, byte[] bytes) throws IOException {
+        throw new UnsupportedOperationException("insertMarshalled is not supported");
+    }
+
+    default void writeRollup(String channel, DateTime start, TimeUtil.Unit unit) {
+        throw new UnsupportedOperationException("writeRollup is not supported");
+    }
+
     default Map<ContentKey, Content> readBatch(String channelName, ContentKey key) throws IOException {
         throw new UnsupportedOperationException("readBatch is not supported");
     }
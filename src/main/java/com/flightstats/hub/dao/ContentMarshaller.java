@@ -3,25 +3,69 @@ package com.flightstats.hub.dao;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.flightstats.hub.app.HubProperties;
-import com.flightstats.hub.exception.ContentTooLargeException;
 import com.flightstats.hub.model.Content;
 import com.flightstats.hub.model.ContentKey;
 import com.google.common.io.ByteStreams;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
+/**
+ * ContentMarshaller converts an item to and from the bytes stored in Spoke and S3.
+ * <p>
+ * Items are written in the zip format, or in the binary format of
+ * [magic (4 bytes)][version (1 byte)][compression (1 byte)][size (8 bytes)]
+ * [content type length (2 bytes, -1 for none)][content type (utf-8)][payload, compressed with the compression]
+ * depending on the item's Compression.  Both formats are always read.
+ */
 public class ContentMarshaller {
 
+    static final int MAGIC = 0x48554249;
+    static final byte VERSION = 1;
+    private static final int ZIP_MAGIC = 0x504b0304;
+    private static final int SIZE_OFFSET = 6;
+
     private static final ObjectMapper mapper = new ObjectMapper();
 
     public static byte[] toBytes(Content content) throws IOException {
+        Compression compression = content.getCompression();
+        if (compression == null) {
+            compression = Compression.fromName(null);
+        }
+        if (compression == Compression.ZIP) {
+            return toZipBytes(content);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(baos);
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeByte(compression.getId());
+        output.writeLong(0);
+        if (content.getContentType().isPresent()) {
+            byte[] contentType = content.getContentType().get().getBytes(StandardCharsets.UTF_8);
+            if (contentType.length > Short.MAX_VALUE) {
+                throw new IOException("content type is too long " + contentType.length);
+            }
+            output.writeShort(contentType.length);
+            output.write(contentType);
+        } else {
+            output.writeShort(-1);
+        }
+        OutputStream payload = compression.compress(output);
+        long bytesCopied = ByteStreams.copy(content.getStream(), payload);
+        payload.close();
+        content.setSize(bytesCopied);
+        byte[] bytes = baos.toByteArray();
+        ByteBuffer.wrap(bytes).putLong(SIZE_OFFSET, bytesCopied);
+        return bytes;
+    }
+
+    private static byte[] toZipBytes(Content content) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ZipOutputStream zipOut = new ZipOutputStream(baos);
         zipOut.setLevel(Deflater.BEST_COMPRESSION);
@@ -45,10 +89,53 @@ public class ContentMarshaller {
     }
 
     public static Content toContent(byte[] read, ContentKey key) throws IOException {
+        if (read.length >= 4 && ByteBuffer.wrap(read).getInt() == ZIP_MAGIC) {
+            return toZipContent(read, key);
+        }
+        return toContent(new ByteArrayInputStream(read), key);
+    }
+
+    /**
+     * Reads the header from the input, and returns the item with a stream which decompresses the payload as it is read.
+     * Items in the zip format are buffered, since the size is at the end.
+     */
+    public static Content toContent(InputStream inputStream, ContentKey key) throws IOException {
+        InputStream input = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        input.mark(4);
+        DataInputStream dataInput = new DataInputStream(input);
+        int magic = dataInput.readInt();
+        if (magic == ZIP_MAGIC) {
+            input.reset();
+            return toZipContent(ByteStreams.toByteArray(input), key);
+        }
+        if (magic != MAGIC) {
+            throw new StreamCorruptedException("unexpected item header " + Integer.toHexString(magic) + " for " + key);
+        }
+        byte version = dataInput.readByte();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("unsupported item version " + version + " for " + key);
+        }
+        Compression compression = Compression.fromId(dataInput.readByte());
+        Content.Builder builder = Content.builder()
+                .withContentKey(key)
+                .withCompression(compression)
+                .withSize(dataInput.readLong());
+        short typeLength = dataInput.readShort();
+        if (typeLength >= 0) {
+            byte[] contentType = new byte[typeLength];
+            dataInput.readFully(contentType);
+            builder.withContentType(new String(contentType, StandardCharsets.UTF_8));
+        }
+        return builder.withStream(compression.decompress(input)).build();
+    }
+
+    private static Content toZipContent(byte[] read, ContentKey key) throws IOException {
         ZipInputStream zipStream = new ZipInputStream(new ByteArrayInputStream(read));
         zipStream.getNextEntry();
         byte[] bytes = ByteStreams.toByteArray(zipStream);
-        Content.Builder builder = Content.builder().withContentKey(key);
+        Content.Builder builder = Content.builder()
+                .withContentKey(key)
+                .withCompression(Compression.ZIP);
         setMetaData(new String(bytes), builder);
         zipStream.getNextEntry();
         String comment = ZipComment.getZipCommentFromBuffer(read);
@@ -0,0 +1,159 @@
+package com.flightstats.hub.dao;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TtlDeleter removes expired data from the time bucketed layout used by Spoke,
+ * channel/yyyy/MM/dd/HH/mm, without forking external processes.
+ * Deletes are limited to deletesPerSecond, and the files and bytes removed are counted.
+ */
+public class TtlDeleter {
+    private final static Logger logger = LoggerFactory.getLogger(TtlDeleter.class);
+    private static final int MINUTE_LEVEL = 4;
+
+    private final RateLimiter rateLimiter;
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public TtlDeleter(double deletesPerSecond) {
+        rateLimiter = RateLimiter.create(deletesPerSecond);
+    }
+
+    /**
+     * Deletes every time bucket under the channel directory which ends on or before the limit.
+     * Only the buckets which straddle the limit are listed, so the cost is proportional to the depth of the layout.
+     */
+    public void deleteBefore(File channelDir, DateTime limit) {
+        deleteBefore(channelDir, new int[]{0, 1, 1, 0, 0}, 0, limit);
+    }
+
+    private void deleteBefore(File directory, int[] fields, int level, DateTime limit) {
+        String[] names = directory.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            int value;
+            try {
+                value = Integer.parseInt(name);
+            } catch (NumberFormatException e) {
+                logger.trace("skipping {} {}", directory, name);
+                continue;
+            }
+            int[] current = fields.clone();
+            current[level] = value;
+            DateTime start;
+            try {
+                start = new DateTime(current[0], current[1], current[2], current[3], current[4], DateTimeZone.UTC);
+            } catch (IllegalArgumentException e) {
+                logger.trace("skipping {} {}", directory, name);
+                continue;
+            }
+            File child = new File(directory, name);
+            if (!bucketEnd(start, level).isAfter(limit)) {
+                deleteAll(child);
+            } else if (level < MINUTE_LEVEL && start.isBefore(limit)) {
+                deleteBefore(child, current, level + 1, limit);
+            }
+        }
+    }
+
+    private static DateTime bucketEnd(DateTime start, int level) {
+        switch (level) {
+            case 0:
+                return start.plusYears(1);
+            case 1:
+                return start.plusMonths(1);
+            case 2:
+                return start.plusDays(1);
+            case 3:
+                return start.plusHours(1);
+            default:
+                return start.plusMinutes(1);
+        }
+    }
+
+    /**
+     * Deletes a file or directory tree.
+     */
+    public void deleteAll(File path) {
+        walk(path, Long.MAX_VALUE);
+    }
+
+    /**
+     * Deletes files last modified before the cutoff, and any directories left empty which were also last modified before it.
+     */
+    public void deleteModifiedBefore(File path, long cutoffMillis) {
+        walk(path, cutoffMillis);
+    }
+
+    private void walk(File path, long cutoffMillis) {
+        if (!path.exists()) {
+            return;
+        }
+        try {
+            Files.walkFileTree(path.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.lastModifiedTime().toMillis() < cutoffMillis) {
+                        if (delete(file)) {
+                            files.incrementAndGet();
+                            bytes.addAndGet(attrs.size());
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    logger.debug("unable to visit {} {}", file, e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    if (dir.toFile().lastModified() < cutoffMillis) {
+                        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                            if (!stream.iterator().hasNext()) {
+                                delete(dir);
+                            }
+                        } catch (IOException ex) {
+                            logger.debug("unable to list {} {}", dir, ex.getMessage());
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("unable to delete " + path, e);
+        }
+    }
+
+    private boolean delete(Path path) {
+        rateLimiter.acquire();
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("unable to delete {} {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    public long getFiles() {
+        return files.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+}
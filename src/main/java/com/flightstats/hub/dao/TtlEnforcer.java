@@ -1,7 +1,8 @@
 package com.flightstats.hub.dao;
 
+import com.flightstats.hub.app.HubProperties;
 import com.flightstats.hub.model.ChannelConfig;
-import com.flightstats.hub.util.Commander;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,13 +10,26 @@ import java.io.File;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.function.Consumer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 public class TtlEnforcer {
     private final static Logger logger = LoggerFactory.getLogger(TtlEnforcer.class);
 
-    public static void enforce(String path, ChannelService channelService,
-                               Consumer<ChannelConfig> channelConsumer) {
+    /**
+     * Calls channelConsumer for every channel, using at most spoke.ttl.threads threads,
+     * and removes any directories under path without a channel.
+     *
+     * @return the TtlDeleter shared by this pass, with the totals reclaimed
+     */
+    public static TtlDeleter enforce(String path, ChannelService channelService,
+                                     BiConsumer<ChannelConfig, TtlDeleter> channelConsumer) {
+        TtlDeleter deleter = new TtlDeleter(HubProperties.getProperty("spoke.ttl.deletesPerSecond", 2000));
+        int threads = HubProperties.getProperty("spoke.ttl.threads", 2);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("TtlEnforcer-%d").build());
         try {
             File spokeRoot = new File(path);
             Set<String> dirSet = new HashSet<>(Arrays.asList(spokeRoot.list()));
@@ -23,17 +37,30 @@ public class TtlEnforcer {
             Set<String> channelSet = new HashSet<>();
             for (ChannelConfig channel : channels) {
                 channelSet.add(channel.getDisplayName());
-                channelConsumer.accept(channel);
+                executorService.submit(() -> {
+                    try {
+                        channelConsumer.accept(channel, deleter);
+                    } catch (Exception e) {
+                        logger.warn("unable to enforce ttl " + channel.getDisplayName(), e);
+                    }
+                });
             }
             dirSet.removeAll(channelSet);
             dirSet.remove("lost+found");
             for (String dir : dirSet) {
                 String dirPath = path + "/" + dir;
                 logger.info("removing dir without channel {}", dirPath);
-                Commander.run(new String[]{"rm", "-rf", dirPath}, 1);
+                executorService.submit(() -> deleter.deleteAll(new File(dirPath)));
+            }
+            executorService.shutdown();
+            if (!executorService.awaitTermination(10, TimeUnit.MINUTES)) {
+                logger.warn("ttl enforcement did not complete {}", path);
             }
         } catch (Exception e) {
             logger.warn("unble to run " + path, e);
+        } finally {
+            executorService.shutdownNow();
         }
+        return deleter;
     }
 }
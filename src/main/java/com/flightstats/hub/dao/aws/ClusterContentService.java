@@ -42,7 +42,9 @@ public class ClusterContentService implements ContentService {
     private static final String CHANNEL_LATEST_UPDATED = "/ChannelLatestUpdated/";
     private static final long largePayload = HubProperties.getLargePayload();
     private final boolean dropSomeWrites = HubProperties.getProperty("s3.dropSomeWrites", false);
+    private final boolean batchRangedReads = HubProperties.getProperty("s3.batchRangedReads", true);
     private static final int queryMergeMaxWaitMinutes = HubProperties.getProperty("query.merge.max.wait.minutes", 2);
+    private static final int spokeBulkReadKeys = HubProperties.getProperty("spoke.bulkReadKeys", 100);
 
     @Inject
     @Named(ContentDao.WRITE_CACHE)
@@ -156,6 +158,15 @@ public class ClusterContentService implements ContentService {
     }
 
     private Content getFromS3BatchAndStoreInReadCache(String channelName, ContentKey key) {
+        if (batchRangedReads) {
+            Content content = s3BatchContentDao.get(channelName, key);
+            if (content == null) {
+                return null;
+            }
+            Content copy = Content.copy(content);
+            storeBatchInReadCache(channelName, Collections.singletonMap(key, content));
+            return copy;
+        }
         try {
             Map<ContentKey, Content> map = s3BatchContentDao.readBatch(channelName, key);
             Content content = map.get(key);
@@ -213,8 +224,10 @@ public class ClusterContentService implements ContentService {
         ChannelConfig channel = channelService.getCachedChannelConfig(channelName);
         DateTime spokeTtlTime = getSpokeTtlTime(channelName);
         for (MinutePath minutePath : minutePaths) {
-            if (minutePath.getTime().isAfter(spokeTtlTime)
-                    || channel.isSingle()) {
+            if (minutePath.getTime().isAfter(spokeTtlTime)) {
+                getSpokeValues(channelName, callback, minutePath, streamResults.isDescending(), streamResults.isSkipLarge(),
+                        streamResults.isBulkOnly());
+            } else if (channel.isSingle()) {
                 getValues(channelName, streamResults.getCallback(), minutePath, streamResults.isDescending(), streamResults.isSkipLarge());
             } else {
                 if (!s3BatchContentDao.streamMinute(channelName, minutePath, streamResults.isDescending(), callback)) {
@@ -224,6 +237,46 @@ public class ClusterContentService implements ContentService {
         }
     }
 
+    /**
+     * Reads the keys from the Spoke write cache with one bulk read per spoke.bulkReadKeys, instead of one request per key.
+     * Keys missing from the bulk read fall back to the normal get, unless bulkOnly is set, in which case they are left out.
+     */
+    private void getSpokeValues(String channelName, Consumer<Content> callback, ContentPathKeys contentPathKeys, boolean descending,
+                                boolean skipLarge, boolean bulkOnly) {
+        List<ContentKey> keys = new ArrayList<>(contentPathKeys.getKeys());
+        if (descending) {
+            Collections.reverse(keys);
+        }
+        for (int start = 0; start < keys.size(); start += spokeBulkReadKeys) {
+            List<ContentKey> group = keys.subList(start, Math.min(keys.size(), start + spokeBulkReadKeys));
+            Map<ContentKey, byte[]> marshalled = Collections.emptyMap();
+            if (group.size() > 1 || bulkOnly) {
+                try {
+                    marshalled = spokeWriteContentDao.readMarshalled(channelName, group);
+                } catch (Exception e) {
+                    logger.warn("unable to bulk read " + channelName, e);
+                }
+            }
+            for (ContentKey contentKey : group) {
+                Optional<Content> contentOptional = Optional.absent();
+                byte[] bytes = marshalled.get(contentKey);
+                if (bytes != null) {
+                    try {
+                        contentOptional = checkForLargeIndex(channelName, ContentMarshaller.toContent(bytes, contentKey), skipLarge);
+                    } catch (IOException e) {
+                        logger.warn("unable to read " + channelName + " " + contentKey, e);
+                    }
+                }
+                if (!contentOptional.isPresent() && !bulkOnly) {
+                    contentOptional = get(channelName, contentKey, false, skipLarge);
+                }
+                if (contentOptional.isPresent()) {
+                    callback.accept(contentOptional.get());
+                }
+            }
+        }
+    }
+
     private void getValues(String channelName, Consumer<Content> callback, ContentPathKeys contentPathKeys, boolean descending, boolean skipLarge) {
         List<ContentKey> keys = new ArrayList<>(contentPathKeys.getKeys());
         if (descending) {
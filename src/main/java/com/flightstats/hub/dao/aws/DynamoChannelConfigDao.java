@@ -57,6 +57,9 @@ public class DynamoChannelConfigDao implements Dao<ChannelConfig> {
         if (StringUtils.isNotEmpty(config.getStorage())) {
             item.put("storage", new AttributeValue(config.getStorage()));
         }
+        if (StringUtils.isNotEmpty(config.getCompression())) {
+            item.put("compression", new AttributeValue(config.getCompression()));
+        }
         PutItemRequest putItemRequest = new PutItemRequest()
                 .withTableName(getTableName())
                 .withItem(item);
@@ -129,6 +132,9 @@ public class DynamoChannelConfigDao implements Dao<ChannelConfig> {
         if (item.containsKey("storage")) {
             builder.storage(item.get("storage").getS());
         }
+        if (item.containsKey("compression")) {
+            builder.compression(item.get("compression").getS());
+        }
         if (item.containsKey("protect")) {
             builder.protect(item.get("protect").getBOOL());
         }
@@ -46,6 +46,8 @@ public class DynamoWebhookDao implements Dao<Webhook> {
         item.put("maxWaitMinutes", new AttributeValue().withN(String.valueOf(webhook.getMaxWaitMinutes())));
         item.put("callbackTimeoutSeconds", new AttributeValue().withN(String.valueOf(webhook.getCallbackTimeoutSeconds())));
         item.put("maxAttempts", new AttributeValue().withN(String.valueOf(webhook.getMaxAttempts())));
+        item.put("maxItems", new AttributeValue().withN(String.valueOf(webhook.getMaxItems())));
+        item.put("maxInlineBytes", new AttributeValue().withN(String.valueOf(webhook.getMaxInlineBytes())));
         if (!StringUtils.isEmpty(webhook.getErrorChannelUrl())) {
             item.put("errorChannelUrl", new AttributeValue(webhook.getErrorChannelUrl()));
         }
@@ -114,6 +116,12 @@ public class DynamoWebhookDao implements Dao<Webhook> {
         if (item.containsKey("errorChannelUrl")) {
             builder.errorChannelUrl(item.get("errorChannelUrl").getS());
         }
+        if (item.containsKey("maxItems")) {
+            builder.maxItems(Integer.valueOf(item.get("maxItems").getN()));
+        }
+        if (item.containsKey("maxInlineBytes")) {
+            builder.maxInlineBytes(Integer.valueOf(item.get("maxInlineBytes").getN()));
+        }
         return builder.build().withDefaults();
     }
 
@@ -0,0 +1,130 @@
+package com.flightstats.hub.dao.aws;
+
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.flightstats.hub.util.RuntimeInterruptedException;
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * MultipartDownloadStream reads an S3 object which was written with a multipart upload, one part per GET.
+ * The first part is streamed from the response which the caller already has, and up to readAhead of the following
+ * parts are fetched in parallel, so the parts line up with the original uploads and are returned in order.
+ */
+class MultipartDownloadStream extends InputStream {
+
+    private final HubS3Client s3Client;
+    private final String bucketName;
+    private final String key;
+    private final int partCount;
+    private final int readAhead;
+    private final ExecutorService executorService;
+    private final Deque<Future<byte[]>> parts = new ArrayDeque<>();
+    private final S3ObjectInputStream firstPart;
+    private InputStream current;
+    private int nextPart = 2;
+    private boolean closed;
+
+    MultipartDownloadStream(HubS3Client s3Client, GetObjectRequest request, S3Object firstPart,
+                            int readAhead, ExecutorService executorService) {
+        this.s3Client = s3Client;
+        this.bucketName = request.getBucketName();
+        this.key = request.getKey();
+        Integer count = firstPart.getObjectMetadata().getPartCount();
+        this.partCount = count == null ? 1 : count;
+        this.readAhead = readAhead;
+        this.executorService = executorService;
+        this.firstPart = firstPart.getObjectContent();
+        current = this.firstPart;
+        fill();
+    }
+
+    /**
+     * @return the request for the first part, which returns the whole object if it was not a multipart upload
+     */
+    static GetObjectRequest firstPart(String bucketName, String key) {
+        return new GetObjectRequest(bucketName, key).withPartNumber(1);
+    }
+
+    private void fill() {
+        while (parts.size() < readAhead && nextPart <= partCount) {
+            GetObjectRequest request = new GetObjectRequest(bucketName, key).withPartNumber(nextPart++);
+            parts.add(executorService.submit(() -> {
+                try (S3Object object = s3Client.getObject(request)) {
+                    return ByteStreams.toByteArray(object.getObjectContent());
+                }
+            }));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (current != null) {
+            int read = current.read();
+            if (read != -1) {
+                return read;
+            }
+            nextStream();
+        }
+        return -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (current != null) {
+            int read = current.read(bytes, offset, length);
+            if (read != -1) {
+                return read;
+            }
+            nextStream();
+        }
+        return -1;
+    }
+
+    private void nextStream() throws IOException {
+        if (current == firstPart) {
+            firstPart.close();
+        }
+        Future<byte[]> part = parts.poll();
+        if (part == null) {
+            current = null;
+            return;
+        }
+        try {
+            current = new ByteArrayInputStream(part.get());
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        } catch (ExecutionException e) {
+            throw new IOException("unable to read part of " + key, e.getCause());
+        }
+        fill();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Future<byte[]> part : parts) {
+            part.cancel(false);
+        }
+        parts.clear();
+        if (current == firstPart) {
+            firstPart.abort();
+        }
+        current = null;
+    }
+}
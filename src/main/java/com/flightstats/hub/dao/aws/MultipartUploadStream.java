@@ -0,0 +1,143 @@
+package com.flightstats.hub.dao.aws;
+
+import com.amazonaws.services.s3.model.*;
+import com.flightstats.hub.util.RuntimeInterruptedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * MultipartUploadStream writes an S3 object as it is streamed, with a multipart upload of partSize parts.
+ * At most two parts are held, the one being filled and the one being uploaded.
+ * An object which fits in one part is written with a single put when the stream is closed.
+ * If the stream can not be closed, abort must be called to discard any uploaded parts.
+ */
+class MultipartUploadStream extends OutputStream {
+
+    private static final int INITIAL_SIZE = 64 * 1024;
+
+    private final HubS3Client s3Client;
+    private final String bucketName;
+    private final String key;
+    private final ObjectMetadata metadata;
+    private final int partSize;
+    private final ExecutorService executorService;
+    private final List<PartETag> partETags = new ArrayList<>();
+    private byte[] buffer;
+    private byte[] spare;
+    private int position;
+    private int partNumber;
+    private String uploadId;
+    private Future<PartETag> uploading;
+    private boolean closed;
+
+    MultipartUploadStream(HubS3Client s3Client, String bucketName, String key, ObjectMetadata metadata,
+                          int partSize, ExecutorService executorService) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.metadata = metadata;
+        this.partSize = partSize;
+        this.executorService = executorService;
+        buffer = new byte[Math.min(partSize, INITIAL_SIZE)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureCapacity();
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureCapacity();
+            int copied = Math.min(length, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, copied);
+            position += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    private void ensureCapacity() throws IOException {
+        if (position < buffer.length) {
+            return;
+        }
+        if (buffer.length < partSize) {
+            buffer = Arrays.copyOf(buffer, Math.min(partSize, buffer.length * 2));
+        } else {
+            uploadPart();
+        }
+    }
+
+    private void uploadPart() throws IOException {
+        if (uploadId == null) {
+            uploadId = s3Client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, key, metadata)).getUploadId();
+        }
+        waitForUpload();
+        byte[] bytes = buffer;
+        int length = position;
+        UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(bucketName)
+                .withKey(key)
+                .withUploadId(uploadId)
+                .withPartNumber(++partNumber)
+                .withInputStream(new ByteArrayInputStream(bytes, 0, length))
+                .withPartSize(length);
+        uploading = executorService.submit(() -> s3Client.uploadPart(request).getPartETag());
+        buffer = spare == null ? new byte[partSize] : spare;
+        spare = bytes;
+        position = 0;
+    }
+
+    private void waitForUpload() throws IOException {
+        if (uploading == null) {
+            return;
+        }
+        try {
+            partETags.add(uploading.get());
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        } catch (ExecutionException e) {
+            throw new IOException("unable to upload part of " + key, e.getCause());
+        } finally {
+            uploading = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (uploadId == null) {
+            metadata.setContentLength(position);
+            s3Client.putObject(new PutObjectRequest(bucketName, key, new ByteArrayInputStream(buffer, 0, position), metadata));
+            return;
+        }
+        if (position > 0) {
+            uploadPart();
+        }
+        waitForUpload();
+        s3Client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+    }
+
+    void abort() {
+        closed = true;
+        if (uploading != null) {
+            uploading.cancel(false);
+        }
+        if (uploadId != null) {
+            s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.flightstats.hub.dao.aws;
+
+import com.flightstats.hub.util.RuntimeInterruptedException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * OrderedFetcher runs blocking fetches, such as S3 GETs, with at most parallelism of them in flight for each call,
+ * and hands the results to the consumer in the order of the items.
+ * Once the consumer returns false, the remaining fetches are cancelled.
+ * The consumer runs on the calling thread, so it may call fetch again.
+ */
+class OrderedFetcher {
+
+    private final int parallelism;
+    private final ExecutorService executorService;
+
+    OrderedFetcher(int parallelism, ExecutorService executorService) {
+        this.parallelism = Math.max(1, parallelism);
+        this.executorService = executorService;
+    }
+
+    <T, R> void fetch(List<T> items, Function<T, R> fetcher, BiPredicate<T, R> consumer) {
+        Deque<Future<R>> pending = new ArrayDeque<>();
+        int submitted = 0;
+        try {
+            for (T item : items) {
+                while (submitted < items.size() && pending.size() < parallelism) {
+                    T next = items.get(submitted++);
+                    pending.add(executorService.submit(() -> fetcher.apply(next)));
+                }
+                if (!consumer.test(item, get(pending.remove()))) {
+                    return;
+                }
+            }
+        } finally {
+            for (Future<R> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private <R> R get(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
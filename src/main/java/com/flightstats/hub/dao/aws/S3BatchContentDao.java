@@ -1,11 +1,8 @@
 package com.flightstats.hub.dao.aws;
 
 import com.amazonaws.services.s3.model.*;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.flightstats.hub.app.HubProperties;
+import com.flightstats.hub.channel.ZipBulkBuilder;
 import com.flightstats.hub.dao.ContentDao;
 import com.flightstats.hub.dao.ContentMarshaller;
 import com.flightstats.hub.metrics.ActiveTraces;
@@ -14,7 +11,12 @@ import com.flightstats.hub.metrics.Traces;
 import com.flightstats.hub.model.*;
 import com.flightstats.hub.util.TimeUtil;
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.commons.lang3.StringUtils;
@@ -26,14 +28,23 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 @Singleton
 public class S3BatchContentDao implements ContentDao {
@@ -41,10 +52,28 @@ public class S3BatchContentDao implements ContentDao {
     private final static Logger logger = LoggerFactory.getLogger(S3BatchContentDao.class);
     private static final String BATCH_INDEX = "Batch/index/";
     private static final String BATCH_ITEMS = "Batch/items/";
-    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String BATCH_HOURS = "Batch/hours/";
+    private static final String BATCH_DAYS = "Batch/days/";
 
     private final boolean useEncrypted = HubProperties.isAppEncrypted();
     private final int s3MaxQueryItems = HubProperties.getProperty("s3.maxQueryItems", 1000);
+    private final boolean binaryIndex = HubProperties.getProperty("s3.binaryBatchIndex", false);
+    private final boolean rangedReads = HubProperties.getProperty("s3.batchRangedReads", true);
+    //the locations of the entries in recently read batches, by channel and minute
+    private final Cache<String, Map<String, long[]>> batchDirectories = CacheBuilder.newBuilder()
+            .maximumSize(HubProperties.getProperty("s3.batchDirectoryCacheSize", 1000))
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+    private final long batchWindowBytes = HubProperties.getProperty("s3.batchWindowBytes", 4 * 1024 * 1024);
+    private final int batchPartBytes = HubProperties.getProperty("s3.batchPartMB", 8) * 1024 * 1024;
+    private final ExecutorService uploadThreadPool = Executors.newFixedThreadPool(HubProperties.getProperty("s3.batchUploadThreads", 16),
+            new ThreadFactoryBuilder().setNameFormat("S3BatchUpload-%d").build());
+    private final ExecutorService queryThreadPool = Executors.newFixedThreadPool(HubProperties.getProperty("s3.batchQueryThreads", 32),
+            new ThreadFactoryBuilder().setNameFormat("S3BatchQuery-%d").build());
+    //reads the indexes and rollups of hour and longer queries, with at most s3.batchQueryParallelism in flight per query
+    private final OrderedFetcher fetcher = new OrderedFetcher(HubProperties.getProperty("s3.batchQueryParallelism", 8), queryThreadPool);
+    //reads the windows of descending minutes, so at most two windows are held per stream
+    private final OrderedFetcher streamFetcher = new OrderedFetcher(2, queryThreadPool);
     @Inject
     private HubS3Client s3Client;
     @Inject
@@ -77,9 +106,105 @@ public class S3BatchContentDao implements ContentDao {
 
     private Content getS3Object(String channel, ContentKey key) throws IOException {
         logger.trace("S3BatchContentDao.getS3Object {} {}", channel, key);
+        if (rangedReads) {
+            MinutePath minutePath = new MinutePath(key.getTime());
+            Map<String, long[]> directory = getDirectory(channel, minutePath);
+            if (directory == null) {
+                return null;
+            }
+            if (!directory.isEmpty()) {
+                long[] location = directory.get(key.toUrl());
+                if (location != null) {
+                    try {
+                        return getEntry(channel, minutePath, key, location);
+                    } catch (IOException e) {
+                        logger.info("unable to read the entry for {} {} {}", channel, key, e.getMessage());
+                        batchDirectories.invalidate(channel + "/" + minutePath.toUrl());
+                    }
+                }
+            }
+        }
         return readBatch(channel, key).get(key);
     }
 
+    /**
+     * @return the locations of the entries in the minute's batch, an empty map if they can not be read,
+     * or null if the batch does not exist
+     */
+    private Map<String, long[]> getDirectory(String channel, MinutePath minutePath) {
+        try {
+            return batchDirectories.get(channel + "/" + minutePath.toUrl(), () -> readDirectory(channel, minutePath));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof AmazonS3Exception && ((AmazonS3Exception) e.getCause()).getStatusCode() == 404) {
+                return null;
+            }
+            logger.info("unable to read the batch directory for {} {} {}", channel, minutePath, e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Reads one item's zip entry with a ranged GET.
+     */
+    private Content getEntry(String channel, MinutePath minutePath, ContentKey key, long[] location) throws IOException {
+        ActiveTraces.getLocal().add("S3BatchContentDao.getEntry", key, location[1]);
+        long start = System.currentTimeMillis();
+        GetObjectRequest request = new GetObjectRequest(s3BucketName.getS3BucketName(), getS3BatchItemsKey(channel, minutePath))
+                .withRange(location[0], location[0] + location[1] - 1);
+        try (S3Object object = s3Client.getObject(request);
+             ZipInputStream zipStream = new ZipInputStream(new BufferedInputStream(object.getObjectContent()))) {
+            ZipEntry zipEntry = zipStream.getNextEntry();
+            if (zipEntry == null || !zipEntry.getName().equals(key.toUrl())) {
+                throw new IOException("unexpected entry " + (zipEntry == null ? null : zipEntry.getName()) + " for " + key);
+            }
+            return getContent(key, zipStream, zipEntry);
+        } finally {
+            metricsService.time(channel, "s3.get", start, "type:batch");
+        }
+    }
+
+    /**
+     * Locates the entries in a batch, from the binary index when it has their locations,
+     * or else from the zip's central directory, which is read with ranged GETs of the end of the zip.
+     *
+     * @return the offset and length of each entry, by key url, or an empty map if they can not be located
+     */
+    private Map<String, long[]> readDirectory(String channel, MinutePath minutePath) throws IOException {
+        Traces traces = ActiveTraces.getLocal();
+        Optional<List<S3BatchIndex.Entry>> entries = getIndex(channel, getS3BatchIndexKey(channel, minutePath), traces);
+        if (entries.isPresent() && entries.get().stream().allMatch(S3BatchIndex.Entry::isLocated)) {
+            Map<String, long[]> directory = new HashMap<>();
+            for (S3BatchIndex.Entry entry : entries.get()) {
+                directory.put(entry.getKey().toUrl(), new long[]{entry.getOffset(), entry.getLength()});
+            }
+            return directory;
+        }
+        String itemsKey = getS3BatchItemsKey(channel, minutePath);
+        long length = s3Client.getObjectMetadata(new GetObjectMetadataRequest(s3BucketName.getS3BucketName(), itemsKey)).getContentLength();
+        long tailOffset = Math.max(0, length - 64 * 1024);
+        byte[] tail = getRange(channel, itemsKey, tailOffset, length);
+        long[] directory = S3BatchIndex.findDirectory(tail);
+        if (directory == null) {
+            return Collections.emptyMap();
+        }
+        if (directory[0] < tailOffset) {
+            tailOffset = directory[0];
+            tail = getRange(channel, itemsKey, tailOffset, length);
+        }
+        traces.add("S3BatchContentDao.readDirectory", minutePath, length - tailOffset);
+        return S3BatchIndex.locateEntries(tail, tailOffset);
+    }
+
+    private byte[] getRange(String channel, String s3Key, long start, long end) throws IOException {
+        long time = System.currentTimeMillis();
+        GetObjectRequest request = new GetObjectRequest(s3BucketName.getS3BucketName(), s3Key).withRange(start, end - 1);
+        try (S3Object object = s3Client.getObject(request)) {
+            return ByteStreams.toByteArray(object.getObjectContent());
+        } finally {
+            metricsService.time(channel, "s3.get", time, "type:batch");
+        }
+    }
+
     @Override
     public Map<ContentKey, Content> readBatch(String channelName, ContentKey key) throws IOException {
         MinutePath minutePath = new MinutePath(key.getTime());
@@ -137,7 +262,122 @@ public class S3BatchContentDao implements ContentDao {
         return ascending(channel, minutePath, callback);
     }
 
+    /**
+     * Reads the minute's items newest first, without holding the whole batch.
+     * The items' entries are located in the batch directory, and read with ranged GETs of up to s3.batchWindowBytes,
+     * starting from the newest items.
+     * If the directory is not available, or does not locate all of the keys, the whole batch is read,
+     * and if a window can not be read, the whole batch is read for the keys which were not yet sent.
+     */
     private boolean descending(String channel, MinutePath minutePath, Consumer<Content> callback) {
+        Map<String, long[]> directory = rangedReads ? getDirectory(channel, minutePath) : Collections.emptyMap();
+        if (directory == null) {
+            return false;
+        }
+        if (directory.isEmpty()) {
+            return descendingBatch(channel, minutePath, callback);
+        }
+        List<BatchWindow> windows = new ArrayList<>();
+        BatchWindow window = null;
+        for (ContentKey key : new TreeSet<>(minutePath.getKeys()).descendingSet()) {
+            long[] location = directory.get(key.toUrl());
+            if (location == null) {
+                logger.info("no directory entry for {} {}, reading the whole batch", channel, key);
+                return descendingBatch(channel, minutePath, callback);
+            }
+            if (window == null || !window.add(key, location, batchWindowBytes)) {
+                window = new BatchWindow(key, location);
+                windows.add(window);
+            }
+        }
+        AtomicBoolean found = new AtomicBoolean();
+        SortedSet<ContentKey> unsent = new TreeSet<>(minutePath.getKeys());
+        try {
+            streamFetcher.fetch(windows, batchWindow -> getWindow(channel, minutePath, batchWindow), (batchWindow, contents) -> {
+                for (ContentKey key : batchWindow.keys) {
+                    Content content = contents.get(key);
+                    if (content != null) {
+                        callback.accept(content);
+                        found.set(true);
+                    }
+                    unsent.remove(key);
+                }
+                return true;
+            });
+        } catch (UncheckedIOException e) {
+            logger.warn("unable to read the entries for " + channel + " " + minutePath, e);
+            batchDirectories.invalidate(channel + "/" + minutePath.toUrl());
+            //the windows are handled newest first, so the unsent keys are older than those already sent
+            if (!unsent.isEmpty() && descendingBatch(channel, new MinutePath(minutePath.getTime(), unsent), callback)) {
+                found.set(true);
+            }
+        } finally {
+            ActiveTraces.getLocal().add("S3BatchContentDao.streamMinute completed", windows.size());
+        }
+        return found.get();
+    }
+
+    /**
+     * A BatchWindow is a range of a batch zip, which holds the entries of its keys.
+     */
+    private static class BatchWindow {
+        private final List<ContentKey> keys = new ArrayList<>();
+        private long start;
+        private long end;
+
+        BatchWindow(ContentKey key, long[] location) {
+            keys.add(key);
+            start = location[0];
+            end = location[0] + location[1];
+        }
+
+        /**
+         * @return false if the window would be longer than maxBytes with the key's entry
+         */
+        boolean add(ContentKey key, long[] location, long maxBytes) {
+            long newStart = Math.min(start, location[0]);
+            long newEnd = Math.max(end, location[0] + location[1]);
+            if (newEnd - newStart > maxBytes) {
+                return false;
+            }
+            keys.add(key);
+            start = newStart;
+            end = newEnd;
+            return true;
+        }
+    }
+
+    private Map<ContentKey, Content> getWindow(String channel, MinutePath minutePath, BatchWindow window) {
+        Map<String, ContentKey> keyMap = new HashMap<>();
+        for (ContentKey key : window.keys) {
+            keyMap.put(key.toUrl(), key);
+        }
+        Map<ContentKey, Content> contents = new HashMap<>();
+        long start = System.currentTimeMillis();
+        GetObjectRequest request = new GetObjectRequest(s3BucketName.getS3BucketName(), getS3BatchItemsKey(channel, minutePath))
+                .withRange(window.start, window.end - 1);
+        try (S3Object object = s3Client.getObject(request);
+             ZipInputStream zipStream = new ZipInputStream(new BufferedInputStream(object.getObjectContent()))) {
+            ZipEntry nextEntry = zipStream.getNextEntry();
+            while (nextEntry != null) {
+                ContentKey key = keyMap.get(nextEntry.getName());
+                if (key != null) {
+                    contents.put(key, getContent(key, zipStream, nextEntry));
+                }
+                nextEntry = zipStream.getNextEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            metricsService.time(channel, "s3.get", start, "type:batch");
+        }
+        if (contents.size() < keyMap.size()) {
+            throw new UncheckedIOException(new IOException("missing entries in " + minutePath + " " + window.start + "-" + window.end));
+        }
+        return contents;
+    }
+
+    private boolean descendingBatch(String channel, MinutePath minutePath, Consumer<Content> callback) {
         boolean found = false;
         try {
             Map<ContentKey, Content> map = mapMinute(channel, minutePath);
@@ -194,26 +434,148 @@ public class S3BatchContentDao implements ContentDao {
 
     private SortedSet<ContentKey> queryHourPlus(TimeQuery query) {
         Traces traces = ActiveTraces.getLocal();
-        SortedSet<ContentKey> keys = new TreeSet<>();
-        if (query.getCount() > 0) {
-            keys = new ContentKeySet(query.getCount(), query.getLimitKey());
-        }
+        SortedSet<ContentKey> keys = query.getCount() > 0 ? new ContentKeySet(query.getCount(), query.getLimitKey()) : new TreeSet<>();
 
         DateTime rounded = query.getUnit().round(query.getStartTime());
         String channel = query.getChannelName();
         traces.add("S3BatchContentDao.queryHourPlus starting ", channel, rounded, query.getUnit());
-        ListObjectsRequest request = new ListObjectsRequest()
-                .withBucketName(s3BucketName.getS3BucketName())
-                .withPrefix(channel + BATCH_INDEX + query.getUnit().format(rounded))
-                .withMaxKeys(s3MaxQueryItems);
-        SortedSet<MinutePath> minutePaths = listMinutePaths(channel, request, traces, true);
-        for (MinutePath minutePath : minutePaths) {
-            getKeysForMinute(channel, minutePath, keys, traces);
+        BatchFetch fetch;
+        if (query.getUnit().equals(TimeUtil.Unit.MONTHS)) {
+            fetch = new BatchFetch(TimeUtil.Unit.MONTHS, rounded.withDayOfMonth(1), false, true);
+        } else if (query.getUnit().equals(TimeUtil.Unit.DAYS)) {
+            fetch = new BatchFetch(TimeUtil.Unit.DAYS, rounded, true, true);
+        } else {
+            fetch = new BatchFetch(TimeUtil.Unit.HOURS, rounded, true, true);
         }
+        //a ContentKeySet keeps the latest keys, so once it is full, the earlier periods can be skipped
+        boolean descending = query.getCount() > 0;
+        fetchEntries(channel, Collections.singletonList(fetch), descending, entry -> keys.add(entry.getKey()),
+                () -> descending && keys.size() >= query.getCount(), traces);
         traces.add("S3BatchContentDao.queryHourPlus found keys", keys);
         return keys;
     }
 
+    /**
+     * A BatchFetch is a period of a channel's batches, read from a minute index or a rollup.
+     * If there is no rollup for the period, and fallback is true, it is read from the period's parts.
+     */
+    private static class BatchFetch {
+        private final TimeUtil.Unit unit;
+        private final DateTime start;
+        private final boolean rollup;
+        private final boolean fallback;
+
+        BatchFetch(TimeUtil.Unit unit, DateTime start, boolean rollup, boolean fallback) {
+            this.unit = unit;
+            this.start = start;
+            this.rollup = rollup;
+            this.fallback = fallback;
+        }
+
+        static BatchFetch minute(DateTime start) {
+            return new BatchFetch(TimeUtil.Unit.MINUTES, start, false, false);
+        }
+    }
+
+    private static class Fetched {
+        private final Optional<List<S3BatchIndex.Entry>> entries;
+        private final List<BatchFetch> parts;
+
+        Fetched(Optional<List<S3BatchIndex.Entry>> entries, List<BatchFetch> parts) {
+            this.entries = entries;
+            this.parts = parts;
+        }
+    }
+
+    /**
+     * Reads the entries of the periods in parallel, and hands them to the entryConsumer in order,
+     * oldest first unless descending, until satisfied.
+     */
+    private void fetchEntries(String channel, List<BatchFetch> fetches, boolean descending,
+                              Consumer<S3BatchIndex.Entry> entryConsumer, BooleanSupplier satisfied, Traces traces) {
+        List<BatchFetch> ordered = new ArrayList<>(fetches);
+        if (descending) {
+            Collections.reverse(ordered);
+        }
+        fetcher.fetch(ordered, fetch -> fetch(channel, fetch, traces), (fetch, fetched) -> {
+            if (fetched.entries.isPresent()) {
+                fetched.entries.get().forEach(entryConsumer);
+            } else if (!fetched.parts.isEmpty()) {
+                fetchEntries(channel, fetched.parts, descending, entryConsumer, satisfied, traces);
+            }
+            return !satisfied.getAsBoolean();
+        });
+    }
+
+    private Fetched fetch(String channel, BatchFetch fetch, Traces traces) {
+        MinutePath path = new MinutePath(fetch.start);
+        if (fetch.unit.equals(TimeUtil.Unit.MINUTES)) {
+            Optional<List<S3BatchIndex.Entry>> entries = getIndex(channel, getS3BatchIndexKey(channel, path), traces);
+            if (entries.isPresent()) {
+                traces.add("S3BatchContentDao.fetch minute ", path, entries.get().size());
+            } else {
+                traces.add("S3BatchContentDao.fetch no keys ", path);
+            }
+            return new Fetched(entries, Collections.emptyList());
+        }
+        if (fetch.rollup) {
+            String rollupPath = fetch.unit.equals(TimeUtil.Unit.DAYS) ? BATCH_DAYS : BATCH_HOURS;
+            Optional<List<S3BatchIndex.Entry>> entries = getIndex(channel, channel + rollupPath + path.toUrl(), traces);
+            if (entries.isPresent()) {
+                traces.add("S3BatchContentDao.fetch rollup ", rollupPath, path, entries.get().size());
+            }
+            if (entries.isPresent() || !fetch.fallback) {
+                return new Fetched(entries, Collections.emptyList());
+            }
+        }
+        return new Fetched(Optional.absent(), listParts(channel, fetch, traces));
+    }
+
+    /**
+     * A month's parts are its days, a day's parts are the rollups of its hours, or the minutes of those without one,
+     * and an hour's parts are its minutes.
+     */
+    private List<BatchFetch> listParts(String channel, BatchFetch fetch, Traces traces) {
+        List<BatchFetch> parts = new ArrayList<>();
+        if (fetch.unit.equals(TimeUtil.Unit.MONTHS)) {
+            SortedSet<MinutePath> days = listPaths(channel, BATCH_DAYS, TimeUtil.Unit.MONTHS.format(fetch.start), traces);
+            DateTime now = TimeUtil.now();
+            for (DateTime day = fetch.start; day.isBefore(fetch.start.plusMonths(1)) && !day.isAfter(now); day = day.plusDays(1)) {
+                parts.add(new BatchFetch(TimeUtil.Unit.DAYS, day, days.contains(new MinutePath(day)), true));
+            }
+        } else if (fetch.unit.equals(TimeUtil.Unit.DAYS)) {
+            String prefix = TimeUtil.Unit.DAYS.format(fetch.start);
+            SortedSet<MinutePath> hours = listPaths(channel, BATCH_HOURS, prefix, traces);
+            SortedSet<MinutePath> minutes = new TreeSet<>();
+            if (hours.size() < 24) {
+                minutes = listPaths(channel, BATCH_INDEX, prefix, traces);
+            }
+            for (DateTime hour = fetch.start; hour.isBefore(fetch.start.plusDays(1)); hour = hour.plusHours(1)) {
+                MinutePath hourPath = new MinutePath(hour);
+                if (hours.contains(hourPath)) {
+                    parts.add(new BatchFetch(TimeUtil.Unit.HOURS, hour, true, true));
+                } else {
+                    for (MinutePath minute : minutes.subSet(hourPath, new MinutePath(hour.plusHours(1)))) {
+                        parts.add(BatchFetch.minute(minute.getTime()));
+                    }
+                }
+            }
+        } else {
+            for (MinutePath minute : listPaths(channel, BATCH_INDEX, TimeUtil.Unit.HOURS.format(fetch.start), traces)) {
+                parts.add(BatchFetch.minute(minute.getTime()));
+            }
+        }
+        return parts;
+    }
+
+    private SortedSet<MinutePath> listPaths(String channel, String pathPrefix, String prefix, Traces traces) {
+        ListObjectsRequest request = new ListObjectsRequest()
+                .withBucketName(s3BucketName.getS3BucketName())
+                .withPrefix(channel + pathPrefix + prefix)
+                .withMaxKeys(s3MaxQueryItems);
+        return listMinutePaths(channel, pathPrefix, request, traces, true);
+    }
+
     private SortedSet<ContentKey> queryMinute(String channel, DateTime startTime, TimeUtil.Unit unit) {
         Traces traces = ActiveTraces.getLocal();
         SortedSet<ContentKey> keys = new TreeSet<>();
@@ -233,35 +595,38 @@ public class S3BatchContentDao implements ContentDao {
     }
 
     private void getKeysForMinute(String channel, MinutePath minutePath, SortedSet<ContentKey> keys, Traces traces) {
-        getKeysForMinute(channel, minutePath, traces, item -> {
-            keys.add(ContentKey.fromUrl(item.asText()).get());
-        });
+        Optional<List<S3BatchIndex.Entry>> entries = getIndex(channel, getS3BatchIndexKey(channel, minutePath), traces);
+        if (entries.isPresent()) {
+            for (S3BatchIndex.Entry entry : entries.get()) {
+                keys.add(entry.getKey());
+            }
+            traces.add("S3BatchContentDao.getKeysForMinute ", minutePath, entries.get().size());
+        } else {
+            traces.add("S3BatchContentDao.getKeysForMinute no keys ", minutePath);
+        }
     }
 
-    private void getKeysForMinute(String channel, MinutePath minutePath, Traces traces, Consumer<JsonNode> itemNodeConsumer) {
+    /**
+     * @return the entries of a minute index or a rollup, or absent if it does not exist or can not be read
+     */
+    private Optional<List<S3BatchIndex.Entry>> getIndex(String channel, String s3Key, Traces traces) {
         long start = System.currentTimeMillis();
-        GetObjectRequest request = new GetObjectRequest(s3BucketName.getS3BucketName(), getS3BatchIndexKey(channel, minutePath));
+        GetObjectRequest request = new GetObjectRequest(s3BucketName.getS3BucketName(), s3Key);
         try (S3Object object = s3Client.getObject(request)) {
             byte[] bytes = ByteStreams.toByteArray(object.getObjectContent());
-            JsonNode root = mapper.readTree(bytes);
-            JsonNode items = root.get("items");
-            for (JsonNode item : items) {
-                itemNodeConsumer.accept(item);
-            }
-            traces.add("S3BatchContentDao.getKeysForMinute ", minutePath, items.size());
+            return Optional.of(S3BatchIndex.read(bytes));
         } catch (AmazonS3Exception e) {
             if (e.getStatusCode() != 404) {
-                logger.warn("unable to get index " + channel, minutePath, e);
-                traces.add("S3BatchContentDao.getKeysForMinute issue with getting keys", e);
-            } else {
-                traces.add("S3BatchContentDao.getKeysForMinute no keys ", minutePath);
+                logger.warn("unable to get index " + s3Key, e);
+                traces.add("S3BatchContentDao.getIndex issue with getting keys", e);
             }
         } catch (IOException e) {
-            logger.warn("unable to get index " + channel, minutePath, e);
+            logger.warn("unable to get index " + s3Key, e);
             traces.add("issue with getting keys", e);
         } finally {
             metricsService.time(channel, "s3.get", start, "type:batch");
         }
+        return Optional.absent();
     }
 
     @Override
@@ -287,56 +652,80 @@ public class S3BatchContentDao implements ContentDao {
         SortedSet<ContentKey> keys = new TreeSet<>();
         Traces traces = ActiveTraces.getLocal();
         DateTime endTime = query.getChannelStable();
-        DateTime markerTime = query.getStartKey().getTime().minusMinutes(1);
+        AtomicReference<DateTime> markerTime = new AtomicReference<>(query.getStartKey().getTime().minusMinutes(1));
         int queryItems = Math.min(s3MaxQueryItems, query.getCount());
+        Consumer<Optional<List<S3BatchIndex.Entry>>> entriesConsumer = entries -> {
+            if (entries.isPresent()) {
+                for (S3BatchIndex.Entry entry : entries.get()) {
+                    if (entry.getKey().compareTo(query.getStartKey()) > 0
+                            && keys.size() < query.getCount()) {
+                        keys.add(entry.getKey());
+                    }
+                }
+            }
+        };
+        DateTime checkedHour = null;
         do {
             String channel = query.getChannelName();
             ListObjectsRequest request = new ListObjectsRequest()
                     .withBucketName(s3BucketName.getS3BucketName())
                     .withPrefix(channel + BATCH_INDEX)
-                    .withMarker(channel + BATCH_INDEX + TimeUtil.Unit.MINUTES.format(markerTime))
+                    .withMarker(channel + BATCH_INDEX + TimeUtil.Unit.MINUTES.format(markerTime.get()))
                     .withMaxKeys(queryItems);
-            SortedSet<MinutePath> paths = listMinutePaths(channel, request, traces, false);
+            SortedSet<MinutePath> paths = listMinutePaths(channel, BATCH_INDEX, request, traces, false);
 
             if (paths.isEmpty()) {
                 return keys;
             }
+            //the first minute of each hour is preceded by the hour's rollup, which replaces the rest of the hour
+            List<BatchFetch> fetches = new ArrayList<>();
             for (MinutePath path : paths) {
-                getKeysForMinute(channel, path, traces, item -> {
-                    ContentKey contentKey = ContentKey.fromUrl(item.asText()).get();
-                    if (contentKey.compareTo(query.getStartKey()) > 0
-                            && keys.size() < query.getCount()) {
-                        keys.add(contentKey);
+                DateTime hour = TimeUtil.Unit.HOURS.round(path.getTime());
+                if (!hour.equals(checkedHour)) {
+                    checkedHour = hour;
+                    fetches.add(new BatchFetch(TimeUtil.Unit.HOURS, hour, true, false));
+                }
+                fetches.add(BatchFetch.minute(path.getTime()));
+            }
+            fetcher.fetch(fetches, fetch -> fetch(channel, fetch, traces), (fetch, fetched) -> {
+                if (fetch.unit.equals(TimeUtil.Unit.HOURS)) {
+                    if (!fetched.entries.isPresent()) {
+                        return true;
                     }
-                });
+                    entriesConsumer.accept(fetched.entries);
+                    markerTime.set(fetch.start.plusMinutes(59));
+                    return false;
+                }
+                entriesConsumer.accept(fetched.entries);
                 if (keys.size() >= query.getCount()) {
-                    break;
+                    return false;
                 }
-                markerTime = path.getTime();
-            }
-        } while (keys.size() < query.getCount() && markerTime.isBefore(endTime));
+                markerTime.set(fetch.start);
+                return true;
+            });
+        } while (keys.size() < query.getCount() && markerTime.get().isBefore(endTime));
         return keys;
     }
 
-    private SortedSet<MinutePath> listMinutePaths(String channel, ListObjectsRequest request, Traces traces, boolean iterate) {
+    private SortedSet<MinutePath> listMinutePaths(String channel, String pathPrefix, ListObjectsRequest request, Traces traces, boolean iterate) {
         SortedSet<MinutePath> paths = new TreeSet<>();
         traces.add("S3BatchContentDao.listMinutePaths ", request.getPrefix(), request.getMarker(), iterate);
-        long start = System.currentTimeMillis();
-        ObjectListing listing = s3Client.listObjects(request);
-        metricsService.time(channel, "s3.list", start, "type:batch");
-        List<S3ObjectSummary> summaries = listing.getObjectSummaries();
-        for (S3ObjectSummary summary : summaries) {
-            String key = summary.getKey();
-            Optional<MinutePath> pathOptional = MinutePath.fromUrl(StringUtils.substringAfter(key, channel + BATCH_INDEX));
-            if (pathOptional.isPresent()) {
-                MinutePath path = pathOptional.get();
-                paths.add(path);
+        ObjectListing listing;
+        do {
+            long start = System.currentTimeMillis();
+            listing = s3Client.listObjects(request);
+            metricsService.time(channel, "s3.list", start, "type:batch");
+            for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                String key = summary.getKey();
+                Optional<MinutePath> pathOptional = MinutePath.fromUrl(StringUtils.substringAfter(key, channel + pathPrefix));
+                if (pathOptional.isPresent()) {
+                    paths.add(pathOptional.get());
+                }
             }
-        }
-        if (iterate && listing.isTruncated()) {
-            request.withMarker(channel + BATCH_INDEX + TimeUtil.Unit.MINUTES.format(paths.last().getTime()));
-            paths.addAll(listMinutePaths(channel, request, traces, iterate));
-        }
+            if (iterate && listing.isTruncated()) {
+                request.withMarker(channel + pathPrefix + TimeUtil.Unit.MINUTES.format(paths.last().getTime()));
+            }
+        } while (iterate && listing.isTruncated());
         traces.add("S3BatchContentDao.listMinutePaths ", paths);
         return paths;
     }
@@ -346,6 +735,8 @@ public class S3BatchContentDao implements ContentDao {
         try {
             S3Util.delete(channel + BATCH_ITEMS, limitKey, s3BucketName.getS3BucketName(), s3Client);
             S3Util.delete(channel + BATCH_INDEX, limitKey, s3BucketName.getS3BucketName(), s3Client);
+            S3Util.delete(channel + BATCH_HOURS, limitKey, s3BucketName.getS3BucketName(), s3Client);
+            S3Util.delete(channel + BATCH_DAYS, limitKey, s3BucketName.getS3BucketName(), s3Client);
             logger.info("completed deleteBefore of " + channel);
         } catch (Exception e) {
             logger.warn("unable to delete " + channel + " in " + s3BucketName.getS3BucketName(), e);
@@ -379,7 +770,7 @@ public class S3BatchContentDao implements ContentDao {
         try {
             logger.debug("writing {} batch {} keys {} bytes {}", channel, path, keys.size(), bytes.length);
             writeBatchItems(channel, path, bytes);
-            writeBatchIndex(channel, path, keys);
+            writeBatchIndex(channel, path, keys, S3BatchIndex.locateEntries(bytes));
         } catch (Exception e) {
             logger.warn("unable to write batch to S3 " + channel + " " + path, e);
             throw e;
@@ -388,18 +779,145 @@ public class S3BatchContentDao implements ContentDao {
         }
     }
 
-    private void writeBatchIndex(String channel, ContentPath path, Collection<ContentKey> keys) {
+    /**
+     * Writes the rollup index of an hour or a day, once all of its minutes have been written.
+     * An hour is built from its minute indexes, and a day from its hours' rollups.
+     */
+    @Override
+    public void writeRollup(String channel, DateTime start, TimeUtil.Unit unit) {
+        Traces traces = ActiveTraces.getLocal();
+        traces.add("S3BatchContentDao.writeRollup", channel, start, unit);
+        String rollupPath;
+        if (unit.equals(TimeUtil.Unit.DAYS)) {
+            rollupPath = BATCH_DAYS;
+        } else if (unit.equals(TimeUtil.Unit.HOURS)) {
+            rollupPath = BATCH_HOURS;
+        } else {
+            throw new UnsupportedOperationException("rollups are not supported for " + unit);
+        }
+        List<S3BatchIndex.Entry> entries = new ArrayList<>();
+        fetchEntries(channel, listParts(channel, new BatchFetch(unit, start, false, true), traces), false,
+                entries::add, () -> false, traces);
+        MinutePath path = new MinutePath(start);
+        putObject(channel, channel + rollupPath + path.toUrl(), S3BatchIndex.toBinary(path, entries));
+        traces.add("S3BatchContentDao.writeRollup completed", channel, entries.size());
+    }
+
+    /**
+     * Streams the batch zip to S3 with a multipart upload, and locates its entries for the index as they are written.
+     */
+    @Override
+    public void writeBatch(String channel, ContentPath path, Collection<ContentKey> keys, Consumer<Consumer<Content>> itemSource) {
+        ActiveTraces.getLocal().add("S3BatchContentDao.writeBatch streaming", channel, path);
+        long start = System.currentTimeMillis();
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (useEncrypted) {
+            metadata.setSSEAlgorithm(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+        }
+        MultipartUploadStream upload = new MultipartUploadStream(s3Client, s3BucketName.getS3BucketName(),
+                getS3BatchItemsKey(channel, path), metadata, batchPartBytes, uploadThreadPool);
+        CountingOutputStream output = new CountingOutputStream(upload);
+        Map<String, long[]> locations;
+        try {
+            locations = writeZip(output, itemSource);
+            upload.close();
+        } catch (Exception e) {
+            logger.warn("unable to write batch to S3 " + channel + " " + path, e);
+            upload.abort();
+            throw new RuntimeException(e);
+        } finally {
+            metricsService.time(channel, "s3.put", start, output.getCount(), "type:batch");
+        }
+        logger.debug("wrote {} batch {} keys {} bytes {}", channel, path, keys.size(), output.getCount());
+        writeBatchIndex(channel, path, keys, locations);
+        ActiveTraces.getLocal().add("S3BatchContentDao.writeBatch completed", channel, path);
+    }
+
+    /**
+     * Each entry starts where the previous one is closed, and the last one ends where the central directory starts.
+     *
+     * @return the offset and length of each entry, by name
+     */
+    private Map<String, long[]> writeZip(CountingOutputStream counting, Consumer<Consumer<Content>> itemSource) throws IOException {
+        ZipOutputStream output = new ZipOutputStream(counting);
+        output.setLevel(Deflater.DEFAULT_COMPRESSION);
+        List<String> names = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        itemSource.accept(content -> {
+            try {
+                output.closeEntry();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            names.add(content.getContentKey().get().toUrl());
+            offsets.add(counting.getCount());
+            ZipBulkBuilder.createZipEntry(output, content);
+        });
+        output.closeEntry();
+        offsets.add(counting.getCount());
+        output.finish();
+        Map<String, long[]> locations = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            locations.put(names.get(i), new long[]{offsets.get(i), offsets.get(i + 1) - offsets.get(i)});
+        }
+        return locations;
+    }
+
+    private void writeBatchIndex(String channel, ContentPath path, Collection<ContentKey> keys, Map<String, long[]> locations) {
         String batchIndexKey = getS3BatchIndexKey(channel, path);
-        ObjectNode root = mapper.createObjectNode();
-        root.put("id", path.toUrl());
-        ArrayNode items = root.putArray("items");
-        for (ContentKey key : keys) {
-            items.add(key.toUrl());
-        }
-        String index = root.toString();
-        logger.trace("index is {} {}", batchIndexKey, index);
-        byte[] bytes = index.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes;
+        if (binaryIndex) {
+            bytes = S3BatchIndex.toBinary(path, keys, locations);
+        } else {
+            bytes = S3BatchIndex.toJson(path, keys);
+        }
+        logger.trace("index is {} {} bytes", batchIndexKey, bytes.length);
         putObject(channel, batchIndexKey, bytes);
+        batchDirectories.invalidate(channel + "/" + path.toUrl());
+        updateRollups(channel, path.getTime());
+    }
+
+    /**
+     * Queries treat an hour or day rollup as the whole period, so a minute written after its period was rolled up,
+     * late or rewritten, rewrites the rollups which include it.
+     * If a rollup can not be rewritten, it is deleted, and queries read the period's parts instead.
+     */
+    private void updateRollups(String channel, DateTime minute) {
+        DateTime hour = TimeUtil.Unit.HOURS.round(minute);
+        DateTime day = TimeUtil.Unit.DAYS.round(minute);
+        boolean hourRolled = rollupExists(channel, BATCH_HOURS, hour);
+        boolean dayRolled = rollupExists(channel, BATCH_DAYS, day);
+        if (hourRolled) {
+            rewriteRollup(channel, BATCH_HOURS, hour, TimeUtil.Unit.HOURS);
+        }
+        if (dayRolled) {
+            rewriteRollup(channel, BATCH_DAYS, day, TimeUtil.Unit.DAYS);
+        }
+    }
+
+    private void rewriteRollup(String channel, String rollupPath, DateTime start, TimeUtil.Unit unit) {
+        logger.info("rewriting rollup {} {} {}", channel, start, unit);
+        try {
+            writeRollup(channel, start, unit);
+        } catch (Exception e) {
+            logger.warn("unable to rewrite rollup " + channel + " " + start + " " + unit + ", deleting it", e);
+            s3Client.deleteObject(new DeleteObjectRequest(s3BucketName.getS3BucketName(),
+                    channel + rollupPath + new MinutePath(start).toUrl()));
+        }
+    }
+
+    private boolean rollupExists(String channel, String rollupPath, DateTime start) {
+        String key = channel + rollupPath + new MinutePath(start).toUrl();
+        try {
+            s3Client.getObjectMetadata(new GetObjectMetadataRequest(s3BucketName.getS3BucketName(), key));
+            return true;
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return false;
+            }
+            logger.warn("unable to check rollup " + key, e);
+            return true;
+        }
     }
 
     private void writeBatchItems(String channel, ContentPath path, byte[] bytes) {
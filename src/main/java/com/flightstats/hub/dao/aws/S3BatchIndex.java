@@ -0,0 +1,247 @@
+package com.flightstats.hub.dao.aws;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.ContentPath;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * S3BatchIndex reads and writes the index of the items in a batch.
+ * <p>
+ * The original index is json of {id, items:[keys]}.
+ * The binary index is
+ * [magic (4 bytes)][version (1 byte)][path millis (8 bytes)][count (4 bytes)] followed by the sorted items of
+ * [millis after the path (4 bytes)][hash length (2 bytes)][hash (utf-8)][offset (4 bytes)][length (4 bytes)]
+ * where offset and length locate the item's entry, including its local header, in the batch zip.
+ * An offset of -1 means the entry's location is unknown.
+ * Both formats are read.
+ */
+class S3BatchIndex {
+
+    static final int MAGIC = 0x48424958;
+    static final byte VERSION = 1;
+    private static final int UNKNOWN = -1;
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    static class Entry {
+        private final ContentKey key;
+        private final long offset;
+        private final int length;
+
+        Entry(ContentKey key, long offset, int length) {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        ContentKey getKey() {
+            return key;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        int getLength() {
+            return length;
+        }
+
+        boolean isLocated() {
+            return offset >= 0;
+        }
+    }
+
+    static byte[] toJson(ContentPath path, Collection<ContentKey> keys) {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("id", path.toUrl());
+        ArrayNode items = root.putArray("items");
+        for (ContentKey key : keys) {
+            items.add(key.toUrl());
+        }
+        return root.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param zipBytes the batch zip, with an entry named by each key's url
+     */
+    static byte[] toBinary(ContentPath path, Collection<ContentKey> keys, byte[] zipBytes) {
+        return toBinary(path, keys, locateEntries(zipBytes));
+    }
+
+    /**
+     * @param locations the offset and length of each key's entry in the batch zip, by the key's url
+     */
+    static byte[] toBinary(ContentPath path, Collection<ContentKey> keys, Map<String, long[]> locations) {
+        List<Entry> entries = new ArrayList<>(keys.size());
+        for (ContentKey key : keys) {
+            long[] location = locations.get(key.toUrl());
+            if (location == null) {
+                entries.add(new Entry(key, UNKNOWN, 0));
+            } else {
+                entries.add(new Entry(key, location[0], (int) location[1]));
+            }
+        }
+        return toBinary(path, entries);
+    }
+
+    /**
+     * The entries may come from many batches, as they do in the rollups of hours and days,
+     * since each entry's batch is the minute of its key.
+     */
+    static byte[] toBinary(ContentPath path, List<Entry> entries) {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(Entry::getKey));
+        long pathMillis = path.getTime().getMillis();
+        int size = 17;
+        List<byte[]> hashes = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted) {
+            byte[] hash = entry.getKey().getHash().getBytes(StandardCharsets.UTF_8);
+            hashes.add(hash);
+            size += 14 + hash.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putLong(pathMillis);
+        buffer.putInt(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            Entry entry = sorted.get(i);
+            byte[] hash = hashes.get(i);
+            buffer.putInt((int) (entry.getKey().getMillis() - pathMillis));
+            buffer.putShort((short) hash.length);
+            buffer.put(hash);
+            buffer.putInt((int) entry.getOffset());
+            buffer.putInt(entry.getLength());
+        }
+        return buffer.array();
+    }
+
+    static List<Entry> read(byte[] bytes) throws IOException {
+        if (bytes.length >= 4 && ByteBuffer.wrap(bytes).getInt() == MAGIC) {
+            return readBinary(ByteBuffer.wrap(bytes));
+        }
+        List<Entry> entries = new ArrayList<>();
+        JsonNode items = mapper.readTree(bytes).get("items");
+        for (JsonNode item : items) {
+            entries.add(new Entry(ContentKey.fromUrl(item.asText()).get(), UNKNOWN, 0));
+        }
+        return entries;
+    }
+
+    private static List<Entry> readBinary(ByteBuffer buffer) throws IOException {
+        buffer.getInt();
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("unsupported index version " + version);
+        }
+        long pathMillis = buffer.getLong();
+        int count = buffer.getInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long millis = pathMillis + buffer.getInt();
+            byte[] hash = new byte[buffer.getShort() & 0xffff];
+            buffer.get(hash);
+            long offset = buffer.getInt();
+            int length = buffer.getInt();
+            if (offset != UNKNOWN) {
+                offset &= 0xffffffffL;
+            }
+            entries.add(new Entry(new ContentKey(millis, new String(hash, StandardCharsets.UTF_8)), offset, length));
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the zip's central directory.
+     *
+     * @return the offset and length of each entry, by name, or an empty map if the zip can not be read.
+     */
+    static Map<String, long[]> locateEntries(byte[] zipBytes) {
+        return locateEntries(zipBytes, 0);
+    }
+
+    /**
+     * Finds the end of central directory record in the last bytes of a zip.
+     *
+     * @return the offset and size of the central directory, or null if the record is not found,
+     * or the zip is a ZIP64 zip.
+     */
+    static long[] findDirectory(byte[] tail) {
+        ByteBuffer buffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+        int end = findEnd(buffer);
+        if (end < 0 || isZip64(buffer, end)) {
+            return null;
+        }
+        return new long[]{buffer.getInt(end + 16) & 0xffffffffL, buffer.getInt(end + 12) & 0xffffffffL};
+    }
+
+    /**
+     * @param bytes       the end of a zip, which includes the whole central directory
+     * @param bytesOffset the offset of bytes in the zip
+     * @return the offset and length of each entry, by name, or an empty map if the directory is not in bytes,
+     * or the zip is a ZIP64 zip.
+     */
+    static Map<String, long[]> locateEntries(byte[] bytes, long bytesOffset) {
+        Map<String, long[]> locations = new HashMap<>();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int end = findEnd(buffer);
+        if (end < 0 || isZip64(buffer, end)) {
+            return locations;
+        }
+        int count = buffer.getShort(end + 10) & 0xffff;
+        long directoryOffset = buffer.getInt(end + 16) & 0xffffffffL;
+        if (directoryOffset < bytesOffset || directoryOffset - bytesOffset > end) {
+            return locations;
+        }
+        List<String> names = new ArrayList<>(count);
+        List<Long> offsets = new ArrayList<>(count);
+        int position = (int) (directoryOffset - bytesOffset);
+        for (int i = 0; i < count; i++) {
+            if (position + 46 > end || buffer.getInt(position) != 0x02014b50) {
+                return new HashMap<>();
+            }
+            int nameLength = buffer.getShort(position + 28) & 0xffff;
+            int extraLength = buffer.getShort(position + 30) & 0xffff;
+            int commentLength = buffer.getShort(position + 32) & 0xffff;
+            names.add(new String(bytes, position + 46, nameLength, StandardCharsets.UTF_8));
+            offsets.add(buffer.getInt(position + 42) & 0xffffffffL);
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        List<Long> sortedOffsets = new ArrayList<>(offsets);
+        sortedOffsets.add(directoryOffset);
+        Collections.sort(sortedOffsets);
+        for (int i = 0; i < count; i++) {
+            long offset = offsets.get(i);
+            long next = sortedOffsets.get(Collections.binarySearch(sortedOffsets, offset) + 1);
+            locations.put(names.get(i), new long[]{offset, next - offset});
+        }
+        return locations;
+    }
+
+    /**
+     * A zip with 65535 or more entries, or with its directory past 4 GB, keeps the real values in the ZIP64 end
+     * record, and marks the end of central directory record's fields as unknown.
+     */
+    private static boolean isZip64(ByteBuffer buffer, int end) {
+        return (buffer.getShort(end + 10) & 0xffff) == 0xffff
+                || (buffer.getInt(end + 12) & 0xffffffffL) == 0xffffffffL
+                || (buffer.getInt(end + 16) & 0xffffffffL) == 0xffffffffL;
+    }
+
+    private static int findEnd(ByteBuffer buffer) {
+        int end = buffer.capacity() - 22;
+        while (end >= 0 && buffer.getInt(end) != 0x06054b50) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -2,7 +2,6 @@ package com.flightstats.hub.dao.aws;
 
 import com.flightstats.hub.app.HubProperties;
 import com.flightstats.hub.app.HubServices;
-import com.flightstats.hub.channel.ZipBulkBuilder;
 import com.flightstats.hub.cluster.*;
 import com.flightstats.hub.dao.ChannelService;
 import com.flightstats.hub.dao.ContentDao;
@@ -151,9 +150,15 @@ public class S3BatchWriter {
             SortedSet<ContentKey> keys = channelService.queryByTime(timeQuery);
             if (keys.size() > 0) {
                 logger.debug("updating {} lastWritten {} first {} last {}", channelName, lastWritten, keys.first(), keys.last());
-                byte[] bytes = ZipBulkBuilder.build(keys, channelName, channelService, false, true);
-                s3BatchContentDao.writeBatch(channelName, lastWritten, keys, bytes);
+                s3BatchContentDao.writeBatch(channelName, lastWritten, keys,
+                        callback -> channelService.get(StreamResults.builder()
+                                .channel(channelName)
+                                .keys(keys)
+                                .callback(callback)
+                                .skipLarge(true)
+                                .build()));
             }
+            writeRollups(channelName, lastWritten.getTime());
             lastContentPath.updateIncrease(lastWritten, channelName, S3_BATCH_WRITER);
             metricsService.time("s3batch.delta", lastWritten.getTime().getMillis(), "channelName:" + channelName);
             logger.debug("{} updated {} with {} keys", channelName, lastWritten, keys.size());
@@ -161,6 +166,24 @@ public class S3BatchWriter {
         metricsService.time("s3batch.processing", start.getMillis(), "channelName:" + channelName);
     }
 
+    /**
+     * Once the last minute of an hour is written, the hour is closed and can be rolled up, and likewise for days.
+     * The rollups are only an optimization for queries, so a failure is logged rather than retried.
+     */
+    private void writeRollups(String channelName, DateTime minute) {
+        if (minute.getMinuteOfHour() != 59) {
+            return;
+        }
+        try {
+            s3BatchContentDao.writeRollup(channelName, TimeUtil.Unit.HOURS.round(minute), TimeUtil.Unit.HOURS);
+            if (minute.getHourOfDay() == 23) {
+                s3BatchContentDao.writeRollup(channelName, TimeUtil.Unit.DAYS.round(minute), TimeUtil.Unit.DAYS);
+            }
+        } catch (Exception e) {
+            logger.warn("unable to write rollups " + channelName + " " + minute, e);
+        }
+    }
+
     private class S3BatchWriterService extends AbstractScheduledService implements Lockable {
 
         @Override
@@ -14,6 +14,7 @@ import com.flightstats.hub.model.TimeQuery;
 import com.flightstats.hub.util.ChunkOutputStream;
 import com.flightstats.hub.util.TimeUtil;
 import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.commons.io.IOUtils;
@@ -26,6 +27,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketTimeoutException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @SuppressWarnings("Duplicates")
 @Singleton
@@ -33,7 +36,12 @@ public class S3LargeContentDao implements ContentDao {
 
     private final static Logger logger = LoggerFactory.getLogger(S3LargeContentDao.class);
 
+    private static final ExecutorService readExecutor = Executors.newFixedThreadPool(
+            HubProperties.getProperty("s3.largeReadThreads", 16),
+            new ThreadFactoryBuilder().setNameFormat("S3LargeRead-%d").setDaemon(true).build());
+
     private final boolean useEncrypted = HubProperties.isAppEncrypted();
+    private final int readAheadParts = HubProperties.getProperty("s3.largeReadAheadParts", 3);
 
     @Inject
     private MetricsService metricsService;
@@ -186,7 +194,7 @@ public class S3LargeContentDao implements ContentDao {
     private Content getS3Object(String channelName, ContentKey key) throws IOException {
         long start = System.currentTimeMillis();
         try {
-            GetObjectRequest request = new GetObjectRequest(s3BucketName.getS3BucketName(), getS3ContentKey(channelName, key, false));
+            GetObjectRequest request = MultipartDownloadStream.firstPart(s3BucketName.getS3BucketName(), getS3ContentKey(channelName, key, false));
             S3Object object = s3Client.getObject(request);
             ObjectMetadata metadata = object.getObjectMetadata();
             Map<String, String> userData = metadata.getUserMetadata();
@@ -196,7 +204,7 @@ public class S3LargeContentDao implements ContentDao {
                 builder.withContentType(type);
             }
             builder.withContentKey(key);
-            builder.withStream(object.getObjectContent());
+            builder.withStream(new MultipartDownloadStream(s3Client, request, object, readAheadParts, readExecutor));
             builder.withLarge(true);
             return builder.build();
         } catch (AmazonS3Exception e) {
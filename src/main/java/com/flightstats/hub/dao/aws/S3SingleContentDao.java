@@ -58,6 +58,18 @@ public class S3SingleContentDao implements ContentDao {
         });
     }
 
+    /**
+     * The header is read for the metadata, and the bytes are written as they are, since they are already compressed.
+     */
+    @Override
+    public void insertMarshalled(String channelName, ContentKey key, byte[] bytes) throws IOException {
+        Content content = ContentMarshaller.toContent(bytes, key);
+        insert(channelName, content, (metadata) -> {
+            metadata.addUserMetadata("compressed", "true");
+            return bytes;
+        });
+    }
+
     //this is only needed for testing the non-compressed retrieval from S3.
     ContentKey insertOld(String channelName, Content content) {
         return insert(channelName, content, (metadata) -> content.getData());
@@ -5,8 +5,12 @@ import com.flightstats.hub.app.HubProperties;
 import com.flightstats.hub.dao.ContentDao;
 import com.flightstats.hub.exception.FailedReadException;
 import com.flightstats.hub.metrics.ActiveTraces;
+import com.flightstats.hub.metrics.MetricsService;
 import com.flightstats.hub.model.ChannelContentKey;
 import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.spoke.SpokeStore;
+import com.flightstats.hub.util.DiskQueue;
 import com.flightstats.hub.util.Sleeper;
 import com.github.rholder.retry.Retryer;
 import com.github.rholder.retry.RetryerBuilder;
@@ -19,8 +23,18 @@ import com.google.inject.name.Named;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * S3WriteQueue writes items from Spoke to S3 in the background.
+ * The keys are kept in a DiskQueue, so they are not dropped during bursts, and survive a restart.
+ * Keys are written in batches, using the bytes Spoke has stored, so the items are not decoded and compressed again.
+ * The queue's depth is reported as the s3.writeQueue gauge.
+ */
 @SuppressWarnings("WeakerAccess")
 @Singleton
 public class S3WriteQueue {
@@ -28,8 +42,11 @@ public class S3WriteQueue {
     private final static Logger logger = LoggerFactory.getLogger(S3WriteQueue.class);
 
     private static final int THREADS = HubProperties.getProperty("s3.writeQueueThreads", 20);
+    private static final int BATCH_SIZE = HubProperties.getProperty("s3.writeQueueBatchSize", 50);
     private Retryer<Void> retryer = buildRetryer();
-    private BlockingQueue<ChannelContentKey> keys = new LinkedBlockingQueue<>(HubProperties.getProperty("s3.writeQueueSize", 40000));
+    private final DiskQueue keys;
+    private final MetricsService metricsService;
+    private final AtomicLong lastReported = new AtomicLong();
     private ExecutorService executorService = Executors.newFixedThreadPool(THREADS,
             new ThreadFactoryBuilder().setNameFormat("S3WriteQueue-%d").build());
     @Inject
@@ -41,7 +58,11 @@ public class S3WriteQueue {
 
 
     @Inject
-    private S3WriteQueue() throws InterruptedException {
+    private S3WriteQueue(MetricsService metricsService) throws IOException {
+        this.metricsService = metricsService;
+        String defaultPath = new File(HubProperties.getSpokePath(SpokeStore.WRITE)).getParent() + "/s3WriteQueue";
+        keys = new DiskQueue(new File(HubProperties.getProperty("s3.writeQueuePath", defaultPath)),
+                HubProperties.getProperty("s3.writeQueueSegmentSize", 10000));
         for (int i = 0; i < THREADS; i++) {
             executorService.submit(() -> {
                 try {
@@ -56,15 +77,116 @@ public class S3WriteQueue {
         }
     }
 
+    /**
+     * Takes up to BATCH_SIZE keys from the queue, reads the stored bytes of each channel's keys from Spoke together,
+     * and writes them to S3 alternating between channels, so a busy channel does not hold up the others.
+     * Keys which are not returned by the bulk read are written one at a time.
+     */
     private void write() throws InterruptedException {
+        List<DiskQueue.Record> records = new ArrayList<>();
         try {
-            ChannelContentKey key = keys.poll(5, TimeUnit.SECONDS);
-            retryer.call(() -> {
-                writeContent(key);
-                return null;
-            });
+            report();
+            DiskQueue.Record record = keys.poll(5, TimeUnit.SECONDS);
+            while (record != null) {
+                records.add(record);
+                record = records.size() < BATCH_SIZE ? keys.poll(0, TimeUnit.MILLISECONDS) : null;
+            }
+            Map<String, List<ChannelContentKey>> byChannel = new LinkedHashMap<>();
+            for (DiskQueue.Record queued : records) {
+                ChannelContentKey key = ChannelContentKey.fromUrl(queued.getValue());
+                if (key != null) {
+                    byChannel.computeIfAbsent(key.getChannel(), channel -> new ArrayList<>()).add(key);
+                }
+            }
+            List<Iterator<Runnable>> channelWrites = new ArrayList<>();
+            for (Map.Entry<String, List<ChannelContentKey>> entry : byChannel.entrySet()) {
+                channelWrites.add(createWrites(entry.getKey(), entry.getValue()).iterator());
+            }
+            while (!channelWrites.isEmpty()) {
+                Iterator<Iterator<Runnable>> channels = channelWrites.iterator();
+                while (channels.hasNext()) {
+                    Iterator<Runnable> writes = channels.next();
+                    writes.next().run();
+                    if (!writes.hasNext()) {
+                        channels.remove();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            throw e;
         } catch (Exception e) {
             logger.warn("unable to call s3", e);
+        } finally {
+            for (DiskQueue.Record record : records) {
+                complete(record);
+            }
+        }
+    }
+
+    private List<Runnable> createWrites(String channel, List<ChannelContentKey> channelKeys) {
+        Map<ContentKey, byte[]> marshalled = readMarshalled(channel, channelKeys);
+        List<Runnable> writes = new ArrayList<>();
+        for (ChannelContentKey key : channelKeys) {
+            byte[] bytes = marshalled.get(key.getContentKey());
+            writes.add(() -> {
+                try {
+                    retryer.call(() -> {
+                        if (bytes == null) {
+                            writeContent(key);
+                        } else {
+                            writeMarshalled(key, bytes);
+                        }
+                        return null;
+                    });
+                } catch (Exception e) {
+                    logger.warn("unable to write " + key, e);
+                }
+            });
+        }
+        return writes;
+    }
+
+    private Map<ContentKey, byte[]> readMarshalled(String channel, List<ChannelContentKey> channelKeys) {
+        if (channelKeys.size() == 1) {
+            return Collections.emptyMap();
+        }
+        try {
+            List<ContentKey> contentKeys = new ArrayList<>();
+            for (ChannelContentKey key : channelKeys) {
+                contentKeys.add(key.getContentKey());
+            }
+            return spokeWriteContentDao.readMarshalled(channel, contentKeys);
+        } catch (Exception e) {
+            logger.warn("unable to bulk read " + channel, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private void complete(DiskQueue.Record record) {
+        if (record != null) {
+            try {
+                keys.complete(record);
+            } catch (IOException e) {
+                logger.warn("unable to complete " + record.getValue(), e);
+            }
+        }
+    }
+
+    private void report() {
+        long now = System.currentTimeMillis();
+        long last = lastReported.get();
+        if (now - last >= TimeUnit.SECONDS.toMillis(10) && lastReported.compareAndSet(last, now)) {
+            metricsService.gauge("s3.writeQueue", keys.size());
+        }
+    }
+
+    private void writeMarshalled(ChannelContentKey key, byte[] bytes) throws Exception {
+        ActiveTraces.start("S3WriteQueue.writeMarshalled", key);
+        try {
+            logger.trace("writing marshalled {}", key.getContentKey());
+            s3SingleContentDao.insertMarshalled(key.getChannel(), key.getContentKey(), bytes);
+        } finally {
+            ActiveTraces.end();
         }
     }
 
@@ -86,9 +208,10 @@ public class S3WriteQueue {
     }
 
     public void add(ChannelContentKey key) {
-        boolean value = keys.offer(key);
-        if (!value) {
-            logger.warn("Add to queue failed - out of queue space. key= {}", key);
+        try {
+            keys.add(key.toUrl());
+        } catch (IOException e) {
+            logger.warn("Add to queue failed. key= " + key, e);
         }
     }
 
@@ -98,7 +221,7 @@ public class S3WriteQueue {
             count++;
             logger.info("waiting for keys {}", keys.size());
             if (count >= 60) {
-                logger.warn("waited too long for keys {}", keys.size());
+                logger.warn("waited too long for keys {}, they will be written after a restart", keys.size());
                 return;
             }
             Sleeper.sleepQuietly(1000);
@@ -7,7 +7,7 @@ import com.flightstats.hub.exception.FailedWriteException;
 import com.flightstats.hub.metrics.ActiveTraces;
 import com.flightstats.hub.metrics.Traces;
 import com.flightstats.hub.model.*;
-import com.flightstats.hub.spoke.FileSpokeStore;
+import com.flightstats.hub.spoke.LocalSpokeStore;
 import com.flightstats.hub.util.TimeUtil;
 import com.google.common.base.Optional;
 import com.google.inject.Inject;
@@ -30,7 +30,7 @@ public class SingleContentService implements ContentService {
 
     @Inject
     @Named("WRITE") //this isn't great, but java ¯\_(ツ)_/¯
-    private FileSpokeStore fileSpokeStore;
+    private LocalSpokeStore fileSpokeStore;
 
     @Override
     public ContentKey insert(String channelName, Content content) throws Exception {
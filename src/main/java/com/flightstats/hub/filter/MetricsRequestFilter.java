@@ -52,35 +52,46 @@ public class MetricsRequestFilter implements ContainerRequestFilter, ContainerRe
             }
 
             ContainerRequestContext request = requestState.getRequest();
-            long time = System.currentTimeMillis() - requestState.getStart();
-            String endpoint = getRequestTemplate(request);
+            ContainerResponseContext response = requestState.getResponse();
+            requestStats(requestState.getStart(), request.getMethod(), getRequestTemplate(request),
+                    RequestUtils.getChannelName(request), RequestUtils.getTag(request), response == null ? 0 : response.getStatus());
+        } catch (Exception e) {
+            logger.error("metrics request error", e);
+        } finally {
+            threadLocal.remove();
+        }
+    }
+
+    /**
+     * Sends the request time and error metrics for a request, for handlers which serve requests outside of Jersey.
+     */
+    public static void requestStats(long start, String method, String endpoint, String channel, String tag, int returnCode) {
+        try {
+            long time = System.currentTimeMillis() - start;
 
             Map<String, String> tags = new HashMap<>();
-            tags.put("method", request.getMethod());
+            tags.put("method", method);
             tags.put("call", tags.get("method") + endpoint);
 
-            String channel = RequestUtils.getChannelName(request);
             if (!isBlank(channel)) {
                 tags.put("channel", channel);
             }
-            String tag = RequestUtils.getTag(request);
             if (!isBlank(tag)) {
                 tags.put("tag", tag);
             }
 
             if (isBlank(endpoint)) {
-                logger.trace("no endpoint, path: {}", request.getUriInfo().getPath());
+                logger.trace("no endpoint, method: {}", method);
             } else if (tags.get("call").endsWith("/shutdown")) {
                 logger.info("call to shutdown, ignoring datadog time {}", time);
             } else {
                 String[] tagArray = getTagArray(tags);
                 logger.trace("DataDog data sent: {}", Arrays.toString(tagArray));
                 if (metricsService.shouldLog(channel)) {
-                    metricsService.time("request", requestState.getStart(), tagArray);
+                    metricsService.time("request", start, tagArray);
                 }
             }
             logger.trace("request {}, time: {}", tags.get("endpoint"), time);
-            int returnCode = requestState.getResponse().getStatus();
             if (returnCode > 400 && returnCode != 404) {
                 tags.put("errorCode", String.valueOf(returnCode));
                 String[] tagArray = getTagArray(tags, "errorCode", "call", "channel");
@@ -89,8 +100,6 @@ public class MetricsRequestFilter implements ContainerRequestFilter, ContainerRe
             }
         } catch (Exception e) {
             logger.error("metrics request error", e);
-        } finally {
-            threadLocal.remove();
         }
     }
 
@@ -46,10 +46,11 @@ public class ChannelConfig implements Serializable, NamedType {
     private boolean protect;
     private DateTime mutableTime;
     private boolean allowZeroBytes;
+    private String compression;
 
     private ChannelConfig(String name, String owner, Date creationDate, long ttlDays, long maxItems, boolean keepForever, String description,
                           Set<String> tags, String replicationSource, String storage,
-                          boolean protect, DateTime mutableTime, boolean allowZeroBytes, String displayName) {
+                          boolean protect, DateTime mutableTime, boolean allowZeroBytes, String displayName, String compression) {
         this.name = StringUtils.trim(name);
         this.displayName = StringUtils.defaultIfBlank(StringUtils.trim(displayName), this.name);
         this.owner = StringUtils.trim(owner);
@@ -59,6 +60,7 @@ public class ChannelConfig implements Serializable, NamedType {
         this.replicationSource = replicationSource;
         this.mutableTime = mutableTime;
         this.allowZeroBytes = allowZeroBytes;
+        this.compression = StringUtils.upperCase(StringUtils.trimToEmpty(compression));
         this.keepForever = keepForever;  // keepForever overrides all other retention policies
         if (this.keepForever) {
             this.ttlDays = 0;
@@ -131,6 +133,7 @@ public class ChannelConfig implements Serializable, NamedType {
             builder.mutableTime(HubDateTimeTypeAdapter.deserialize(rootNode.get("mutableTime").asText()));
         }
         if (rootNode.has("allowZeroBytes")) builder.allowZeroBytes(rootNode.get("allowZeroBytes").asBoolean());
+        if (rootNode.has("compression")) builder.compression(getString(rootNode.get("compression")));
         return builder.build();
     }
 
@@ -253,6 +256,10 @@ public class ChannelConfig implements Serializable, NamedType {
         return displayName;
     }
 
+    public String getCompression() {
+        return this.compression;
+    }
+
     public String getLowerCaseName() {
         return getDisplayName().toLowerCase();
     }
@@ -294,6 +301,10 @@ public class ChannelConfig implements Serializable, NamedType {
         if (this$mutableTime == null ? other$mutableTime != null : !this$mutableTime.equals(other$mutableTime))
             return false;
         if (this.isAllowZeroBytes() != other.isAllowZeroBytes()) return false;
+        final Object this$compression = this.getCompression();
+        final Object other$compression = other.getCompression();
+        if (this$compression == null ? other$compression != null : !this$compression.equals(other$compression))
+            return false;
         return true;
     }
 
@@ -324,11 +335,13 @@ public class ChannelConfig implements Serializable, NamedType {
         final Object $mutableTime = this.getMutableTime();
         result = result * PRIME + ($mutableTime == null ? 43 : $mutableTime.hashCode());
         result = result * PRIME + (this.isAllowZeroBytes() ? 79 : 97);
+        final Object $compression = this.getCompression();
+        result = result * PRIME + ($compression == null ? 43 : $compression.hashCode());
         return result;
     }
 
     public String toString() {
-        return "com.flightstats.hub.model.ChannelConfig(name=" + this.getName() + ", owner=" + this.getOwner() + ", creationDate=" + this.getCreationDate() + ", ttlDays=" + this.getTtlDays() + ", maxItems=" + this.getMaxItems() + ", description=" + this.getDescription() + ", tags=" + this.getTags() + ", replicationSource=" + this.getReplicationSource() + ", storage=" + this.getStorage() + ", protect=" + this.isProtect() + ", mutableTime=" + this.getMutableTime() + ", allowZeroBytes=" + this.isAllowZeroBytes() + ")";
+        return "com.flightstats.hub.model.ChannelConfig(name=" + this.getName() + ", owner=" + this.getOwner() + ", creationDate=" + this.getCreationDate() + ", ttlDays=" + this.getTtlDays() + ", maxItems=" + this.getMaxItems() + ", description=" + this.getDescription() + ", tags=" + this.getTags() + ", replicationSource=" + this.getReplicationSource() + ", storage=" + this.getStorage() + ", protect=" + this.isProtect() + ", mutableTime=" + this.getMutableTime() + ", allowZeroBytes=" + this.isAllowZeroBytes() + ", compression=" + this.getCompression() + ")";
     }
 
     public ChannelConfigBuilder toBuilder() {
@@ -351,6 +364,7 @@ public class ChannelConfig implements Serializable, NamedType {
         private long maxItems;
         private DateTime mutableTime;
         private String displayName;
+        private String compression = "";
 
         ChannelConfigBuilder() {
         }
@@ -370,6 +384,7 @@ public class ChannelConfig implements Serializable, NamedType {
             maxItems(config.getMaxItems());
             mutableTime(config.getMutableTime());
             displayName(config.getDisplayName());
+            compression(config.getCompression());
         }
 
         public ChannelConfigBuilder tags(List<String> tagList) {
@@ -449,8 +464,13 @@ public class ChannelConfig implements Serializable, NamedType {
             return this;
         }
 
+        public ChannelConfigBuilder compression(String compression) {
+            this.compression = compression;
+            return this;
+        }
+
         public ChannelConfig build() {
-            return new ChannelConfig(name, owner, creationDate, ttlDays, maxItems, keepForever, description, tags, replicationSource, storage, protect, mutableTime, allowZeroBytes, displayName);
+            return new ChannelConfig(name, owner, creationDate, ttlDays, maxItems, keepForever, description, tags, replicationSource, storage, protect, mutableTime, allowZeroBytes, displayName, compression);
         }
 
     }
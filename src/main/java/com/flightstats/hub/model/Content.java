@@ -1,6 +1,7 @@
 package com.flightstats.hub.model;
 
 import com.flightstats.hub.app.HubProperties;
+import com.flightstats.hub.dao.Compression;
 import com.flightstats.hub.dao.ContentMarshaller;
 import com.flightstats.hub.metrics.ActiveTraces;
 import com.flightstats.hub.util.HubUtils;
@@ -31,6 +32,8 @@ public class Content implements Serializable {
     private transient boolean isHistorical;
     private boolean forceWrite;
     private boolean replicated;
+    //compression is the codec the item is, or will be, marshalled with.  null uses the hub default.
+    private Compression compression;
 
     private Content(Builder builder) {
         contentKey = builder.contentKey;
@@ -41,6 +44,7 @@ public class Content implements Serializable {
         forceWrite = builder.forceWrite;
         isLarge = builder.large;
         size = builder.size;
+        compression = builder.compression;
     }
 
     public static Builder builder() {
@@ -75,6 +79,10 @@ public class Content implements Serializable {
         this.contentLength = contentLength;
     }
 
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
     public void setHistorical(boolean isHistorical) {
         this.isHistorical = isHistorical;
     }
@@ -160,6 +168,10 @@ public class Content implements Serializable {
         return this.threads;
     }
 
+    public Compression getCompression() {
+        return this.compression;
+    }
+
     public boolean equals(Object o) {
         if (o == this) return true;
         if (!(o instanceof Content)) return false;
@@ -205,6 +217,7 @@ public class Content implements Serializable {
         contentBuilder.withForceWrite(content.isForceWrite());
         contentBuilder.withLarge(content.isLarge());
         contentBuilder.withThreads(content.getThreads());
+        contentBuilder.withCompression(content.getCompression());
 
         return contentBuilder.build();
     }
@@ -218,6 +231,7 @@ public class Content implements Serializable {
         private int threads;
         private boolean forceWrite;
         private boolean large;
+        private Compression compression;
 
         public Builder withContentType(String contentType) {
             this.contentType = Optional.fromNullable(contentType);
@@ -249,6 +263,11 @@ public class Content implements Serializable {
             return this;
         }
 
+        public Builder withCompression(Compression compression) {
+            this.compression = compression;
+            return this;
+        }
+
         public Content build() {
             return new Content(this);
         }
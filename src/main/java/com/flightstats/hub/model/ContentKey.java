@@ -10,14 +10,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
-import java.text.DecimalFormat;
+import java.util.Arrays;
 
 public class ContentKey implements ContentPath {
     public static final ContentKey NONE = new ContentKey(TimeUtil.BIG_BANG, "none");
     private final static Logger logger = LoggerFactory.getLogger(ContentKey.class);
-    private static final DecimalFormat format = new DecimalFormat("000000");
-    private final DateTime time;
+    private static final int URL_TIME_LENGTH = 24;
+    private static final int BULK_HASH_DIGITS = 6;
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    private final long millis;
     private final String hash;
+    //time is created from millis when it is first asked for
+    private DateTime time;
 
     public ContentKey() {
         this(TimeUtil.now());
@@ -28,16 +32,23 @@ public class ContentKey implements ContentPath {
     }
 
     public ContentKey(DateTime time, String hash) {
-        this.time = time;
+        this(time.getMillis(), hash);
+        if (DateTimeZone.UTC.equals(time.getZone())) {
+            this.time = time;
+        }
+    }
+
+    public ContentKey(long millis, String hash) {
+        this.millis = millis;
         this.hash = hash;
     }
 
     public ContentKey(int year, int month, int day, int hour, int minute, int second, int millis) {
-        this(new DateTime(year, month, day, hour, minute, second, millis, DateTimeZone.UTC));
+        this(year, month, day, hour, minute, second, millis, com.flightstats.hub.util.StringUtils.randomAlphaNumeric(6));
     }
 
     public ContentKey(int year, int month, int day, int hour, int minute, int second, int millis, String hash) {
-        this(new DateTime(year, month, day, hour, minute, second, millis, DateTimeZone.UTC), hash);
+        this(toMillis(year, month, day, hour, minute, second, millis), hash);
     }
 
     public static ContentKey lastKey(DateTime time) {
@@ -57,40 +68,118 @@ public class ContentKey implements ContentPath {
 
     public static Optional<ContentKey> fromUrl(String key) {
         try {
-            int year = Integer.parseInt(key.substring(0, 4));
-            int month = Integer.parseInt(key.substring(5, 7));
-            int day = Integer.parseInt(key.substring(8, 10));
-            int hour = Integer.parseInt(key.substring(11, 13));
-            int minute = Integer.parseInt(key.substring(14, 16));
-            int second = Integer.parseInt(key.substring(17, 19));
-            int millis = Integer.parseInt(key.substring(20, 23));
-            String hash = key.substring(24);
-            DateTime dateTime = new DateTime(year, month, day, hour, minute, second, millis, DateTimeZone.UTC);
-            return Optional.of(new ContentKey(dateTime, hash));
+            if (key.length() < URL_TIME_LENGTH) {
+                throw new IllegalArgumentException("key is too short");
+            }
+            long millis = toMillis(digits(key, 0, 4), digits(key, 5, 2), digits(key, 8, 2), digits(key, 11, 2),
+                    digits(key, 14, 2), digits(key, 17, 2), digits(key, 20, 3));
+            return Optional.of(new ContentKey(millis, key.substring(URL_TIME_LENGTH)));
         } catch (Exception e) {
             logger.trace("unable to parse {} {} ", key, e.getMessage());
             return Optional.absent();
         }
     }
 
-    private synchronized static String bulkHash(int number) {
-        return format.format(number);
+    private static int digits(String key, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            int digit = key.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("expected a digit at " + i);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Converts the UTC fields to epoch millis, using the days from civil algorithm
+     * from http://howardhinnant.github.io/date_algorithms.html
+     */
+    private static long toMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59 || millis < 0 || millis > 999) {
+            throw new IllegalArgumentException("invalid time " + year + "/" + month + "/" + day + "/"
+                    + hour + "/" + minute + "/" + second + "/" + millis);
+        }
+        int y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097 + dayOfEra - 719468;
+        return days * MILLIS_PER_DAY + ((hour * 60 + minute) * 60 + second) * 1000L + millis;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    static String bulkHash(int number) {
+        String digits = Integer.toString(number);
+        int pad = BULK_HASH_DIGITS - digits.length();
+        if (pad <= 0) {
+            return digits;
+        }
+        char[] chars = new char[BULK_HASH_DIGITS];
+        Arrays.fill(chars, 0, pad, '0');
+        digits.getChars(0, digits.length(), chars, pad);
+        return new String(chars);
     }
 
     public static ContentKey bulkKey(ContentKey master, int index) {
-        return new ContentKey(master.getTime(), master.getHash() + ContentKey.bulkHash(index));
+        return new ContentKey(master.millis, master.getHash() + ContentKey.bulkHash(index));
     }
 
+    /**
+     * Formats yyyy/MM/dd/HH/mm/ss/SSS/hash in UTC, using the civil from days algorithm
+     * from http://howardhinnant.github.io/date_algorithms.html
+     */
     public String toUrl() {
-        return TimeUtil.millis(time) + hash;
+        long days = Math.floorDiv(millis, MILLIS_PER_DAY);
+        int millisOfDay = (int) (millis - days * MILLIS_PER_DAY);
+        long shifted = days + 719468;
+        long era = Math.floorDiv(shifted, 146097);
+        int dayOfEra = (int) (shifted - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            return TimeUtil.millis(getTime()) + hash;
+        }
+        char[] chars = new char[URL_TIME_LENGTH + hash.length()];
+        write(chars, 0, (int) year, 4);
+        write(chars, 5, month, 2);
+        write(chars, 8, day, 2);
+        write(chars, 11, millisOfDay / 3600000, 2);
+        write(chars, 14, millisOfDay / 60000 % 60, 2);
+        write(chars, 17, millisOfDay / 1000 % 60, 2);
+        write(chars, 20, millisOfDay % 1000, 3);
+        hash.getChars(0, hash.length(), chars, URL_TIME_LENGTH);
+        return new String(chars);
+    }
+
+    private static void write(char[] chars, int start, int value, int length) {
+        for (int i = start + length - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        chars[start + length] = '/';
     }
 
     public long getMillis() {
-        return time.getMillis();
+        return millis;
     }
 
     public String toString(DateTimeFormatter pathFormatter) {
-        return time.toString(pathFormatter) + hash;
+        return getTime().toString(pathFormatter) + hash;
     }
 
     @Override
@@ -105,30 +194,23 @@ public class ContentKey implements ContentPath {
         }
         if (other instanceof ContentKey) {
             ContentKey key = (ContentKey) other;
-            int diff = time.compareTo(key.getTime());
+            int diff = Long.compare(millis, key.millis);
             if (diff == 0) {
                 diff = hash.compareTo(key.hash);
             }
             return diff;
         }
+        long endMillis;
         if (other instanceof SecondPath) {
-            SecondPath secondPath = (SecondPath) other;
-            DateTime endTime = secondPath.getTime().plusSeconds(1);
-            int diff = time.compareTo(endTime);
-            if (diff == 0) {
-                return 1;
-            }
-            return diff;
-
+            endMillis = other.getTime().getMillis() + 1000;
         } else {
-            MinutePath minutePath = (MinutePath) other;
-            DateTime endTime = minutePath.getTime().plusMinutes(1);
-            int diff = time.compareTo(endTime);
-            if (diff == 0) {
-                return 1;
-            }
-            return diff;
+            endMillis = other.getTime().getMillis() + 60 * 1000;
         }
+        int diff = Long.compare(millis, endMillis);
+        if (diff == 0) {
+            return 1;
+        }
+        return diff;
     }
 
     public byte[] toBytes() {
@@ -136,16 +218,21 @@ public class ContentKey implements ContentPath {
     }
 
     public String toZk() {
-        return time.getMillis() + ":" + hash;
+        return millis + ":" + hash;
     }
 
     public ContentKey fromZk(String value) {
-        String[] split = value.split(":");
-        return new ContentKey(new DateTime(Long.parseLong(split[0]), DateTimeZone.UTC), split[1]);
+        int separator = value.indexOf(':');
+        return new ContentKey(Long.parseLong(value.substring(0, separator)), value.substring(separator + 1));
     }
 
     public DateTime getTime() {
-        return this.time;
+        DateTime dateTime = time;
+        if (dateTime == null) {
+            dateTime = new DateTime(millis, DateTimeZone.UTC);
+            time = dateTime;
+        }
+        return dateTime;
     }
 
     public String getHash() {
@@ -157,9 +244,7 @@ public class ContentKey implements ContentPath {
         if (!(o instanceof ContentKey)) return false;
         final ContentKey other = (ContentKey) o;
         if (!other.canEqual((Object) this)) return false;
-        final Object this$time = this.getTime();
-        final Object other$time = other.getTime();
-        if (this$time == null ? other$time != null : !this$time.equals(other$time)) return false;
+        if (this.millis != other.millis) return false;
         final Object this$hash = this.getHash();
         final Object other$hash = other.getHash();
         if (this$hash == null ? other$hash != null : !this$hash.equals(other$hash)) return false;
@@ -169,8 +254,7 @@ public class ContentKey implements ContentPath {
     public int hashCode() {
         final int PRIME = 59;
         int result = 1;
-        final Object $time = this.getTime();
-        result = result * PRIME + ($time == null ? 43 : $time.hashCode());
+        result = result * PRIME + (int) (millis >>> 32 ^ millis);
         final Object $hash = this.getHash();
         result = result * PRIME + ($hash == null ? 43 : $hash.hashCode());
         return result;
@@ -18,5 +18,6 @@ public class StreamResults {
     private final Consumer<Content> callback;
     private final boolean descending;
     private final boolean skipLarge;
+    private final boolean bulkOnly;
 
 }
@@ -3,9 +3,10 @@ package com.flightstats.hub.spoke;
 import com.flightstats.hub.app.HubProperties;
 import com.flightstats.hub.app.HubServices;
 import com.flightstats.hub.dao.ChannelService;
+import com.flightstats.hub.dao.TtlDeleter;
 import com.flightstats.hub.dao.TtlEnforcer;
+import com.flightstats.hub.metrics.MetricsService;
 import com.flightstats.hub.model.ChannelConfig;
-import com.flightstats.hub.util.Commander;
 import com.flightstats.hub.util.TimeUtil;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.inject.Inject;
@@ -14,8 +15,9 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
 
 @Singleton
 public class ChannelTtlEnforcer {
@@ -23,6 +25,8 @@ public class ChannelTtlEnforcer {
     private final String spokePath = HubProperties.getSpokePath(SpokeStore.WRITE);
     @Inject
     private ChannelService channelService;
+    @Inject
+    private MetricsService metricsService;
 
     @Inject
     public ChannelTtlEnforcer() {
@@ -31,14 +35,12 @@ public class ChannelTtlEnforcer {
         }
     }
 
-    private Consumer<ChannelConfig> handleCleanup() {
-        return channel -> {
+    private BiConsumer<ChannelConfig, TtlDeleter> handleCleanup() {
+        return (channel, deleter) -> {
             if (channel.getTtlDays() > 0) {
-                String channelPath = spokePath + "/" + channel.getDisplayName();
                 DateTime channelTTL = TimeUtil.stable().minusDays((int) channel.getTtlDays());
-                for (int i = 0; i < 3; i++) {
-                    Commander.run(new String[]{"rm", "-rf", channelPath + "/" + TimeUtil.days(channelTTL.minusDays(i))}, 1);
-                }
+                deleter.deleteBefore(new File(spokePath, channel.getDisplayName()),
+                        TimeUtil.Unit.DAYS.round(channelTTL).plusDays(1));
             }
         };
     }
@@ -49,8 +51,11 @@ public class ChannelTtlEnforcer {
             try {
                 long start = System.currentTimeMillis();
                 logger.info("running channel cleanup");
-                TtlEnforcer.enforce(spokePath, channelService, handleCleanup());
-                logger.info("completed channel cleanup {}", (System.currentTimeMillis() - start));
+                TtlDeleter deleter = TtlEnforcer.enforce(spokePath, channelService, handleCleanup());
+                logger.info("completed channel cleanup {} files {} bytes {}", (System.currentTimeMillis() - start),
+                        deleter.getFiles(), deleter.getBytes());
+                metricsService.count("channel.ttl.files", deleter.getFiles());
+                metricsService.count("channel.ttl.bytes", deleter.getBytes());
             } catch (Exception e) {
                 logger.info("issue cleaning up channels in spoke", e);
             }
@@ -14,13 +14,17 @@ import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.NotFoundException;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Collection;
 
 /**
  * Direct interactions with the file system
  */
-public class FileSpokeStore {
+public class FileSpokeStore implements LocalSpokeStore {
 
     private final static Logger logger = LoggerFactory.getLogger(FileSpokeStore.class);
     private final String spokePath;
@@ -39,10 +43,12 @@ public class FileSpokeStore {
         }
     }
 
+    @Override
     public boolean insert(String path, byte[] payload) {
         return insert(path, new ByteArrayInputStream(payload));
     }
 
+    @Override
     public boolean insert(String path, InputStream input) {
         File file = spokeFilePathPart(path);
         logger.trace("insert {} {} {}", file, file.getParentFile().mkdirs(), file.canExecute());
@@ -57,12 +63,14 @@ public class FileSpokeStore {
         }
     }
 
+    @Override
     public byte[] read(String path) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         read(path, baos);
         return baos.toByteArray();
     }
 
+    @Override
     public void read(String path, OutputStream output) {
         File file = spokeFilePathPart(path);
         logger.trace("reading {}", file);
@@ -82,21 +90,39 @@ public class FileSpokeStore {
         }
     }
 
+    @Override
+    public ByteBuffer readBuffer(String path) throws IOException {
+        File file = spokeFilePathPart(path);
+        if (!file.exists() || !file.canExecute()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return LocalSpokeStore.readRegion(channel, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            logger.debug("file not found {}", path);
+            return null;
+        }
+    }
+
+    @Override
     public String readKeysInBucket(String path) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         keysInBucket(path, baos);
         return baos.toString();
     }
 
-    void readKeysInBucket(String path, OutputStream output) {
+    @Override
+    public void readKeysInBucket(String path, OutputStream output) {
         keysInBucket(path, output);
     }
 
+    @Override
     public boolean delete(String path) throws Exception {
         FileUtils.deleteDirectory(new File(spokePath + path));
         return true;
     }
 
+    @Override
     public boolean deleteFile(String path) throws Exception {
         return FileUtils.deleteQuietly(spokeFilePathPart(path));
     }
@@ -178,6 +204,7 @@ public class FileSpokeStore {
         return Arrays.asList(split);
     }
 
+    @Override
     public String getLatest(String channel, String limitPath) {
         logger.trace("latest {} {}", channel, limitPath);
         ContentKey limitKey = ContentKey.fromUrl(limitPath).get();
@@ -215,9 +242,7 @@ public class FileSpokeStore {
         return getLatest(channel, limitPath, previous);
     }
 
-    /**
-     * This may return more than the request count, as this does not do any sorting.
-     */
+    @Override
     public void getNext(String channel, String startKey, int count, OutputStream output) throws IOException {
         DateTime now = TimeUtil.now();
         String channelPath = spokePath + channel + "/";
@@ -252,7 +277,8 @@ public class FileSpokeStore {
         } while (found < count && minutePath.getTime().isBefore(now));
     }
 
-    void enforceTtl(String channel, DateTime dateTime) {
+    @Override
+    public void enforceTtl(String channel, DateTime dateTime) {
         String limitPath = TimeUtil.minutes(dateTime);
         logger.debug("enforceTtl {} {}", channel, limitPath);
         String[] split = StringUtils.split(limitPath, "/");
@@ -0,0 +1,304 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.dao.ContentKeyUtil;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.util.TimeUtil;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IndexedSpokeStore keeps a sorted set of keys for each channel in memory, so that
+ * getLatest, getNext and readKeysInBucket can be answered without touching the file system.
+ * <p>
+ * The index is rebuilt from disk at startup, and is complete from coverageStart onwards.
+ * coverageStart follows the spoke ttl on every insert and query, and the keys before it are pruned.
+ * Any request which reaches before coverageStart is passed through to the delegate store.
+ */
+public class IndexedSpokeStore implements LocalSpokeStore {
+
+    private final static Logger logger = LoggerFactory.getLogger(IndexedSpokeStore.class);
+    private static final long PRUNE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final LocalSpokeStore delegate;
+    private final String spokePath;
+    private final int spokeTtlMinutes;
+    private final Map<String, NavigableSet<ContentKey>> channels = new ConcurrentHashMap<>();
+    private final CountDownLatch rebuilt = new CountDownLatch(1);
+    private final AtomicLong lastPrune = new AtomicLong();
+    private volatile DateTime coverageStart;
+    private volatile boolean indexed;
+
+    IndexedSpokeStore(LocalSpokeStore delegate, String spokePath, int spokeTtlMinutes) {
+        this.delegate = delegate;
+        this.spokePath = StringUtils.appendIfMissing(spokePath, "/");
+        this.spokeTtlMinutes = spokeTtlMinutes;
+        this.coverageStart = TimeUtil.Unit.HOURS.round(TimeUtil.now().minusMinutes(spokeTtlMinutes));
+        Thread thread = new Thread(this::rebuild, "spoke-key-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            String[] channelNames = new File(spokePath).list();
+            if (channelNames != null) {
+                for (String channel : channelNames) {
+                    DateTime hour = coverageStart;
+                    DateTime end = TimeUtil.now().plusHours(1);
+                    while (hour.isBefore(end)) {
+                        String keys = delegate.readKeysInBucket(channel + "/" + TimeUtil.hours(hour));
+                        List<ContentKey> contentKeys = new ArrayList<>();
+                        ContentKeyUtil.convertKeyStrings(keys, contentKeys);
+                        getKeys(channel).addAll(contentKeys);
+                        hour = hour.plusHours(1);
+                    }
+                }
+            }
+            indexed = true;
+            logger.info("rebuilt spoke key index {} for {} channels in {} ms", spokePath, channels.size(),
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.warn("unable to rebuild spoke key index " + spokePath, e);
+        } finally {
+            lastPrune.set(System.currentTimeMillis());
+            rebuilt.countDown();
+        }
+    }
+
+    @VisibleForTesting
+    boolean awaitRebuild(long timeout, TimeUnit unit) throws InterruptedException {
+        return rebuilt.await(timeout, unit);
+    }
+
+    private NavigableSet<ContentKey> getKeys(String channel) {
+        return channels.computeIfAbsent(channel, name -> new ConcurrentSkipListSet<>());
+    }
+
+    private boolean isCovered(DateTime time) {
+        return indexed && !time.isBefore(coverageStart);
+    }
+
+    /**
+     * Moves coverageStart to the spoke ttl, and clears the keys before it at most once every PRUNE_MILLIS.
+     */
+    private void prune() {
+        if (!indexed) {
+            return;
+        }
+        DateTime pruneTime = TimeUtil.now().minusMinutes(spokeTtlMinutes);
+        coverageStart = pruneTime;
+        long now = System.currentTimeMillis();
+        long previous = lastPrune.get();
+        if (now - previous < PRUNE_MILLIS || !lastPrune.compareAndSet(previous, now)) {
+            return;
+        }
+        ContentKey limit = new ContentKey(pruneTime, "");
+        for (NavigableSet<ContentKey> keys : channels.values()) {
+            keys.headSet(limit).clear();
+        }
+        logger.debug("pruned spoke key index {} before {}", spokePath, pruneTime);
+    }
+
+    @Override
+    public boolean insert(String path, byte[] payload) {
+        return indexInsert(path, delegate.insert(path, payload));
+    }
+
+    @Override
+    public boolean insert(String path, InputStream input) {
+        return indexInsert(path, delegate.insert(path, input));
+    }
+
+    private boolean indexInsert(String path, boolean inserted) {
+        if (inserted) {
+            String channel = StringUtils.substringBefore(path, "/");
+            ContentKeyUtil.convertKey(path).toJavaUtil()
+                    .filter(key -> !key.getTime().isBefore(coverageStart))
+                    .ifPresent(key -> getKeys(channel).add(key));
+            prune();
+        }
+        return inserted;
+    }
+
+    @Override
+    public byte[] read(String path) {
+        return delegate.read(path);
+    }
+
+    @Override
+    public void read(String path, OutputStream output) {
+        delegate.read(path, output);
+    }
+
+    @Override
+    public ByteBuffer readBuffer(String path) throws IOException {
+        return delegate.readBuffer(path);
+    }
+
+    @Override
+    public String readKeysInBucket(String path) {
+        StringBuilder builder = new StringBuilder();
+        if (!readIndexedKeys(path, key -> builder.append(key).append(","))) {
+            return delegate.readKeysInBucket(path);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void readKeysInBucket(String path, OutputStream output) {
+        KeyWriter writer = new KeyWriter(output);
+        if (!readIndexedKeys(path, writer::write)) {
+            delegate.readKeysInBucket(path, output);
+        }
+    }
+
+    /**
+     * @return false if the bucket is not covered by the index
+     */
+    private boolean readIndexedKeys(String path, KeyConsumer consumer) {
+        String[] split = StringUtils.split(path, "/");
+        if (split.length < 2 || split.length > 7) {
+            return false;
+        }
+        prune();
+        DateTime start;
+        DateTime end;
+        try {
+            int[] fields = new int[]{0, 1, 1, 0, 0, 0};
+            for (int i = 1; i < split.length; i++) {
+                fields[i - 1] = Integer.parseInt(split[i]);
+            }
+            start = new DateTime(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], 0, DateTimeZone.UTC);
+            end = bucketEnd(start, split.length - 1);
+        } catch (Exception e) {
+            logger.debug("unable to parse bucket {}", path);
+            return false;
+        }
+        if (!isCovered(start)) {
+            return false;
+        }
+        NavigableSet<ContentKey> keys = channels.get(split[0]);
+        if (keys != null) {
+            try {
+                for (ContentKey key : keys.subSet(new ContentKey(start, ""), true, new ContentKey(end, ""), false)) {
+                    consumer.accept(split[0] + "/" + key.toUrl());
+                }
+            } catch (IOException e) {
+                logger.info("error with " + path, e);
+            }
+        }
+        return true;
+    }
+
+    private static DateTime bucketEnd(DateTime start, int fields) {
+        switch (fields) {
+            case 1:
+                return start.plusYears(1);
+            case 2:
+                return start.plusMonths(1);
+            case 3:
+                return start.plusDays(1);
+            case 4:
+                return start.plusHours(1);
+            case 5:
+                return start.plusMinutes(1);
+            default:
+                return start.plusSeconds(1);
+        }
+    }
+
+    @Override
+    public boolean delete(String path) throws Exception {
+        boolean deleted = delegate.delete(path);
+        channels.remove(StringUtils.substringBefore(path, "/"));
+        return deleted;
+    }
+
+    @Override
+    public boolean deleteFile(String path) throws Exception {
+        boolean deleted = delegate.deleteFile(path);
+        NavigableSet<ContentKey> keys = channels.get(StringUtils.substringBefore(path, "/"));
+        if (keys != null) {
+            ContentKeyUtil.convertKey(path).toJavaUtil().ifPresent(keys::remove);
+        }
+        return deleted;
+    }
+
+    @Override
+    public String getLatest(String channel, String limitPath) {
+        prune();
+        Optional<ContentKey> limitKey = ContentKey.fromUrl(limitPath).toJavaUtil();
+        if (!limitKey.isPresent() || !isCovered(limitKey.get().getTime())) {
+            return delegate.getLatest(channel, limitPath);
+        }
+        NavigableSet<ContentKey> keys = channels.get(channel);
+        if (keys == null) {
+            return null;
+        }
+        ContentKey latest = keys.lower(limitKey.get());
+        if (latest == null || latest.getTime().isBefore(coverageStart)) {
+            return null;
+        }
+        return channel + "/" + latest.toUrl();
+    }
+
+    @Override
+    public void getNext(String channel, String startKey, int count, OutputStream output) throws IOException {
+        prune();
+        Optional<ContentKey> start = ContentKey.fromUrl(startKey).toJavaUtil();
+        if (!start.isPresent() || !isCovered(start.get().getTime())) {
+            delegate.getNext(channel, startKey, count, output);
+            return;
+        }
+        NavigableSet<ContentKey> keys = channels.get(channel);
+        if (keys == null) {
+            return;
+        }
+        KeyWriter writer = new KeyWriter(output);
+        int found = 0;
+        Iterator<ContentKey> iterator = keys.tailSet(start.get(), false).iterator();
+        while (found < count && iterator.hasNext()) {
+            writer.write(channel + "/" + iterator.next().toUrl());
+            found++;
+        }
+    }
+
+    @Override
+    public void enforceTtl(String channel, DateTime dateTime) {
+        delegate.enforceTtl(channel, dateTime);
+    }
+
+    private interface KeyConsumer {
+        void accept(String key) throws IOException;
+    }
+
+    private static class KeyWriter {
+        private final OutputStream output;
+
+        KeyWriter(OutputStream output) {
+            this.output = output;
+        }
+
+        void write(String key) throws IOException {
+            output.write(key.getBytes());
+            output.write(",".getBytes());
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package com.flightstats.hub.spoke;
 
+import com.flightstats.hub.app.HubProperties;
 import com.flightstats.hub.app.HubProvider;
 import com.flightstats.hub.model.SingleTrace;
-import com.google.common.io.ByteStreams;
+import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +14,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 @SuppressWarnings("WeakerAccess")
@@ -20,9 +22,10 @@ import java.util.Arrays;
 public class InternalSpokeResource {
 
     private final static Logger logger = LoggerFactory.getLogger(InternalSpokeResource.class);
-    private static final FileSpokeStore writeSpokeStore = HubProvider.getInstance(FileSpokeStore.class, SpokeStore.WRITE.name());
-    private static final FileSpokeStore readSpokeStore = HubProvider.getInstance(FileSpokeStore.class, SpokeStore.READ.name());
+    private static final LocalSpokeStore writeSpokeStore = HubProvider.getInstance(LocalSpokeStore.class, SpokeStore.WRITE.name());
+    private static final LocalSpokeStore readSpokeStore = HubProvider.getInstance(LocalSpokeStore.class, SpokeStore.READ.name());
     private static final RemoteSpokeStore remoteSpokeStore = HubProvider.getInstance(RemoteSpokeStore.class);
+    private static final long maxBulkReadBytes = HubProperties.getLargePayload();
 
     @Context
     private UriInfo uriInfo;
@@ -32,7 +35,7 @@ public class InternalSpokeResource {
     public Response getPayload(@PathParam("storeName") String storeName,
                                @PathParam("path") String path) {
         try {
-            FileSpokeStore store = getSpokeStoreByName(storeName);
+            LocalSpokeStore store = getSpokeStoreByName(storeName);
             Response.ResponseBuilder builder = Response.ok((StreamingOutput) os -> {
                 try (OutputStream output = new BufferedOutputStream(os)) {
                     store.read(path, output);
@@ -54,7 +57,7 @@ public class InternalSpokeResource {
                                InputStream input) {
         try {
             long start = System.currentTimeMillis();
-            FileSpokeStore store = getSpokeStoreByName(storeName);
+            LocalSpokeStore store = getSpokeStoreByName(storeName);
             if (store.insert(path, input)) {
                 long end = System.currentTimeMillis();
                 if ((end - start) > 4000) {
@@ -75,27 +78,36 @@ public class InternalSpokeResource {
         }
     }
 
-    @Path("{storeName}/bulkKey/{channel}")
+    @Path("{storeName}/bulk/{channel}")
     @PUT
     public Response putBulk(@PathParam("storeName") String storeName,
                             @PathParam("channel") String channel,
                             InputStream input) {
+        return writeBulk(storeName, channel, input);
+    }
+
+    /**
+     * The bulkKey api is used by servers which predate the bulk api, and accepts either framing.
+     */
+    @Path("{storeName}/bulkKey/{channel}")
+    @PUT
+    public Response putBulkKey(@PathParam("storeName") String storeName,
+                               @PathParam("channel") String channel,
+                               InputStream input) {
+        return writeBulk(storeName, channel, input);
+    }
+
+    private Response writeBulk(String storeName, String channel, InputStream input) {
         try {
             long start = System.currentTimeMillis();
-            FileSpokeStore store = getSpokeStoreByName(storeName);
-            ObjectInputStream stream = new ObjectInputStream(input);
-            int items = stream.readInt();
-            for (int i = 0; i < items; i++) {
-                String keyPath = new String(readByesFully(stream));
-                byte[] data = readByesFully(stream);
-                String itemPath = channel + "/" + keyPath;
-                if (!store.insert(itemPath, new ByteArrayInputStream(data))) {
-                    logger.warn("what happened?!?! {}", channel);
-                    return Response
-                            .status(Response.Status.INTERNAL_SERVER_ERROR)
-                            .entity(new SingleTrace("failed", start).toString())
-                            .build();
-                }
+            LocalSpokeStore store = getSpokeStoreByName(storeName);
+            boolean inserted = SpokeBulkMarshaller.read(input, (key, payload) -> store.insert(channel + "/" + key, payload));
+            if (!inserted) {
+                logger.warn("unable to write bulk item {}", channel);
+                return Response
+                        .status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity(new SingleTrace("failed", start).toString())
+                        .build();
             }
             long end = System.currentTimeMillis();
             if ((end - start) > 4000) {
@@ -111,14 +123,40 @@ public class InternalSpokeResource {
         }
     }
 
-    private byte[] readByesFully(ObjectInputStream stream) throws IOException {
-        int size = stream.readInt();
-        byte[] data = new byte[size];
-        ByteStreams.readFully(stream, data);
-        return data;
+    /**
+     * Returns the stored bytes for the keys in the body, one key url per line, in the bulk framing.
+     * Keys which are not found are left out, and the response stops once it reaches the large payload size,
+     * so callers need to read any keys which are missing from the response some other way.
+     */
+    @Path("{storeName}/bulkRead/{channel}")
+    @POST
+    public Response readBulk(@PathParam("storeName") String storeName,
+                             @PathParam("channel") String channel,
+                             String keys) {
+        try {
+            LocalSpokeStore store = getSpokeStoreByName(storeName);
+            return Response.ok((StreamingOutput) os -> {
+                long bytes = 0;
+                try (SpokeBulkMarshaller.Writer writer = new SpokeBulkMarshaller.Writer(os)) {
+                    for (String key : StringUtils.split(keys, "\n")) {
+                        if (bytes >= maxBulkReadBytes) {
+                            break;
+                        }
+                        ByteBuffer buffer = store.readBuffer(channel + "/" + key);
+                        if (buffer != null) {
+                            bytes += buffer.remaining();
+                            writer.write(key, buffer);
+                        }
+                    }
+                }
+            }).build();
+        } catch (Exception e) {
+            logger.warn("unable to read bulk " + channel, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
     }
 
-    private Response getResponse(FileSpokeStore store, String path) {
+    private Response getResponse(LocalSpokeStore store, String path) {
         logger.trace("time {}", path);
         try {
             Response.ResponseBuilder builder = Response.ok((StreamingOutput) os -> {
@@ -133,7 +171,7 @@ public class InternalSpokeResource {
         }
     }
 
-    private FileSpokeStore getSpokeStoreByName(String name) {
+    private LocalSpokeStore getSpokeStoreByName(String name) {
         switch (SpokeStore.from(name)) {
             case WRITE:
                 return writeSpokeStore;
@@ -151,7 +189,7 @@ public class InternalSpokeResource {
                                   @PathParam("Y") String Y,
                                   @PathParam("M") String M,
                                   @PathParam("day") String day) {
-        FileSpokeStore store = getSpokeStoreByName(storeName);
+        LocalSpokeStore store = getSpokeStoreByName(storeName);
         return getResponse(store, C + "/" + Y + "/" + M + "/" + day);
     }
 
@@ -163,7 +201,7 @@ public class InternalSpokeResource {
                                   @PathParam("M") String M,
                                   @PathParam("D") String D,
                                   @PathParam("hour") String hour) {
-        FileSpokeStore store = getSpokeStoreByName(storeName);
+        LocalSpokeStore store = getSpokeStoreByName(storeName);
         return getResponse(store, C + "/" + Y + "/" + M + "/" + D + "/" + hour);
     }
 
@@ -176,7 +214,7 @@ public class InternalSpokeResource {
                                   @PathParam("D") String D,
                                   @PathParam("h") String h,
                                   @PathParam("minute") String minute) {
-        FileSpokeStore store = getSpokeStoreByName(storeName);
+        LocalSpokeStore store = getSpokeStoreByName(storeName);
         return getResponse(store, C + "/" + Y + "/" + M + "/" + D + "/" + h + "/" + minute);
     }
 
@@ -190,7 +228,7 @@ public class InternalSpokeResource {
                                   @PathParam("h") String h,
                                   @PathParam("m") String m,
                                   @PathParam("second") String second) {
-        FileSpokeStore store = getSpokeStoreByName(storeName);
+        LocalSpokeStore store = getSpokeStoreByName(storeName);
         return getResponse(store, C + "/" + Y + "/" + M + "/" + D + "/" + h + "/" + m + "/" + second);
     }
 
@@ -199,7 +237,7 @@ public class InternalSpokeResource {
     public Response delete(@PathParam("storeName") String storeName,
                            @PathParam("path") String path) {
         try {
-            FileSpokeStore store = getSpokeStoreByName(storeName);
+            LocalSpokeStore store = getSpokeStoreByName(storeName);
             store.delete(path);
             return Response.ok().build();
         } catch (Exception e) {
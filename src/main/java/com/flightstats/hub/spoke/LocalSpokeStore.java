@@ -0,0 +1,82 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.app.HubProperties;
+import org.joda.time.DateTime;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The storage a single Spoke node uses for its own items.
+ * Paths are in the form channel/yyyy/MM/dd/HH/mm/ss/SSS/hash
+ * The implementation is selected with the property spoke.storage (file or segment),
+ * and is wrapped by an in memory key index unless spoke.keyIndex is false.
+ */
+public interface LocalSpokeStore {
+
+    boolean insert(String path, byte[] payload);
+
+    boolean insert(String path, InputStream input);
+
+    byte[] read(String path);
+
+    void read(String path, OutputStream output);
+
+    /**
+     * @return the stored bytes of an item, or null if the item is not found.
+     * The bytes are read into a heap buffer, rather than memory mapped, so nothing stays mapped until the buffer is
+     * garbage collected.
+     */
+    ByteBuffer readBuffer(String path) throws IOException;
+
+    String readKeysInBucket(String path);
+
+    void readKeysInBucket(String path, OutputStream output);
+
+    boolean delete(String path) throws Exception;
+
+    boolean deleteFile(String path) throws Exception;
+
+    String getLatest(String channel, String limitPath);
+
+    /**
+     * This may return more than the request count, as this does not do any sorting.
+     */
+    void getNext(String channel, String startKey, int count, OutputStream output) throws IOException;
+
+    void enforceTtl(String channel, DateTime dateTime);
+
+    static ByteBuffer readRegion(FileChannel channel, long position, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("unexpected end of " + channel);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static LocalSpokeStore create(String spokePath, int spokeTtlMinutes) {
+        String storage = HubProperties.getProperty("spoke.storage", "file");
+        LocalSpokeStore store;
+        switch (storage) {
+            case "file":
+                store = new FileSpokeStore(spokePath, spokeTtlMinutes);
+                break;
+            case "segment":
+                store = new SegmentSpokeStore(spokePath, spokeTtlMinutes);
+                break;
+            default:
+                throw new RuntimeException("unsupported spoke.storage " + storage);
+        }
+        if (HubProperties.getProperty("spoke.keyIndex", true)) {
+            return new IndexedSpokeStore(store, spokePath, spokeTtlMinutes);
+        }
+        return store;
+    }
+}
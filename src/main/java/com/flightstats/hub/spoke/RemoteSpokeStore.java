@@ -13,50 +13,58 @@ import com.flightstats.hub.metrics.MetricsService;
 import com.flightstats.hub.metrics.Traces;
 import com.flightstats.hub.model.Content;
 import com.flightstats.hub.model.ContentKey;
-import com.flightstats.hub.rest.RestClient;
-import com.flightstats.hub.util.HubUtils;
 import com.flightstats.hub.util.RuntimeInterruptedException;
 import com.google.common.base.Optional;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
-import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientHandlerException;
-import com.sun.jersey.api.client.ClientResponse;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.ByteBufferContentProvider;
+import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.client.util.StringContentProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.ConnectException;
 import java.net.UnknownHostException;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 @SuppressWarnings({"Convert2streamapi", "Convert2Lambda"})
 public class RemoteSpokeStore {
 
     private final static Logger logger = LoggerFactory.getLogger(RemoteSpokeStore.class);
 
-    private final static Client write_client = RestClient.createClient(1, 5, true, false);
-    private final static Client query_client = RestClient.createClient(5, 15, true, true);
+    private static final int WRITE_TIMEOUT_SECONDS = 5;
+    private static final int QUERY_TIMEOUT_SECONDS = 15;
 
     private final CuratorCluster cluster;
     private final MetricsService metricsService;
-    private final ExecutorService executorService;
+    private final SpokeClient client = new SpokeClient();
     private final int stableSeconds = HubProperties.getProperty("app.stable_seconds", 5);
+    private final int hedgeMax = HubProperties.getProperty("spoke.read.hedgeMax", 1);
+    private final ServerLatencies latencies = new ServerLatencies(
+            HubProperties.getProperty("spoke.read.hedgeWindow", 256),
+            HubProperties.getProperty("spoke.read.hedgePercentile", 95.0),
+            HubProperties.getProperty("spoke.read.hedgeDefaultMillis", 100),
+            HubProperties.getProperty("spoke.read.hedgeMinMillis", 5),
+            HubProperties.getProperty("spoke.read.hedgeMaxMillis", 2000));
+    private final Cache<String, Boolean> legacyBulkServers = CacheBuilder.newBuilder()
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
 
     @Inject
     public RemoteSpokeStore(@Named("SpokeCuratorCluster") CuratorCluster cluster, MetricsService metricsService) {
         this.cluster = cluster;
         this.metricsService = metricsService;
-        executorService = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("RemoteSpokeStore-%d").build());
     }
 
     void testOne(Collection<String> server) throws InterruptedException {
@@ -102,7 +110,7 @@ public class RemoteSpokeStore {
             try {
                 logger.info("calling server {} path {}", server, path);
                 String url = HubHost.getScheme() + server + "/internal/spoke/test/" + path;
-                ClientResponse response = query_client.resource(url).get(ClientResponse.class);
+                ContentResponse response = client.get(url, QUERY_TIMEOUT_SECONDS).get();
                 if (response.getStatus() == 200) {
                     logger.info("success calling {}", response);
                 } else if (response.getStatus() == 404) {
@@ -121,229 +129,367 @@ public class RemoteSpokeStore {
     }
 
     public boolean insert(SpokeStore spokeStore, String path, byte[] payload, String spokeApi, String channel) {
-        return insert(spokeStore, path, payload, cluster.getWriteServers(), ActiveTraces.getLocal(), spokeApi, channel);
+        return insert(spokeStore, path, payload, cluster.getWriteServers(channel), ActiveTraces.getLocal(), spokeApi, channel);
     }
 
     public boolean insert(SpokeStore spokeStore, String path, byte[] payload, Collection<String> servers, Traces traces,
                           String spokeApi, String channel) {
+        BytesContentProvider content = new BytesContentProvider(payload);
+        return insert(path, servers, traces, channel, server -> {
+            String uri = HubHost.getScheme() + server + "/internal/spoke/" + spokeStore + "/" + spokeApi + "/" + path;
+            traces.add(uri);
+            return client.put(uri, content, WRITE_TIMEOUT_SECONDS);
+        });
+    }
+
+    public boolean insertBulk(SpokeStore spokeStore, String channel, List<Content> items) {
+        return insertBulk(spokeStore, channel, items, cluster.getWriteServers(channel), ActiveTraces.getLocal());
+    }
+
+    public boolean insertBulk(SpokeStore spokeStore, String channel, List<Content> items, Collection<String> servers, Traces traces) {
+        ByteBuffer[] buffers = SpokeBulkMarshaller.toBuffers(items);
+        return insert(channel, servers, traces, channel, server -> putBulk(spokeStore, channel, items, buffers, server, traces));
+    }
+
+    /**
+     * Sends the items to the bulk api, falling back to the legacy bulkKey framing for servers which do not have it.
+     */
+    private CompletableFuture<ContentResponse> putBulk(SpokeStore spokeStore, String channel, List<Content> items,
+                                                       ByteBuffer[] buffers, String server, Traces traces) {
+        String baseUri = HubHost.getScheme() + server + "/internal/spoke/" + spokeStore + "/";
+        if (legacyBulkServers.getIfPresent(server) != null) {
+            return putLegacyBulk(baseUri, channel, items, traces);
+        }
+        String uri = baseUri + "bulk/" + channel;
+        traces.add(uri);
+        return client.put(uri, bulkContent(buffers), WRITE_TIMEOUT_SECONDS).thenCompose(response -> {
+            if (response.getStatus() != 404) {
+                return CompletableFuture.completedFuture(response);
+            }
+            logger.info("server {} does not support the bulk api, using bulkKey", server);
+            legacyBulkServers.put(server, true);
+            return putLegacyBulk(baseUri, channel, items, traces);
+        });
+    }
+
+    /**
+     * ByteBufferContentProvider consumes the buffers it is given, so each replica gets its own provider,
+     * over duplicates which share the framed bytes without copying them.
+     */
+    static ByteBufferContentProvider bulkContent(ByteBuffer[] buffers) {
+        ByteBuffer[] duplicates = new ByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            duplicates[i] = buffers[i].duplicate();
+        }
+        return new ByteBufferContentProvider(duplicates);
+    }
+
+    private CompletableFuture<ContentResponse> putLegacyBulk(String baseUri, String channel, List<Content> items, Traces traces) {
+        String uri = baseUri + "bulkKey/" + channel;
+        traces.add(uri);
+        try {
+            return client.put(uri, new BytesContentProvider(SpokeBulkMarshaller.toLegacyBytes(items)), WRITE_TIMEOUT_SECONDS);
+        } catch (IOException e) {
+            CompletableFuture<ContentResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * Sends the write to every server, and waits up to stableSeconds for a quorum of them to succeed.
+     *
+     * @return true if any server succeeded
+     */
+    private boolean insert(String path, Collection<String> servers, Traces traces, String channel,
+                           Function<String, CompletableFuture<ContentResponse>> writer) {
         int quorum = getQuorum(servers.size());
-        CountDownLatch quorumLatch = new CountDownLatch(quorum);
-        AtomicBoolean firstComplete = new AtomicBoolean();
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger pending = new AtomicInteger(servers.size());
+        CompletableFuture<Boolean> quorumFuture = new CompletableFuture<>();
         for (final String server : servers) {
-            executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    setThread(path);
-                    String uri = HubHost.getScheme() + server + "/internal/spoke/" + spokeStore + "/" + spokeApi + "/" + path;
-                    traces.add(uri);
-                    ClientResponse response = null;
-                    try {
-                        response = write_client.resource(uri).put(ClientResponse.class, payload);
-                        traces.add(server, response.getEntity(String.class));
-                        if (response.getStatus() == 201) {
-                            if (firstComplete.compareAndSet(false, true)) {
-                                metricsService.time(channel, "heisenberg", traces.getStart());
-                            }
-                            quorumLatch.countDown();
-                            logger.trace("server {} path {} response {}", server, path, response);
-                        } else {
-                            logger.info("write failed: server {} path {} response {}", server, path, response);
+            writer.apply(server).whenComplete((response, e) -> {
+                if (e != null) {
+                    traces.add(server, e.getMessage());
+                    logFailure("write failed: " + server + " " + path, server, e);
+                } else {
+                    traces.add(server, response.getContentAsString());
+                    if (response.getStatus() == 201) {
+                        if (successes.incrementAndGet() == 1) {
+                            metricsService.time(channel, "heisenberg", traces.getStart());
                         }
-                    } catch (Exception e) {
-                        traces.add(server, e.getMessage());
-                        logger.warn("write failed: " + server + " " + path, e);
-                    } finally {
-                        HubUtils.close(response);
-                        resetThread();
+                        logger.trace("server {} path {} response {}", server, path, response);
+                    } else {
+                        logger.info("write failed: server {} path {} response {}", server, path, response);
                     }
-
+                }
+                int remaining = pending.decrementAndGet();
+                if (successes.get() >= quorum || remaining == 0) {
+                    quorumFuture.complete(successes.get() > 0);
                 }
             });
         }
-        try {
-            quorumLatch.await(stableSeconds, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            throw new RuntimeInterruptedException(e);
-        }
+        await(quorumFuture, stableSeconds);
         metricsService.time(channel, "consistent", traces.getStart());
-        return quorumLatch.getCount() != quorum;
-    }
-
-    private void setThread(String name) {
-        Thread thread = Thread.currentThread();
-        thread.setName(thread.getName() + "|" + name);
-    }
-
-    private void resetThread() {
-        Thread thread = Thread.currentThread();
-        thread.setName(StringUtils.substringBefore(thread.getName(), "|"));
+        return successes.get() > 0;
     }
 
     static int getQuorum(int size) {
         return (int) Math.max(1, Math.ceil(size / 2.0));
     }
 
+    /**
+     * Reads from the servers in random order, moving on when a server does not have the item.
+     * If a server has not answered within its hedge threshold, the read is also sent to the next server,
+     * up to spoke.read.hedgeMax times, and the first server with the item wins.
+     */
     public Content get(SpokeStore spokeStore, String path, ContentKey key) {
-        Collection<String> servers = cluster.getRandomServers();
-        for (String server : servers) {
-            ClientResponse response = null;
-            try {
-                setThread(path);
-                String url = HubHost.getScheme() + server + "/internal/spoke/" + spokeStore + "/payload/" + path;
-                response = query_client.resource(url).get(ClientResponse.class);
-                logger.trace("server {} path {} response {}", server, path, response);
-                if (response.getStatus() == 200) {
-                    byte[] entity = response.getEntity(byte[].class);
-                    if (entity.length > 0) {
-                        return ContentMarshaller.toContent(entity, key);
+        List<String> readServers = new ArrayList<>(getServers(spokeStore, StringUtils.substringBefore(path, "/")));
+        Collections.shuffle(readServers);
+        Iterator<String> servers = readServers.iterator();
+        BlockingQueue<ReadResult> results = new LinkedBlockingQueue<>();
+        int inFlight = 0;
+        int hedges = 0;
+        String lastStarted = null;
+        try {
+            while (true) {
+                if (inFlight == 0) {
+                    if (!servers.hasNext()) {
+                        break;
                     }
+                    lastStarted = servers.next();
+                    read(spokeStore, path, key, lastStarted, false, results);
+                    inFlight++;
                 }
-            } catch (JsonMappingException e) {
-                logger.info("JsonMappingException for " + path);
-            } catch (ClientHandlerException e) {
-                if (e.getCause() != null && e.getCause() instanceof ConnectException) {
-                    logger.warn("connection exception " + server);
-                } else {
-                    logger.warn("unable to get content " + server + " " + path, e);
+                boolean canHedge = hedgeMax > hedges && servers.hasNext();
+                long waitMillis = canHedge ? latencies.threshold(lastStarted) : TimeUnit.SECONDS.toMillis(QUERY_TIMEOUT_SECONDS * 2);
+                ReadResult result = results.poll(waitMillis, TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    if (!canHedge) {
+                        logger.warn("no response for {}", path);
+                        break;
+                    }
+                    hedges++;
+                    lastStarted = servers.next();
+                    logger.debug("hedging read of {} to {}", path, lastStarted);
+                    read(spokeStore, path, key, lastStarted, true, results);
+                    inFlight++;
+                    continue;
+                }
+                inFlight--;
+                if (result.content != null) {
+                    metricsService.count("spoke.read", 1, "hedged:" + (hedges > 0), "hedgeWon:" + result.hedge);
+                    return result.content;
                 }
-            } catch (Exception e) {
-                logger.warn("unable to get content " + path, e);
-            } finally {
-                HubUtils.close(response);
-                resetThread();
             }
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
         }
+        metricsService.count("spoke.read", 1, "hedged:" + (hedges > 0), "hedgeWon:false");
         return null;
     }
 
+    /**
+     * Reads the stored bytes of many keys of a channel, asking the servers in random order for whichever keys
+     * are still missing.  Servers which do not support bulk reads are skipped.
+     *
+     * @return the stored bytes by key, which may not include every key
+     */
+    public Map<ContentKey, byte[]> readBulk(SpokeStore spokeStore, String channel, Collection<ContentKey> keys) {
+        Map<ContentKey, byte[]> found = new HashMap<>();
+        Map<String, ContentKey> remaining = new HashMap<>();
+        for (ContentKey key : keys) {
+            remaining.put(key.toUrl(), key);
+        }
+        List<String> readServers = new ArrayList<>(getServers(spokeStore, channel));
+        Collections.shuffle(readServers);
+        for (String server : readServers) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            String uri = HubHost.getScheme() + server + "/internal/spoke/" + spokeStore + "/bulkRead/" + channel;
+            try {
+                ContentResponse response = client.post(uri, new StringContentProvider(StringUtils.join(remaining.keySet(), "\n")),
+                        QUERY_TIMEOUT_SECONDS).get(QUERY_TIMEOUT_SECONDS * 2, TimeUnit.SECONDS);
+                if (response.getStatus() != 200) {
+                    logger.debug("unable to bulk read {} from {} {}", channel, server, response.getStatus());
+                    continue;
+                }
+                SpokeBulkMarshaller.read(new ByteArrayInputStream(response.getContent()), (url, payload) -> {
+                    ContentKey key = remaining.remove(url);
+                    if (key != null) {
+                        found.put(key, ByteStreams.toByteArray(payload));
+                    }
+                    return true;
+                });
+            } catch (InterruptedException e) {
+                throw new RuntimeInterruptedException(e);
+            } catch (Exception e) {
+                logFailure("unable to bulk read " + channel + " from " + server, server, e);
+            }
+        }
+        metricsService.count("spoke.bulkRead", found.size(), "found:true");
+        metricsService.count("spoke.bulkRead", remaining.size(), "found:false");
+        return found;
+    }
+
+    private void read(SpokeStore spokeStore, String path, ContentKey key, String server, boolean hedge,
+                      BlockingQueue<ReadResult> results) {
+        long start = System.currentTimeMillis();
+        String url = HubHost.getScheme() + server + "/internal/spoke/" + spokeStore + "/payload/" + path;
+        client.get(url, QUERY_TIMEOUT_SECONDS).whenComplete((response, e) -> {
+            Content content = null;
+            if (e != null) {
+                logFailure("unable to get content " + server + " " + path, server, e);
+            } else {
+                try {
+                    latencies.record(server, System.currentTimeMillis() - start);
+                } catch (Exception ex) {
+                    logger.warn("unable to record latency for " + server, ex);
+                }
+                logger.trace("server {} path {} response {}", server, path, response);
+                try {
+                    if (response.getStatus() == 200 && response.getContent().length > 0) {
+                        content = ContentMarshaller.toContent(response.getContent(), key);
+                    }
+                } catch (JsonMappingException ex) {
+                    logger.info("JsonMappingException for " + path);
+                } catch (Exception ex) {
+                    logger.warn("unable to get content " + path, ex);
+                }
+            }
+            results.add(new ReadResult(content, hedge));
+        });
+    }
+
     QueryResult readTimeBucket(SpokeStore spokeStore, String channel, String timePath) throws InterruptedException {
-        return getKeys("/internal/spoke/" + spokeStore + "/time/" + channel + "/" + timePath);
+        return getKeys("/internal/spoke/" + spokeStore + "/time/" + channel + "/" + timePath, getServers(spokeStore, channel));
     }
 
     SortedSet<ContentKey> getNext(String channel, int count, String startKey) throws InterruptedException {
-        return getKeys("/internal/spoke/next/" + channel + "/" + count + "/" + startKey).getContentKeys();
+        return getKeys("/internal/spoke/next/" + channel + "/" + count + "/" + startKey, cluster.getServers(channel)).getContentKeys();
     }
 
-    private QueryResult getKeys(final String path) throws InterruptedException {
+    /**
+     * Items in the write store are only on the channel's servers, while the read store is written locally on any server.
+     */
+    private Collection<String> getServers(SpokeStore spokeStore, String channel) {
+        if (spokeStore == SpokeStore.WRITE) {
+            return cluster.getServers(channel);
+        }
+        return cluster.getAllServers();
+    }
+
+    private QueryResult getKeys(final String path, Collection<String> servers) throws InterruptedException {
         Traces traces = ActiveTraces.getLocal();
-        Collection<String> servers = cluster.getAllServers();
-        CountDownLatch countDownLatch = new CountDownLatch(servers.size());
         QueryResult queryResult = new QueryResult(servers.size());
+        List<CompletableFuture<?>> futures = new ArrayList<>();
         for (final String server : servers) {
-            executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    ClientResponse response = null;
-                    try {
-                        setThread(path);
-                        traces.add("spoke calling", server, path);
-                        response = query_client.resource(HubHost.getScheme() + server + path).get(ClientResponse.class);
-                        traces.add("spoke server response", server, response);
-                        if (response.getStatus() == 200) {
-                            SortedSet<ContentKey> keySet = new TreeSet<>();
-                            String keysString = response.getEntity(String.class);
-                            ContentKeyUtil.convertKeyStrings(keysString, keySet);
-                            traces.add(server, keySet);
-                            queryResult.addKeys(keySet);
-                        }
-                    } catch (ClientHandlerException e) {
-                        if (e.getCause() != null && e.getCause() instanceof ConnectException) {
-                            logger.warn("connection exception " + server);
-                        } else {
-                            logger.warn("unable to get content " + path, e);
-                        }
-                        traces.add("ClientHandlerException", e.getMessage(), server);
-                    } catch (Exception e) {
-                        logger.warn("unable to handle " + server + " " + path, e);
-                        traces.add("unable to handle ", server, path, e);
-                    } finally {
-                        HubUtils.close(response);
-                        resetThread();
-                        countDownLatch.countDown();
-                    }
+            traces.add("spoke calling", server, path);
+            futures.add(client.get(HubHost.getScheme() + server + path, QUERY_TIMEOUT_SECONDS).whenComplete((response, e) -> {
+                if (e != null) {
+                    logFailure("unable to get content " + path, server, e);
+                    traces.add("unable to handle ", server, path, e);
+                    return;
                 }
-            });
+                traces.add("spoke server response", server, response);
+                if (response.getStatus() == 200) {
+                    SortedSet<ContentKey> keySet = new TreeSet<>();
+                    ContentKeyUtil.convertKeyStrings(response.getContentAsString(), keySet);
+                    traces.add(server, keySet);
+                    queryResult.addKeys(keySet);
+                }
+            }));
         }
-        countDownLatch.await(20, TimeUnit.SECONDS);
+        awaitAll(futures, 20);
         return queryResult;
     }
 
     public Optional<ContentKey> getLatest(String channel, String path, Traces traces) throws InterruptedException {
-        Collection<String> servers = cluster.getAllServers();
-        CountDownLatch countDownLatch = new CountDownLatch(servers.size());
+        Collection<String> servers = cluster.getServers(channel);
         SortedSet<ContentKey> orderedKeys = Collections.synchronizedSortedSet(new TreeSet<>());
+        List<CompletableFuture<?>> futures = new ArrayList<>();
         for (final String server : servers) {
-            executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    ClientResponse response = null;
-                    try {
-                        setThread(path);
-                        traces.add("spoke calling", server, channel);
-                        response = query_client.resource(HubHost.getScheme() + server + "/internal/spoke/latest/" + path)
-                                .get(ClientResponse.class);
-                        traces.add("spoke server response", server, response);
-                        if (response.getStatus() == 200) {
-                            String key = response.getEntity(String.class);
-                            if (StringUtils.isNotEmpty(key)) {
-                                orderedKeys.add(ContentKeyUtil.convertKey(key).get());
-                            }
-                            traces.add(server, key);
-                        }
-                    } catch (ClientHandlerException e) {
-                        if (e.getCause() != null && e.getCause() instanceof ConnectException) {
-                            logger.warn("connection exception " + server);
-                        } else {
-                            logger.warn("unable to get content " + path, e);
-                        }
-                        traces.add("ClientHandlerException", e.getMessage(), server);
-                    } catch (Exception e) {
-                        logger.warn("unable to handle " + server + " " + channel, e);
-                        traces.add("unable to handle ", server, channel, e);
-                    } finally {
-                        HubUtils.close(response);
-                        resetThread();
-                        countDownLatch.countDown();
+            traces.add("spoke calling", server, channel);
+            String uri = HubHost.getScheme() + server + "/internal/spoke/latest/" + path;
+            futures.add(client.get(uri, QUERY_TIMEOUT_SECONDS).whenComplete((response, e) -> {
+                if (e != null) {
+                    logFailure("unable to get latest " + path, server, e);
+                    traces.add("unable to handle ", server, channel, e);
+                    return;
+                }
+                traces.add("spoke server response", server, response);
+                if (response.getStatus() == 200) {
+                    String key = response.getContentAsString();
+                    if (StringUtils.isNotEmpty(key)) {
+                        orderedKeys.add(ContentKeyUtil.convertKey(key).get());
                     }
+                    traces.add(server, key);
                 }
-            });
+            }));
         }
-        countDownLatch.await(5, TimeUnit.SECONDS);
-        if (orderedKeys.isEmpty()) {
-            return Optional.absent();
+        awaitAll(futures, 5);
+        synchronized (orderedKeys) {
+            if (orderedKeys.isEmpty()) {
+                return Optional.absent();
+            }
+            return Optional.of(orderedKeys.last());
         }
-        return Optional.of(orderedKeys.last());
     }
 
     public boolean delete(SpokeStore spokeStore, String path) throws Exception {
         Collection<String> servers = cluster.getAllServers();
-        int quorum = servers.size();
-        CountDownLatch countDownLatch = new CountDownLatch(quorum);
+        AtomicInteger deleted = new AtomicInteger();
+        List<CompletableFuture<?>> futures = new ArrayList<>();
         for (final String server : servers) {
-            executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    ClientResponse response = null;
-                    try {
-                        setThread(path);
-                        response = query_client.resource(HubHost.getScheme() + server + "/internal/spoke/" + spokeStore + "/payload/" + path)
-                                .delete(ClientResponse.class);
-
-                        if (response.getStatus() < 400) {
-                            countDownLatch.countDown();
-                        }
-                        logger.trace("server {} path {} response {}", server, path, response);
-                    } catch (Exception e) {
-                        logger.warn("unable to delete " + path, e);
-                    } finally {
-                        HubUtils.close(response);
-                        resetThread();
+            String uri = HubHost.getScheme() + server + "/internal/spoke/" + spokeStore + "/payload/" + path;
+            futures.add(client.delete(uri, QUERY_TIMEOUT_SECONDS).whenComplete((response, e) -> {
+                if (e != null) {
+                    logger.warn("unable to delete " + path, e);
+                } else {
+                    if (response.getStatus() < 400) {
+                        deleted.incrementAndGet();
                     }
+                    logger.trace("server {} path {} response {}", server, path, response);
                 }
-            });
+            }));
+        }
+        awaitAll(futures, 60);
+        return deleted.get() == servers.size();
+    }
+
+    private static void awaitAll(List<CompletableFuture<?>> futures, int seconds) {
+        await(CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])), seconds);
+    }
+
+    private static void await(CompletableFuture<?> future, int seconds) {
+        try {
+            future.get(seconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        } catch (ExecutionException | TimeoutException e) {
+            logger.trace("completed without all responses {}", e.getMessage());
         }
+    }
 
-        return countDownLatch.await(60, TimeUnit.SECONDS);
+    private static void logFailure(String message, String server, Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e instanceof ConnectException) {
+            logger.warn("connection exception " + server);
+        } else {
+            logger.warn(message, e);
+        }
     }
 
+    private static class ReadResult {
+        private final Content content;
+        private final boolean hedge;
+
+        ReadResult(Content content, boolean hedge) {
+            this.content = content;
+            this.hedge = hedge;
+        }
+    }
 }
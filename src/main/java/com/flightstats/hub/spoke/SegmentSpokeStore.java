@@ -0,0 +1,327 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.app.HubProperties;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.MinutePath;
+import com.flightstats.hub.util.TimeUtil;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import de.jkeylockmanager.manager.KeyLockManager;
+import de.jkeylockmanager.manager.KeyLockManagers;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.NotFoundException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SegmentSpokeStore keeps all of a channel's items for a minute in a single SpokeSegment file,
+ * at the path FileSpokeStore uses for the minute directory, channel/yyyy/MM/dd/HH/mm
+ * This keeps the number of files (and inodes) per channel to one per minute.
+ */
+public class SegmentSpokeStore implements LocalSpokeStore {
+
+    private final static Logger logger = LoggerFactory.getLogger(SegmentSpokeStore.class);
+    private final String spokePath;
+    private final int spokeTtlMinutes;
+    private final KeyLockManager lockManager = KeyLockManagers.newLock();
+    private final LoadingCache<String, SpokeSegment> segments;
+
+    public SegmentSpokeStore(String spokePath, int spokeTtlMinutes) {
+        this.spokePath = StringUtils.appendIfMissing(spokePath, "/");
+        this.spokeTtlMinutes = spokeTtlMinutes;
+        segments = CacheBuilder.newBuilder()
+                .maximumSize(HubProperties.getProperty("spoke.segment.cacheSize", 10 * 1000))
+                .expireAfterAccess(spokeTtlMinutes, TimeUnit.MINUTES)
+                .build(new CacheLoader<String, SpokeSegment>() {
+                    @Override
+                    public SpokeSegment load(String minutePath) {
+                        return new SpokeSegment(new File(SegmentSpokeStore.this.spokePath + minutePath));
+                    }
+                });
+        logger.info("starting with segment storage path " + this.spokePath);
+        if (!insert("hub-startup/" + new ContentKey().toUrl(), ("" + System.currentTimeMillis()).getBytes())) {
+            throw new RuntimeException("unable to create startup file");
+        }
+    }
+
+    @Override
+    public boolean insert(String path, byte[] payload) {
+        return insert(path, new ByteArrayInputStream(payload));
+    }
+
+    @Override
+    public boolean insert(String path, InputStream input) {
+        ItemPath itemPath = ItemPath.parse(path);
+        if (itemPath == null) {
+            logger.warn("unable to parse item path {}", path);
+            return false;
+        }
+        return lockManager.executeLocked(itemPath.minutePath, () -> {
+            try {
+                segments.getUnchecked(itemPath.minutePath).append(itemPath.millisOfMinute, itemPath.hash, input);
+                return true;
+            } catch (IOException e) {
+                logger.info("unable to write to " + path, e);
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public byte[] read(String path) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        read(path, baos);
+        return baos.toByteArray();
+    }
+
+    @Override
+    public void read(String path, OutputStream output) {
+        ItemPath itemPath = ItemPath.parse(path);
+        if (itemPath == null) {
+            throw new NotFoundException("not found " + path);
+        }
+        SpokeSegment segment = segments.getUnchecked(itemPath.minutePath);
+        try {
+            SpokeSegment.Entry entry = segment.find(itemPath.millisOfMinute, itemPath.hash);
+            if (entry == null) {
+                throw new NotFoundException("not found " + path);
+            }
+            segment.read(entry, output);
+        } catch (FileNotFoundException e) {
+            logger.debug("file not found {}", path);
+        } catch (IOException e) {
+            logger.info("unable to read from " + path, e);
+        }
+    }
+
+    @Override
+    public ByteBuffer readBuffer(String path) throws IOException {
+        ItemPath itemPath = ItemPath.parse(path);
+        if (itemPath == null) {
+            return null;
+        }
+        SpokeSegment segment = segments.getUnchecked(itemPath.minutePath);
+        try {
+            SpokeSegment.Entry entry = segment.find(itemPath.millisOfMinute, itemPath.hash);
+            if (entry == null) {
+                return null;
+            }
+            return segment.readBuffer(entry);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            logger.debug("file not found {}", path);
+            return null;
+        }
+    }
+
+    @Override
+    public String readKeysInBucket(String path) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        readKeysInBucket(path, baos);
+        return baos.toString();
+    }
+
+    @Override
+    public void readKeysInBucket(String path, OutputStream output) {
+        String[] split = StringUtils.split(path, "/");
+        try {
+            if (split.length == 7) {
+                String minutePath = StringUtils.join(split, "/", 0, 6);
+                int second = Integer.parseInt(split[6]);
+                for (SpokeSegment.Entry entry : segments.getUnchecked(minutePath).getEntries()) {
+                    if (entry.getSecond() == second) {
+                        writeKey(output, minutePath + "/" + entry.toUrl());
+                    }
+                }
+            } else if (split.length == 6) {
+                writeKeys(StringUtils.join(split, "/"), output);
+            } else {
+                String bucketPath = StringUtils.join(split, "/");
+                File directory = new File(spokePath + bucketPath);
+                if (!directory.isDirectory()) {
+                    return;
+                }
+                for (File file : FileUtils.listFiles(directory, null, true)) {
+                    if (isSegment(file.getName())) {
+                        writeKeys(bucketPath + "/" + directory.toPath().relativize(file.toPath()), output);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.info("error with " + path, e);
+        }
+    }
+
+    private void writeKeys(String minutePath, OutputStream output) throws IOException {
+        for (SpokeSegment.Entry entry : segments.getUnchecked(minutePath).getEntries()) {
+            writeKey(output, minutePath + "/" + entry.toUrl());
+        }
+    }
+
+    private void writeKey(OutputStream output, String key) throws IOException {
+        output.write(key.getBytes());
+        output.write(",".getBytes());
+    }
+
+    private static boolean isSegment(String name) {
+        return name.length() == 2;
+    }
+
+    @Override
+    public boolean delete(String path) throws Exception {
+        FileUtils.deleteDirectory(new File(spokePath + path));
+        String prefix = StringUtils.appendIfMissing(path, "/");
+        segments.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        return true;
+    }
+
+    @Override
+    public boolean deleteFile(String path) throws Exception {
+        ItemPath itemPath = ItemPath.parse(path);
+        if (itemPath == null) {
+            return false;
+        }
+        return lockManager.executeLocked(itemPath.minutePath, () -> {
+            try {
+                return segments.getUnchecked(itemPath.minutePath).remove(entry ->
+                        entry.getMillisOfMinute() == itemPath.millisOfMinute && entry.getHash().equals(itemPath.hash));
+            } catch (IOException e) {
+                logger.info("unable to delete " + path, e);
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public String getLatest(String channel, String limitPath) {
+        logger.trace("latest {} {}", channel, limitPath);
+        ContentKey limitKey = ContentKey.fromUrl(limitPath).get();
+        DateTime ttlTime = TimeUtil.now().minusMinutes(spokeTtlMinutes);
+        DateTime hourToSearch = limitKey.getTime();
+        while (true) {
+            String hoursPath = TimeUtil.hours(hourToSearch);
+            String[] minutes = new File(spokePath + channel + "/" + hoursPath).list();
+            if (minutes == null) {
+                minutes = new String[0];
+            }
+            Arrays.sort(minutes);
+            for (int i = minutes.length - 1; i >= 0; i--) {
+                if (!isSegment(minutes[i])) {
+                    continue;
+                }
+                String minutePath = hoursPath + "/" + minutes[i];
+                String latest = latestInSegment(channel + "/" + minutePath, minutePath, limitPath);
+                if (latest != null) {
+                    return channel + "/" + latest;
+                }
+            }
+            hourToSearch = hourToSearch.minusHours(1).withMinuteOfHour(59).withSecondOfMinute(59).withMillisOfSecond(999);
+            if (hourToSearch.isBefore(ttlTime)) {
+                logger.debug("no latest found for {} {} ", channel, limitPath);
+                return null;
+            }
+        }
+    }
+
+    private String latestInSegment(String segmentPath, String minutePath, String limitPath) {
+        String latest = null;
+        try {
+            for (SpokeSegment.Entry entry : segments.getUnchecked(segmentPath).getEntries()) {
+                String key = minutePath + "/" + entry.toUrl();
+                if (key.compareTo(limitPath) < 0 && (latest == null || key.compareTo(latest) > 0)) {
+                    latest = key;
+                }
+            }
+        } catch (IOException e) {
+            logger.info("unable to read segment " + segmentPath, e);
+        }
+        return latest;
+    }
+
+    @Override
+    public void getNext(String channel, String startKey, int count, OutputStream output) throws IOException {
+        DateTime now = TimeUtil.now();
+        logger.trace("next {} {} {}", channel, startKey, now);
+        ContentKey start = ContentKey.fromUrl(startKey).get();
+        int found = 0;
+        MinutePath minutePath = new MinutePath(start.getTime());
+        boolean firstMinute = true;
+        do {
+            String minuteUrl = minutePath.toUrl();
+            if (new File(spokePath + channel + "/" + minuteUrl).isFile()) {
+                for (SpokeSegment.Entry entry : segments.getUnchecked(channel + "/" + minuteUrl).getEntries()) {
+                    String keyFromPath = minuteUrl + "/" + entry.toUrl();
+                    if (!firstMinute || ContentKey.fromUrl(keyFromPath).get().compareTo(start) > 0) {
+                        found++;
+                        writeKey(output, channel + "/" + keyFromPath);
+                    }
+                }
+            }
+            minutePath = new MinutePath(minutePath.getTime().plusMinutes(1));
+            firstMinute = false;
+        } while (found < count && minutePath.getTime().isBefore(now));
+    }
+
+    @Override
+    public void enforceTtl(String channel, DateTime dateTime) {
+        String limitPath = TimeUtil.minutes(dateTime);
+        logger.debug("enforceTtl {} {}", channel, limitPath);
+        recurseDelete(channel, StringUtils.split(limitPath, "/"), 0, channel);
+    }
+
+    private void recurseDelete(String path, String[] limitPath, int count, String channel) {
+        String[] items = new File(spokePath + path).list();
+        if (items == null) {
+            return;
+        }
+        String limitCompare = channel + "/" + StringUtils.join(limitPath, "/", 0, count + 1) + "/";
+        for (String item : items) {
+            String current = path + "/" + item;
+            if ((current + "/").compareTo(limitCompare) <= 0) {
+                if (count < 4) {
+                    recurseDelete(current, limitPath, count + 1, channel);
+                } else {
+                    logger.info("deleting {}", spokePath + current);
+                    FileUtils.deleteQuietly(new File(spokePath + current));
+                    segments.invalidate(current);
+                }
+            }
+        }
+    }
+
+    /**
+     * An item path split into the segment's minute path and the position within the minute.
+     */
+    private static class ItemPath {
+        private final String minutePath;
+        private final int millisOfMinute;
+        private final String hash;
+
+        private ItemPath(String minutePath, int millisOfMinute, String hash) {
+            this.minutePath = minutePath;
+            this.millisOfMinute = millisOfMinute;
+            this.hash = hash;
+        }
+
+        static ItemPath parse(String path) {
+            String[] split = StringUtils.split(path, "/");
+            if (split.length != 9) {
+                return null;
+            }
+            try {
+                int millisOfMinute = Integer.parseInt(split[6]) * 1000 + Integer.parseInt(split[7]);
+                return new ItemPath(StringUtils.join(split, "/", 0, 6), millisOfMinute, split[8]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.flightstats.hub.spoke;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ServerLatencies keeps a window of recent response times for each server,
+ * and derives the time to wait for a server before hedging a read to another one.
+ */
+class ServerLatencies {
+
+    private final int windowSize;
+    private final double percentile;
+    private final long defaultMillis;
+    private final long minMillis;
+    private final long maxMillis;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    ServerLatencies(int windowSize, double percentile, long defaultMillis, long minMillis, long maxMillis) {
+        this.windowSize = windowSize;
+        this.percentile = percentile;
+        this.defaultMillis = defaultMillis;
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    void record(String server, long millis) {
+        getWindow(server).record(millis);
+    }
+
+    @VisibleForTesting
+    void startCount(String server, long count) {
+        getWindow(server).startCount(count);
+    }
+
+    private Window getWindow(String server) {
+        return windows.computeIfAbsent(server, name -> new Window());
+    }
+
+    /**
+     * @return the percentile of the server's recent latencies, limited to minMillis and maxMillis,
+     * or defaultMillis until the server has a full window.
+     */
+    long threshold(String server) {
+        Window window = windows.get(server);
+        if (window == null) {
+            return defaultMillis;
+        }
+        long value = window.percentile();
+        if (value < 0) {
+            return defaultMillis;
+        }
+        return Math.max(minMillis, Math.min(maxMillis, value));
+    }
+
+    private class Window {
+        private final long[] values = new long[windowSize];
+        private long count;
+        private int sinceCalculated;
+        private long calculated = -1;
+
+        synchronized void record(long millis) {
+            values[(int) (count % windowSize)] = millis;
+            count++;
+            if (sinceCalculated < windowSize) {
+                sinceCalculated++;
+            }
+        }
+
+        synchronized void startCount(long count) {
+            this.count = count;
+        }
+
+        synchronized long percentile() {
+            if (count < windowSize) {
+                return -1;
+            }
+            if (calculated < 0 || sinceCalculated >= windowSize / 8) {
+                long[] sorted = values.clone();
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile / 100 * windowSize) - 1;
+                calculated = sorted[Math.max(0, Math.min(windowSize - 1, index))];
+                sinceCalculated = 0;
+            }
+            return calculated;
+        }
+    }
+}
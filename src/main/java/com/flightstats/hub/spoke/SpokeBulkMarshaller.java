@@ -0,0 +1,249 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.model.Content;
+import com.google.common.io.ByteStreams;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * SpokeBulkMarshaller frames bulk writes between Spoke servers.
+ * <p>
+ * The current framing is
+ * [magic (4 bytes)][version (1 byte)] followed by items of
+ * [key length (4 bytes)][key (utf-8)][payload length (4 bytes)][payload]
+ * and ends with a key length of -1.
+ * <p>
+ * The legacy framing, written with an ObjectOutputStream by older servers to the bulkKey api, is still read,
+ * and written for servers which do not support the bulk api.
+ * Payloads are handed to the ItemWriter as they are read, so a batch is never held in memory on the receiving side.
+ * Bulk reads use the same framing for their responses.
+ */
+class SpokeBulkMarshaller {
+
+    static final int MAGIC = 0x5350424b;
+    static final byte VERSION = 1;
+    private static final int END = -1;
+    private static final int OBJECT_STREAM_MAGIC = 0xACED;
+
+    interface ItemWriter {
+        boolean write(String key, InputStream payload) throws IOException;
+    }
+
+    /**
+     * @return the current framing as a sequence of buffers, with the payloads wrapped rather than copied.
+     */
+    static ByteBuffer[] toBuffers(List<Content> items) {
+        ByteBuffer[] buffers = new ByteBuffer[items.size() * 2 + 2];
+        int index = 0;
+        ByteBuffer header = ByteBuffer.allocate(5);
+        header.putInt(MAGIC);
+        header.put(VERSION);
+        header.flip();
+        buffers[index++] = header;
+        for (Content content : items) {
+            byte[] key = content.getContentKey().get().toUrl().getBytes(StandardCharsets.UTF_8);
+            byte[] data = content.getData();
+            ByteBuffer itemHeader = ByteBuffer.allocate(8 + key.length);
+            itemHeader.putInt(key.length);
+            itemHeader.put(key);
+            itemHeader.putInt(data.length);
+            itemHeader.flip();
+            buffers[index++] = itemHeader;
+            buffers[index++] = ByteBuffer.wrap(data);
+        }
+        ByteBuffer end = ByteBuffer.allocate(4);
+        end.putInt(END);
+        end.flip();
+        buffers[index] = end;
+        return buffers;
+    }
+
+    static void write(List<Content> items, OutputStream output) throws IOException {
+        for (ByteBuffer buffer : toBuffers(items)) {
+            output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes the current framing to a stream one item at a time, for responses built from stored buffers.
+     * Closing the Writer ends the framing, and leaves the underlying stream open.
+     */
+    static class Writer implements Closeable {
+        private final DataOutputStream output;
+        private final byte[] chunk = new byte[8 * 1024];
+
+        Writer(OutputStream outputStream) throws IOException {
+            output = new DataOutputStream(new BufferedOutputStream(outputStream));
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+        }
+
+        void write(String key, ByteBuffer data) throws IOException {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(keyBytes.length);
+            output.write(keyBytes);
+            output.writeInt(data.remaining());
+            if (data.hasArray()) {
+                output.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+                return;
+            }
+            ByteBuffer source = data.duplicate();
+            while (source.hasRemaining()) {
+                int length = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, length);
+                output.write(chunk, 0, length);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.writeInt(END);
+            output.flush();
+        }
+    }
+
+    static byte[] toLegacyBytes(List<Content> items) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeLegacy(items, baos);
+        return baos.toByteArray();
+    }
+
+    static void writeLegacy(List<Content> items, OutputStream outputStream) throws IOException {
+        ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(outputStream));
+        output.writeInt(items.size());
+        for (Content content : items) {
+            String key = content.getContentKey().get().toUrl();
+            output.writeInt(key.length());
+            output.write(key.getBytes());
+            output.writeInt(content.getData().length);
+            output.write(content.getData());
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads either framing, calling itemWriter for each item.
+     *
+     * @return false if itemWriter fails for any item
+     */
+    static boolean read(InputStream inputStream, ItemWriter itemWriter) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(inputStream);
+        buffered.mark(4);
+        DataInputStream input = new DataInputStream(buffered);
+        int magic = input.readInt();
+        if (magic >>> 16 == OBJECT_STREAM_MAGIC) {
+            buffered.reset();
+            return readLegacy(new ObjectInputStream(buffered), itemWriter);
+        }
+        if (magic != MAGIC) {
+            throw new StreamCorruptedException("unexpected bulk header " + Integer.toHexString(magic));
+        }
+        byte version = input.readByte();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("unsupported bulk version " + version);
+        }
+        int keyLength;
+        while ((keyLength = input.readInt()) != END) {
+            if (!writeItem(input, readKey(input, keyLength), itemWriter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean readLegacy(ObjectInputStream input, ItemWriter itemWriter) throws IOException {
+        int items = input.readInt();
+        for (int i = 0; i < items; i++) {
+            if (!writeItem(input, readKey(input, input.readInt()), itemWriter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readKey(DataInput input, int keyLength) throws IOException {
+        if (keyLength < 0 || keyLength > 1024) {
+            throw new StreamCorruptedException("unexpected key length " + keyLength);
+        }
+        byte[] key = new byte[keyLength];
+        input.readFully(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private static boolean writeItem(InputStream input, String key, ItemWriter itemWriter) throws IOException {
+        int length = new DataInputStream(input).readInt();
+        if (length < 0) {
+            throw new StreamCorruptedException("unexpected payload length " + length + " for " + key);
+        }
+        ItemInputStream payload = new ItemInputStream(input, length);
+        if (!itemWriter.write(key, payload)) {
+            return false;
+        }
+        ByteStreams.exhaust(payload);
+        return true;
+    }
+
+    /**
+     * Exposes one payload from the framed stream, and fails if the stream ends before the payload does.
+     */
+    private static class ItemInputStream extends FilterInputStream {
+        private long remaining;
+
+        ItemInputStream(InputStream input, long length) {
+            super(input);
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = super.read();
+            if (read == -1) {
+                throw new EOFException("stream ended with " + remaining + " bytes remaining");
+            }
+            remaining--;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = super.read(bytes, offset, (int) Math.min(length, remaining));
+            if (read == -1) {
+                throw new EOFException("stream ended with " + remaining + " bytes remaining");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            //the framed stream is owned by the caller
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.app.HubProperties;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpContentResponse;
+import org.eclipse.jetty.client.api.ContentProvider;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SpokeClient is the asynchronous http client RemoteSpokeStore uses to call the Spoke servers.
+ * Connections are pooled and kept alive per server, and the number of connections and queued requests
+ * per server are capped, so a slow server can not tie up more than its share.
+ */
+class SpokeClient {
+
+    private final static Logger logger = LoggerFactory.getLogger(SpokeClient.class);
+
+    private final HttpClient httpClient;
+    private final int maxResponseBytes;
+
+    SpokeClient() {
+        httpClient = new HttpClient(new SslContextFactory(true));
+        QueuedThreadPool threadPool = new QueuedThreadPool(HubProperties.getProperty("spoke.client.threads", 64));
+        threadPool.setName("SpokeClient");
+        threadPool.setDaemon(true);
+        httpClient.setExecutor(threadPool);
+        httpClient.setScheduler(new ScheduledExecutorScheduler("SpokeClient-scheduler", true));
+        httpClient.setMaxConnectionsPerDestination(HubProperties.getProperty("spoke.client.maxConnectionsPerServer", 64));
+        httpClient.setMaxRequestsQueuedPerDestination(HubProperties.getProperty("spoke.client.maxQueuedPerServer", 1024));
+        httpClient.setConnectTimeout(HubProperties.getProperty("spoke.client.connectTimeoutMillis", 2000));
+        httpClient.setIdleTimeout(HubProperties.getProperty("spoke.client.keepAliveMillis", 60 * 1000));
+        httpClient.setFollowRedirects(true);
+        maxResponseBytes = (int) Math.min(Integer.MAX_VALUE, 2 * HubProperties.getLargePayload());
+        try {
+            httpClient.start();
+        } catch (Exception e) {
+            logger.error("unable to start spoke client", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    CompletableFuture<ContentResponse> get(String uri, int timeoutSeconds) {
+        return send(uri, HttpMethod.GET, null, timeoutSeconds);
+    }
+
+    CompletableFuture<ContentResponse> put(String uri, ContentProvider content, int timeoutSeconds) {
+        return send(uri, HttpMethod.PUT, content, timeoutSeconds);
+    }
+
+    CompletableFuture<ContentResponse> post(String uri, ContentProvider content, int timeoutSeconds) {
+        return send(uri, HttpMethod.POST, content, timeoutSeconds);
+    }
+
+    CompletableFuture<ContentResponse> delete(String uri, int timeoutSeconds) {
+        return send(uri, HttpMethod.DELETE, null, timeoutSeconds);
+    }
+
+    /**
+     * timeoutSeconds is an idle timeout, which limits the time spent waiting for the server to respond or send more
+     * data, like the read timeout of the blocking clients did.  The connect timeout is not per request, it is
+     * spoke.client.connectTimeoutMillis for every call, where the blocking clients used 1 second for writes and
+     * 5 seconds for queries.
+     */
+    private CompletableFuture<ContentResponse> send(String uri, HttpMethod method, ContentProvider content, int timeoutSeconds) {
+        CompletableFuture<ContentResponse> future = new CompletableFuture<>();
+        try {
+            Request request = httpClient.newRequest(uri)
+                    .method(method)
+                    .idleTimeout(timeoutSeconds, TimeUnit.SECONDS);
+            if (content != null) {
+                request.content(content);
+            }
+            request.send(new BufferingResponseListener(maxResponseBytes) {
+                @Override
+                public void onComplete(Result result) {
+                    if (result.isFailed()) {
+                        future.completeExceptionally(result.getFailure());
+                    } else {
+                        future.complete(new HttpContentResponse(result.getResponse(), getContent(), getMediaType(), getEncoding()));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
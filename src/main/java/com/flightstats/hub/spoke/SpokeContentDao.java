@@ -10,8 +10,6 @@ import com.flightstats.hub.model.ContentKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -20,31 +18,22 @@ import java.util.function.Function;
 public class SpokeContentDao {
     private static final Logger logger = LoggerFactory.getLogger(SpokeContentDao.class);
 
-    public static SortedSet<ContentKey> insert(BulkContent bulkContent, Function<ByteArrayOutputStream, Boolean> inserter) throws Exception {
+    public static SortedSet<ContentKey> insert(BulkContent bulkContent, Function<List<Content>, Boolean> inserter) throws Exception {
         Traces traces = ActiveTraces.getLocal();
         traces.add("writeBulk");
         String channelName = bulkContent.getChannel();
         try {
             SortedSet<ContentKey> keys = new TreeSet<>();
             List<Content> items = bulkContent.getItems();
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ObjectOutputStream stream = new ObjectOutputStream(baos);
-            stream.writeInt(items.size());
             logger.debug("writing {} items to master {}", items.size(), bulkContent.getMasterKey());
             for (Content content : items) {
                 content.packageStream();
-                String itemKey = content.getContentKey().get().toUrl();
-                stream.writeInt(itemKey.length());
-                stream.write(itemKey.getBytes());
-                stream.writeInt(content.getData().length);
-                stream.write(content.getData());
                 keys.add(content.getContentKey().get());
             }
-            stream.flush();
             traces.add("writeBulk marshalled");
 
             logger.trace("writing items {} to channel {}", items.size(), channelName);
-            if (!inserter.apply(baos)) {
+            if (!inserter.apply(items)) {
                 throw new FailedWriteException("unable to write bulk to spoke " + channelName);
             }
             traces.add("writeBulk completed", keys);
@@ -0,0 +1,80 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.app.HubProvider;
+import com.flightstats.hub.filter.MetricsRequestFilter;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * SpokePayloadHandler serves GET /internal/spoke/{storeName}/payload/{path} directly from Jetty.
+ * The stored bytes are handed to Jetty as a single buffer, so they are written to the socket without being copied
+ * through Jersey's output streams.  The request metrics are the same MetricsRequestFilter sends for Jersey requests.
+ * Any other request is left for Jersey and InternalSpokeResource.
+ */
+public class SpokePayloadHandler extends AbstractHandler {
+
+    private final static Logger logger = LoggerFactory.getLogger(SpokePayloadHandler.class);
+    private static final String PREFIX = "/internal/spoke/";
+    private static final String PAYLOAD = "/payload/";
+    private static final String ENDPOINT = "/internal/spoke/_storeName_/payload/_path__";
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!HttpMethod.GET.is(request.getMethod()) || !target.startsWith(PREFIX)) {
+            return;
+        }
+        int payloadIndex = target.indexOf(PAYLOAD, PREFIX.length());
+        if (payloadIndex < 0) {
+            return;
+        }
+        String storeName = target.substring(PREFIX.length(), payloadIndex);
+        String path = target.substring(payloadIndex + PAYLOAD.length());
+        if (storeName.contains("/") || path.isEmpty()) {
+            return;
+        }
+        LocalSpokeStore store;
+        try {
+            store = HubProvider.getInstance(LocalSpokeStore.class, SpokeStore.from(storeName).name());
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        baseRequest.setHandled(true);
+        long start = System.currentTimeMillis();
+        try {
+            sendPayload(store, path, baseRequest, response);
+        } finally {
+            MetricsRequestFilter.requestStats(start, request.getMethod(), ENDPOINT, "", "", response.getStatus());
+        }
+    }
+
+    private void sendPayload(LocalSpokeStore store, String path, Request baseRequest, HttpServletResponse response)
+            throws IOException {
+        ByteBuffer buffer;
+        try {
+            buffer = store.readBuffer(path);
+        } catch (IOException e) {
+            logger.warn("unable to get " + path, e);
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+        if (buffer == null) {
+            logger.debug("not found {}", path);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        response.setContentLengthLong(buffer.remaining());
+        baseRequest.getResponse().getHttpOutput().sendContent(buffer);
+    }
+}
@@ -30,10 +30,8 @@ public class SpokeReadContentDao implements ContentDao {
 
     @Override
     public SortedSet<ContentKey> insert(BulkContent bulkContent) throws Exception {
-        return SpokeContentDao.insert(bulkContent, (baos) -> {
-            String channel = bulkContent.getChannel();
-            return spokeStore.insert(SpokeStore.READ, channel, baos.toByteArray(), Cluster.getLocalServer(), ActiveTraces.getLocal(), "bulkKey", channel);
-        });
+        return SpokeContentDao.insert(bulkContent, (items) ->
+                spokeStore.insertBulk(SpokeStore.READ, bulkContent.getChannel(), items, Cluster.getLocalServer(), ActiveTraces.getLocal()));
     }
 
     private String getPath(String channelName, ContentKey key) {
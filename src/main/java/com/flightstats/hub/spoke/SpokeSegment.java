@@ -0,0 +1,293 @@
+package com.flightstats.hub.spoke;
+
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A SpokeSegment is one append only file holding all of the items for a channel's minute.
+ * The file starts with a magic number, followed by records of
+ * [millis of minute (2 bytes)][hash length (2 bytes)][hash][payload length (8 bytes)][payload]
+ * The payload length is written after the payload, so a negative length marks a record in progress.
+ * The record headers are the index, and are cached in memory as they are scanned.
+ * Callers are expected to serialize calls to append and remove for a file.
+ */
+class SpokeSegment {
+
+    private final static Logger logger = LoggerFactory.getLogger(SpokeSegment.class);
+
+    static final int MAGIC = 0x53504b31;
+    private static final int FILE_HEADER = 4;
+    private static final long IN_PROGRESS = -1;
+
+    private final File file;
+    private final List<Entry> entries = new ArrayList<>();
+    private Object fileKey;
+    private long scannedTo = FILE_HEADER;
+
+    SpokeSegment(File file) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return a copy of all the complete entries, in the order they were written.
+     */
+    synchronized List<Entry> getEntries() throws IOException {
+        refresh();
+        return new ArrayList<>(entries);
+    }
+
+    synchronized Entry find(int millisOfMinute, String hash) throws IOException {
+        refresh();
+        for (Entry entry : entries) {
+            if (entry.millisOfMinute == millisOfMinute && entry.hash.equals(hash)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads any records written since the last scan.
+     * If the file has been deleted or replaced, the index is rebuilt.
+     */
+    private void refresh() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            reset(null);
+            return;
+        }
+        if (!Objects.equals(fileKey, attributes.fileKey()) || attributes.size() < scannedTo) {
+            reset(attributes.fileKey());
+        }
+        if (attributes.size() <= scannedTo) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (scannedTo == FILE_HEADER) {
+                ByteBuffer magic = readFully(channel, 0, FILE_HEADER);
+                if (magic == null || magic.getInt() != MAGIC) {
+                    logger.warn("not a spoke segment {}", file);
+                    return;
+                }
+            }
+            long size = channel.size();
+            while (scannedTo < size) {
+                ByteBuffer prefix = readFully(channel, scannedTo, 4);
+                if (prefix == null) {
+                    break;
+                }
+                int millisOfMinute = prefix.getChar();
+                int hashLength = prefix.getChar();
+                ByteBuffer rest = readFully(channel, scannedTo + 4, hashLength + 8);
+                if (rest == null) {
+                    break;
+                }
+                byte[] hashBytes = new byte[hashLength];
+                rest.get(hashBytes);
+                long length = rest.getLong();
+                if (length < 0) {
+                    break;
+                }
+                long offset = scannedTo + 4 + hashLength + 8;
+                if (offset + length > size) {
+                    break;
+                }
+                entries.add(new Entry(millisOfMinute, new String(hashBytes, StandardCharsets.UTF_8), offset, length));
+                scannedTo = offset + length;
+            }
+        }
+    }
+
+    private void reset(Object newFileKey) {
+        entries.clear();
+        scannedTo = FILE_HEADER;
+        fileKey = newFileKey;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Appends one record, truncating any partial record left behind by a failed write.
+     */
+    void append(int millisOfMinute, String hash, InputStream input) throws IOException {
+        file.getParentFile().mkdirs();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long start = validEnd(channel);
+            byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(4 + hashBytes.length + 8);
+            header.putChar((char) millisOfMinute);
+            header.putChar((char) hashBytes.length);
+            header.put(hashBytes);
+            header.putLong(IN_PROGRESS);
+            header.flip();
+            long lengthPosition = start + 4 + hashBytes.length;
+            try {
+                writeFully(channel, header, start);
+                channel.position(lengthPosition + 8);
+                long copied = ByteStreams.copy(input, Channels.newOutputStream(channel));
+                ByteBuffer length = ByteBuffer.allocate(8);
+                length.putLong(copied);
+                length.flip();
+                writeFully(channel, length, lengthPosition);
+                logger.trace("appended {} {} {} {}", file, millisOfMinute, hash, copied);
+            } catch (IOException e) {
+                channel.truncate(start);
+                throw e;
+            }
+        }
+    }
+
+    private long validEnd(FileChannel channel) throws IOException {
+        if (channel.size() < FILE_HEADER) {
+            channel.truncate(0);
+            ByteBuffer magic = ByteBuffer.allocate(FILE_HEADER);
+            magic.putInt(MAGIC);
+            magic.flip();
+            writeFully(channel, magic, 0);
+            return FILE_HEADER;
+        }
+        long end;
+        synchronized (this) {
+            refresh();
+            end = scannedTo;
+        }
+        if (channel.size() > end) {
+            logger.info("truncating partial record {} from {} to {}", file, channel.size(), end);
+            channel.truncate(end);
+        }
+        return end;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    void read(Entry entry, OutputStream output) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.position(entry.offset);
+            ByteStreams.copy(ByteStreams.limit(Channels.newInputStream(channel), entry.length), output);
+        }
+    }
+
+    ByteBuffer readBuffer(Entry entry) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return LocalSpokeStore.readRegion(channel, entry.offset, entry.length);
+        }
+    }
+
+    /**
+     * Rewrites the segment without the matching entries.
+     *
+     * @return true if any entries were removed
+     */
+    boolean remove(Predicate<Entry> predicate) throws IOException {
+        List<Entry> current = getEntries();
+        List<Entry> keep = new ArrayList<>();
+        for (Entry entry : current) {
+            if (!predicate.test(entry)) {
+                keep.add(entry);
+            }
+        }
+        if (keep.size() == current.size()) {
+            return false;
+        }
+        if (keep.isEmpty()) {
+            return file.delete();
+        }
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        SpokeSegment rewrite = new SpokeSegment(temp);
+        temp.delete();
+        for (Entry entry : keep) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream((int) entry.length);
+            read(entry, baos);
+            rewrite.append(entry.millisOfMinute, entry.hash, new ByteArrayInputStream(baos.toByteArray()));
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    static class Entry {
+        private final int millisOfMinute;
+        private final String hash;
+        private final long offset;
+        private final long length;
+
+        Entry(int millisOfMinute, String hash, long offset, long length) {
+            this.millisOfMinute = millisOfMinute;
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        int getMillisOfMinute() {
+            return millisOfMinute;
+        }
+
+        int getSecond() {
+            return millisOfMinute / 1000;
+        }
+
+        String getHash() {
+            return hash;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        /**
+         * @return the part of the key within the minute, ss/SSS/hash
+         */
+        String toUrl() {
+            int second = millisOfMinute / 1000;
+            int millis = millisOfMinute % 1000;
+            StringBuilder builder = new StringBuilder(8 + hash.length());
+            if (second < 10) {
+                builder.append('0');
+            }
+            builder.append(second).append('/');
+            if (millis < 100) {
+                builder.append('0');
+            }
+            if (millis < 10) {
+                builder.append('0');
+            }
+            return builder.append(millis).append('/').append(hash).toString();
+        }
+    }
+}
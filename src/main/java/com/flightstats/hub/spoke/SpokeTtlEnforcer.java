@@ -3,9 +3,10 @@ package com.flightstats.hub.spoke;
 import com.flightstats.hub.app.HubProperties;
 import com.flightstats.hub.app.HubServices;
 import com.flightstats.hub.dao.ChannelService;
+import com.flightstats.hub.dao.TtlDeleter;
 import com.flightstats.hub.dao.TtlEnforcer;
+import com.flightstats.hub.metrics.MetricsService;
 import com.flightstats.hub.model.ChannelConfig;
-import com.flightstats.hub.util.Commander;
 import com.flightstats.hub.util.TimeUtil;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.inject.Inject;
@@ -14,8 +15,9 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
 
 @Singleton
 public class SpokeTtlEnforcer {
@@ -25,6 +27,8 @@ public class SpokeTtlEnforcer {
 
     @Inject
     private ChannelService channelService;
+    @Inject
+    private MetricsService metricsService;
 
     public SpokeTtlEnforcer(String storagePath, int ttlMinutes) {
         this.storagePath = storagePath;
@@ -34,19 +38,14 @@ public class SpokeTtlEnforcer {
         }
     }
 
-    private Consumer<ChannelConfig> handleCleanup() {
-        return channel -> {
-            String channelPath = storagePath + "/" + channel.getDisplayName();
+    private BiConsumer<ChannelConfig, TtlDeleter> handleCleanup() {
+        return (channel, deleter) -> {
+            File channelDir = new File(storagePath, channel.getDisplayName());
             if (channel.isLive()) {
                 DateTime ttlDateTime = TimeUtil.stable().minusMinutes(ttlMinutes + 1);
-                for (int i = 0; i < 2; i++) {
-                    Commander.run(new String[]{"rm", "-rf", channelPath + "/" + TimeUtil.minutes(ttlDateTime.minusMinutes(i))}, 1);
-                    Commander.run(new String[]{"rm", "-rf", channelPath + "/" + TimeUtil.hours(ttlDateTime.minusHours(i + 1))}, 5);
-                    Commander.run(new String[]{"rm", "-rf", channelPath + "/" + TimeUtil.days(ttlDateTime.minusDays(i + 1))}, 5);
-                    Commander.run(new String[]{"rm", "-rf", channelPath + "/" + TimeUtil.months(ttlDateTime.minusMonths(i + 1))}, 5);
-                }
+                deleter.deleteBefore(channelDir, TimeUtil.Unit.MINUTES.round(ttlDateTime).plusMinutes(1));
             } else {
-                Commander.run(new String[]{"find", channelPath, "-mmin", "+" + ttlMinutes, "-delete"}, 1);
+                deleter.deleteModifiedBefore(channelDir, System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(ttlMinutes));
             }
         };
     }
@@ -57,8 +56,11 @@ public class SpokeTtlEnforcer {
             try {
                 long start = System.currentTimeMillis();
                 logger.info("running ttl cleanup");
-                TtlEnforcer.enforce(storagePath, channelService, handleCleanup());
-                logger.info("completed ttl cleanup {}", (System.currentTimeMillis() - start));
+                TtlDeleter deleter = TtlEnforcer.enforce(storagePath, channelService, handleCleanup());
+                logger.info("completed ttl cleanup {} files {} bytes {}", (System.currentTimeMillis() - start),
+                        deleter.getFiles(), deleter.getBytes());
+                metricsService.count("spoke.ttl.files", deleter.getFiles(), "path:" + storagePath);
+                metricsService.count("spoke.ttl.bytes", deleter.getBytes(), "path:" + storagePath);
             } catch (Exception e) {
                 logger.info("issue cleaning up spoke", e);
             }
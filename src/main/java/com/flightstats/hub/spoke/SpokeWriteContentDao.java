@@ -16,10 +16,7 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.*;
 
 /**
  * This is the entry point in the Hub's storage system, Spoke.
@@ -46,10 +43,18 @@ public class SpokeWriteContentDao implements ContentDao {
 
     @Override
     public SortedSet<ContentKey> insert(BulkContent bulkContent) throws Exception {
-        return SpokeContentDao.insert(bulkContent, (baos) -> {
-            String channel = bulkContent.getChannel();
-            return spokeStore.insert(SpokeStore.WRITE, channel, baos.toByteArray(), "bulkKey", channel);
-        });
+        return SpokeContentDao.insert(bulkContent, (items) -> spokeStore.insertBulk(SpokeStore.WRITE, bulkContent.getChannel(), items));
+    }
+
+    @Override
+    public Map<ContentKey, byte[]> readMarshalled(String channelName, Collection<ContentKey> keys) {
+        Traces traces = ActiveTraces.getLocal();
+        traces.add("SpokeWriteContentDao.readMarshalled", keys.size());
+        try {
+            return spokeStore.readBulk(SpokeStore.WRITE, channelName, keys);
+        } finally {
+            traces.add("SpokeWriteContentDao.readMarshalled completed");
+        }
     }
 
     private String getPath(String channelName, ContentKey key) {
@@ -8,9 +8,13 @@ public class Chunk {
     private int index = 0;
 
     Chunk(int count, int chunkSize) {
+        this(count, new byte[chunkSize]);
+    }
+
+    Chunk(int count, byte[] bytes) {
         this.count = count;
-        this.chunkSize = chunkSize;
-        bytes = new byte[chunkSize];
+        this.chunkSize = bytes.length;
+        this.bytes = bytes;
     }
 
     /**
@@ -26,6 +30,16 @@ public class Chunk {
         return true;
     }
 
+    /**
+     * @return the number of bytes added, which is less than length once the chunk is full.
+     */
+    int add(byte[] source, int offset, int length) {
+        int added = Math.min(length, chunkSize - index);
+        System.arraycopy(source, offset, bytes, index, added);
+        index += added;
+        return added;
+    }
+
     boolean isFull() {
         return index >= chunkSize;
     }
@@ -43,7 +57,11 @@ public class Chunk {
         return partial;
     }
 
+    byte[] getBuffer() {
+        return bytes;
+    }
+
     public int getCount() {
         return count;
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,11 @@
 package com.flightstats.hub.util;
 
+import com.flightstats.hub.app.HubProperties;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,40 +15,92 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 
+/**
+ * ChunkOutputStream splits a stream into chunks sized by ChunkStrategy, and hands each full chunk to chunkFunction.
+ * The chunks of every stream are processed on one shared pool of s3.large.uploadThreads threads,
+ * and each stream has at most threads chunks in flight, so a stream's memory is bounded and a burst of
+ * large inserts can not create an unbounded number of threads.  Chunk buffers are reused through ChunkPool.
+ */
 public class ChunkOutputStream extends OutputStream {
     private static final Logger logger = LoggerFactory.getLogger(ChunkOutputStream.class);
 
-    private ListeningExecutorService service;
-    private List<ListenableFuture<String>> futures = new ArrayList<>();
+    private static final ListeningExecutorService service = MoreExecutors.listeningDecorator(
+            Executors.newFixedThreadPool(HubProperties.getProperty("s3.large.uploadThreads", 32),
+                    new ThreadFactoryBuilder().setNameFormat("ChunkOutputStream-%d").setDaemon(true).build()));
+
+    private final List<ListenableFuture<String>> futures = new ArrayList<>();
+    private final Semaphore inFlight;
+    private final Function<Chunk, String> chunkFunction;
     private int count = 1;
-    private Chunk chunk = new Chunk(count, ChunkStrategy.getSize(count));
-    private Function<Chunk, String> chunkFunction;
+    private Chunk chunk = createChunk(count);
+    private volatile Throwable failure;
 
     public ChunkOutputStream(int threads, Function<Chunk, String> chunkFunction) {
         this.chunkFunction = chunkFunction;
-        service = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(threads));
+        inFlight = new Semaphore(threads);
         logger.info("creating ChunkOutputStream with {} threads", threads);
     }
 
+    private static Chunk createChunk(int count) {
+        return new Chunk(count, ChunkPool.take(ChunkStrategy.getSize(count)));
+    }
+
     public void write(int b) throws IOException {
         if (!chunk.add(b)) {
-            sendChunk(chunk);
-            count++;
-            chunk = new Chunk(count, ChunkStrategy.getSize(count));
+            nextChunk();
             chunk.add(b);
         }
     }
 
-    private void sendChunk(Chunk chunk) {
-        futures.add(service.submit(() -> chunkFunction.apply(chunk)));
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (chunk.isFull()) {
+                nextChunk();
+            }
+            int added = chunk.add(bytes, offset, length);
+            offset += added;
+            length -= added;
+        }
+    }
+
+    private void nextChunk() throws IOException {
+        sendChunk(chunk);
+        count++;
+        chunk = createChunk(count);
+    }
+
+    private void sendChunk(Chunk chunk) throws IOException {
+        if (failure != null) {
+            throw new IOException("unable to send chunk " + chunk.getCount(), failure);
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        }
+        futures.add(service.submit(() -> {
+            try {
+                return chunkFunction.apply(chunk);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                ChunkPool.release(chunk.getBuffer());
+                inFlight.release();
+            }
+        }));
     }
 
     @Override
     public void close() throws IOException {
         if (chunk.hasData()) {
             sendChunk(chunk);
+        } else {
+            ChunkPool.release(chunk.getBuffer());
         }
         ListenableFuture<String> allFutures = Futures.whenAllSucceed(futures).call(() -> "ok", MoreExecutors.directExecutor());
         try {
@@ -55,8 +109,6 @@ public class ChunkOutputStream extends OutputStream {
             throw new RuntimeInterruptedException(e);
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
-        } finally {
-            service.shutdown();
         }
     }
 }
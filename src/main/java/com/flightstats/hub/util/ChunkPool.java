@@ -0,0 +1,42 @@
+package com.flightstats.hub.util;
+
+import com.flightstats.hub.app.HubProperties;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ChunkPool keeps the buffers of uploaded chunks for reuse, by size, so large inserts do not allocate
+ * a new buffer of several megabytes for every chunk.  At most s3.large.poolMB of idle buffers are kept.
+ */
+class ChunkPool {
+
+    private static final long MAX_BYTES = HubProperties.getProperty("s3.large.poolMB", 200) * 1024L * 1024L;
+    private static final Map<Integer, Queue<byte[]>> buffers = new ConcurrentHashMap<>();
+    private static final AtomicLong pooledBytes = new AtomicLong();
+
+    static byte[] take(int size) {
+        Queue<byte[]> queue = buffers.get(size);
+        byte[] buffer = queue == null ? null : queue.poll();
+        if (buffer == null) {
+            return new byte[size];
+        }
+        pooledBytes.addAndGet(-size);
+        return buffer;
+    }
+
+    static void release(byte[] buffer) {
+        if (pooledBytes.addAndGet(buffer.length) > MAX_BYTES) {
+            pooledBytes.addAndGet(-buffer.length);
+            return;
+        }
+        buffers.computeIfAbsent(buffer.length, size -> new ConcurrentLinkedQueue<>()).add(buffer);
+    }
+
+    static long getPooledBytes() {
+        return pooledBytes.get();
+    }
+}
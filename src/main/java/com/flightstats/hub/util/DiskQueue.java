@@ -0,0 +1,197 @@
+package com.flightstats.hub.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DiskQueue is a durable FIFO queue of single line records, kept in append-only segment files in a directory.
+ * Records are handed out by poll, and a segment is deleted once all of its records have been completed.
+ * Any records which were not completed before a restart are handed out again, so consumers need to be idempotent.
+ * Records are written without an fsync, so they survive a restart of the process, not of the host.
+ */
+public class DiskQueue {
+
+    private final static Logger logger = LoggerFactory.getLogger(DiskQueue.class);
+    private static final String SUFFIX = ".queue";
+
+    private final File directory;
+    private final int segmentRecords;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment writeSegment;
+    private long size;
+
+    public DiskQueue(File directory, int segmentRecords) throws IOException {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+        long lastId = 0;
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                long id = Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length()));
+                lastId = Math.max(lastId, id);
+                Segment segment = new Segment(id, file);
+                segment.written = countRecords(file);
+                if (segment.written == 0) {
+                    file.delete();
+                    continue;
+                }
+                segments.put(id, segment);
+                size += segment.written;
+            }
+        }
+        logger.info("opened {} with {} records in {} segments", directory, size, segments.size());
+        writeSegment = createSegment(lastId + 1);
+    }
+
+    public static class Record {
+        private final long segment;
+        private final String value;
+
+        Record(long segment, String value) {
+            this.segment = segment;
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private static class Segment {
+        private final long id;
+        private final File file;
+        private OutputStream output;
+        private BufferedReader reader;
+        private int written;
+        private int read;
+        private int completed;
+
+        Segment(long id, File file) {
+            this.id = id;
+            this.file = file;
+        }
+    }
+
+    public synchronized void add(String value) throws IOException {
+        if (writeSegment.written >= segmentRecords) {
+            writeSegment.output.close();
+            writeSegment.output = null;
+            writeSegment = createSegment(writeSegment.id + 1);
+        }
+        writeSegment.output.write((value + "\n").getBytes(StandardCharsets.UTF_8));
+        writeSegment.written++;
+        size++;
+        notifyAll();
+    }
+
+    /**
+     * @return the oldest record which has not been handed out, or null if there is none within the timeout
+     */
+    public synchronized Record poll(long timeout, TimeUnit unit) throws InterruptedException, IOException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        while (size == 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            wait(remaining);
+        }
+        for (Segment segment : segments.values()) {
+            if (segment.read < segment.written) {
+                if (segment.reader == null) {
+                    segment.reader = new BufferedReader(new InputStreamReader(new FileInputStream(segment.file), StandardCharsets.UTF_8));
+                }
+                String value = segment.reader.readLine();
+                segment.read++;
+                size--;
+                if (segment.read == segment.written && segment != writeSegment) {
+                    segment.reader.close();
+                    segment.reader = null;
+                }
+                return new Record(segment.id, value);
+            }
+        }
+        throw new IllegalStateException("no unread records in " + directory + " with size " + size);
+    }
+
+    /**
+     * Marks the record as done.  Once every record of a segment is done, the segment is deleted.
+     */
+    public synchronized void complete(Record record) throws IOException {
+        Segment segment = segments.get(record.segment);
+        if (segment == null) {
+            return;
+        }
+        segment.completed++;
+        if (segment.completed < segment.written) {
+            return;
+        }
+        if (segment == writeSegment) {
+            writeSegment = createSegment(segment.id + 1);
+        }
+        close(segment);
+        segments.remove(segment.id);
+        if (!segment.file.delete()) {
+            logger.warn("unable to delete {}", segment.file);
+        }
+    }
+
+    /**
+     * @return the number of records which have not been handed out
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            try {
+                close(segment);
+            } catch (IOException e) {
+                logger.warn("unable to close " + segment.file, e);
+            }
+        }
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        Segment segment = new Segment(id, new File(directory, String.format("%019d", id) + SUFFIX));
+        segment.output = new FileOutputStream(segment.file, true);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void close(Segment segment) throws IOException {
+        if (segment.output != null) {
+            segment.output.close();
+            segment.output = null;
+        }
+        if (segment.reader != null) {
+            segment.reader.close();
+            segment.reader = null;
+        }
+    }
+
+    /**
+     * A partial record at the end of a file, from a write which was interrupted, is not counted.
+     */
+    private static int countRecords(File file) throws IOException {
+        int count = 0;
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            int b;
+            while ((b = input.read()) != -1) {
+                if (b == '\n') {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
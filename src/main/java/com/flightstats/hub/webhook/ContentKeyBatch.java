@@ -0,0 +1,88 @@
+package com.flightstats.hub.webhook;
+
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.ContentPath;
+import com.flightstats.hub.model.ContentPathKeys;
+import org.joda.time.DateTime;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A ContentKeyBatch is a run of consecutive items a SINGLE webhook delivers in one callback.
+ * It sorts, and is recorded as progress, as its last key.
+ */
+class ContentKeyBatch implements ContentPathKeys {
+
+    private final List<ContentKey> keys;
+    private final ContentKey last;
+
+    ContentKeyBatch(List<ContentKey> keys) {
+        this.keys = Collections.unmodifiableList(keys);
+        this.last = keys.get(keys.size() - 1);
+    }
+
+    /**
+     * Returns the keys a path delivers, which is the path itself unless it is a batch.
+     */
+    static List<? extends ContentPath> getPaths(ContentPath contentPath) {
+        if (contentPath instanceof ContentKeyBatch) {
+            return ((ContentKeyBatch) contentPath).getKeys();
+        }
+        return Collections.singletonList(contentPath);
+    }
+
+    /**
+     * Returns the path to record as the webhook's progress once the path is delivered.
+     */
+    static ContentPath getProgress(ContentPath contentPath) {
+        if (contentPath instanceof ContentKeyBatch) {
+            return ((ContentKeyBatch) contentPath).getLast();
+        }
+        return contentPath;
+    }
+
+    @Override
+    public List<ContentKey> getKeys() {
+        return keys;
+    }
+
+    ContentKey getLast() {
+        return last;
+    }
+
+    @Override
+    public byte[] toBytes() {
+        return last.toBytes();
+    }
+
+    @Override
+    public String toUrl() {
+        return last.toUrl();
+    }
+
+    @Override
+    public DateTime getTime() {
+        return last.getTime();
+    }
+
+    @Override
+    public String toZk() {
+        return last.toZk();
+    }
+
+    @Override
+    public ContentPath fromZk(String value) {
+        return last.fromZk(value);
+    }
+
+    @Override
+    public int compareTo(ContentPath other) {
+        return last.compareTo(getProgress(other));
+    }
+
+    @Override
+    public String toString() {
+        return keys.toString();
+    }
+}
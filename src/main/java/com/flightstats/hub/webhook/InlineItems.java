@@ -0,0 +1,100 @@
+package com.flightstats.hub.webhook;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.flightstats.hub.dao.ChannelService;
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.StreamResults;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * InlineItems adds an entry for each of a webhook's items to a callback, in order, with the content of the items
+ * while it fits within maxInlineBytes.  The keys are read in chunks, sized from the average item read so far, so
+ * reading stops soon after the budget is used, instead of reading every item and dropping what does not fit.
+ * Each key is read at most once, with bulk reads only.  Large items, items over the budget, and items the bulk read
+ * does not return get an entry with only the uri.
+ */
+class InlineItems implements Consumer<Content> {
+
+    private final Webhook webhook;
+    private final ArrayNode items;
+    private final Map<ContentKey, Content> inlined = new TreeMap<>();
+    private long remaining;
+    private long bytes;
+    private int count;
+    private boolean full;
+
+    InlineItems(Webhook webhook, ArrayNode items) {
+        this.webhook = webhook;
+        this.items = items;
+        this.remaining = webhook.getMaxInlineBytes();
+    }
+
+    void read(ChannelService channelService, List<ContentKey> keys) {
+        int next = 0;
+        int chunk = 1;
+        while (next < keys.size() && !isFull()) {
+            List<ContentKey> chunkKeys = keys.subList(next, Math.min(keys.size(), next + chunk));
+            next += chunkKeys.size();
+            channelService.get(StreamResults.builder()
+                    .channel(webhook.getChannelName())
+                    .keys(new TreeSet<>(chunkKeys))
+                    .skipLarge(true)
+                    .bulkOnly(true)
+                    .callback(this)
+                    .build());
+            chunk = nextChunk(chunk);
+        }
+        addItems(keys);
+    }
+
+    private synchronized void addItems(List<ContentKey> keys) {
+        for (ContentKey key : keys) {
+            ObjectNode item = items.addObject();
+            item.put("uri", webhook.getChannelUrl() + "/" + key.toUrl());
+            Content content = inlined.get(key);
+            if (content != null) {
+                if (content.getContentType().isPresent()) {
+                    item.put("contentType", content.getContentType().get());
+                }
+                item.put("data", content.getData());
+            }
+        }
+    }
+
+    private synchronized boolean isFull() {
+        return full || remaining <= 0;
+    }
+
+    private synchronized int nextChunk(int chunk) {
+        if (count == 0) {
+            return chunk * 2;
+        }
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, remaining / Math.max(1, bytes / count)));
+    }
+
+    @Override
+    public synchronized void accept(Content content) {
+        if (full || content.isIndexForLarge() || !content.getContentKey().isPresent()) {
+            return;
+        }
+        byte[] data = content.getData();
+        if (data == null) {
+            return;
+        }
+        if (data.length > remaining) {
+            full = true;
+            return;
+        }
+        remaining -= data.length;
+        bytes += data.length;
+        count++;
+        inlined.put(content.getContentKey().get(), content);
+    }
+}
@@ -5,11 +5,13 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.flightstats.hub.app.HubProvider;
 import com.flightstats.hub.model.ContentPath;
+import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 import java.util.TreeMap;
@@ -27,6 +29,7 @@ public class InternalWebhookResource {
     private final static ObjectMapper mapper = HubProvider.getInstance(ObjectMapper.class);
     private final static WebhookService webhookService = HubProvider.getInstance(WebhookService.class);
     private final static LocalWebhookManager LOCAL_WEBHOOK_MANAGER = HubProvider.getInstance(LocalWebhookManager.class);
+    private final static WebhookNotifier webhookNotifier = HubProvider.getInstance(WebhookNotifier.class);
 
     @Context
     private UriInfo uriInfo;
@@ -43,6 +46,7 @@ public class InternalWebhookResource {
         directions.put("errors", "HTTP GET to /internal/webhook/errors to list all webhooks with recent errors.");
         directions.put("run/{name}", "HTTP PUT to /internal/webhook/run/{name} to start processing this webhook.");
         directions.put("delete/{name}", "HTTP PUT to /internal/webhook/delete/{name} to stop processing this webhook on this server.");
+        directions.put("notify", "HTTP POST to /internal/webhook/notify with newline separated channels to wake their webhooks on this server.");
 
         ObjectNode links = root.putObject("_links");
         addLink(links, "self", uriInfo.getRequestUri().toString());
@@ -93,6 +97,8 @@ public class InternalWebhookResource {
             objectNode.put("heartbeat", webhook.isHeartbeat());
             objectNode.put("ttlMinutes", webhook.getTtlMinutes());
             objectNode.put("maxWaitMinutes", webhook.getMaxWaitMinutes());
+            objectNode.put("maxItems", webhook.getMaxItems());
+            objectNode.put("maxInlineBytes", webhook.getMaxInlineBytes());
         }
         return Response.ok(root).build();
     }
@@ -144,6 +150,13 @@ public class InternalWebhookResource {
         return Response.ok().build();
     }
 
+    @POST
+    @Path("/notify")
+    public Response notify(String channels) {
+        webhookNotifier.wake(Arrays.asList(StringUtils.split(channels, "\n")));
+        return Response.ok().build();
+    }
+
     @GET
     @Path("/count")
     public Response count() {
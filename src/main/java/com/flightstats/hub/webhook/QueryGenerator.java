@@ -52,6 +52,17 @@ public class QueryGenerator {
         return TimeUtil.Unit.SECONDS;
     }
 
+    /**
+     * Moves past the time range the caller knows has no new items, without querying it.
+     */
+    void skipTo(DateTime time) {
+        DateTime skipTime = TimeUtil.Unit.SECONDS.round(time);
+        if (skipTime.isAfter(lastQueryTime)) {
+            logger.trace("skipping from {} to {}", lastQueryTime, skipTime);
+            lastQueryTime = skipTime;
+        }
+    }
+
     DateTime getLastQueryTime() {
         return lastQueryTime;
     }
@@ -3,6 +3,7 @@ package com.flightstats.hub.webhook;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.flightstats.hub.app.HubProperties;
 import com.flightstats.hub.app.HubProvider;
 import com.flightstats.hub.cluster.LastContentPath;
 import com.flightstats.hub.dao.ChannelService;
@@ -10,7 +11,6 @@ import com.flightstats.hub.exception.NoSuchChannelException;
 import com.flightstats.hub.metrics.ActiveTraces;
 import com.flightstats.hub.model.*;
 import com.flightstats.hub.util.RuntimeInterruptedException;
-import com.flightstats.hub.util.Sleeper;
 import com.flightstats.hub.util.TimeUtil;
 import com.google.common.base.Optional;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -18,7 +18,10 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -27,6 +30,7 @@ class SingleWebhookStrategy implements WebhookStrategy {
 
     private final static Logger logger = LoggerFactory.getLogger(SingleWebhookStrategy.class);
     private static final ObjectMapper mapper = HubProvider.getInstance(ObjectMapper.class);
+    private static final int POLL_SECONDS = HubProperties.getProperty("webhook.pollSeconds", 10);
     private final Webhook webhook;
     private final LastContentPath lastContentPath;
     private final ChannelService channelService;
@@ -36,13 +40,16 @@ class SingleWebhookStrategy implements WebhookStrategy {
     private String channel;
     private QueryGenerator queryGenerator;
     private ExecutorService executorService;
+    private final Semaphore wakeups = new Semaphore(0);
+    private final Runnable wakeListener = wakeups::release;
+    private WebhookNotifier webhookNotifier;
 
 
     SingleWebhookStrategy(Webhook webhook, LastContentPath lastContentPath, ChannelService channelService) {
         this.webhook = webhook;
         this.lastContentPath = lastContentPath;
         this.channelService = channelService;
-        this.queue = new ArrayBlockingQueue<>(webhook.getParallelCalls() * 2);
+        this.queue = new ArrayBlockingQueue<>(webhook.getParallelCalls() * webhook.getMaxItems() * 2);
     }
 
     @Override
@@ -65,10 +72,15 @@ class SingleWebhookStrategy implements WebhookStrategy {
     public ObjectNode createResponse(ContentPath contentPath) {
         ObjectNode response = mapper.createObjectNode();
         response.put("name", webhook.getName());
-        if (contentPath instanceof ContentKey) {
+        if (contentPath instanceof ContentKey || contentPath instanceof ContentKeyBatch) {
             ArrayNode uris = response.putArray("uris");
-            uris.add(webhook.getChannelUrl() + "/" + contentPath.toUrl());
+            for (ContentPath key : ContentKeyBatch.getPaths(contentPath)) {
+                uris.add(webhook.getChannelUrl() + "/" + key.toUrl());
+            }
             response.put("type", "item");
+            if (webhook.getMaxInlineBytes() > 0) {
+                addItems(response, contentPath);
+            }
         } else {
             response.put("id", contentPath.toUrl());
             response.put("type", "heartbeat");
@@ -76,6 +88,23 @@ class SingleWebhookStrategy implements WebhookStrategy {
         return response; 
     }
 
+    /**
+     * Embeds the content of the items, in order, while they fit within maxInlineBytes, so the callback does not need
+     * to read them back.  Items after the budget is used, large items, and items which can not be read only have a uri.
+     */
+    private void addItems(ObjectNode response, ContentPath contentPath) {
+        List<ContentKey> keys = new ArrayList<>();
+        for (ContentPath key : ContentKeyBatch.getPaths(contentPath)) {
+            keys.add((ContentKey) key);
+        }
+        Collections.sort(keys);
+        try {
+            new InlineItems(webhook, response.putArray("items")).read(channelService, keys);
+        } catch (Exception e) {
+            logger.warn("unable to inline items for " + webhook.getName(), e);
+        }
+    }
+
     @Override
     public ContentPath inProcess(ContentPath contentPath) {
         return contentPath;
@@ -87,12 +116,34 @@ class SingleWebhookStrategy implements WebhookStrategy {
             logger.error("unable to determine next " + webhook.getName(), e);
             throw e;
         }
-        return Optional.fromNullable(queue.poll(10, TimeUnit.SECONDS));
+        ContentPath next = queue.poll(10, TimeUnit.SECONDS);
+        if (next instanceof ContentKey && webhook.getMaxItems() > 1) {
+            return Optional.of(nextBatch((ContentKey) next));
+        }
+        return Optional.fromNullable(next);
+    }
+
+    /**
+     * Adds the consecutive items already waiting in the queue, up to maxItems, so a webhook which has fallen behind
+     * catches up with one callback per batch, while one which is caught up still gets each item as soon as it is stable.
+     */
+    private ContentPath nextBatch(ContentKey first) {
+        List<ContentKey> keys = new ArrayList<>();
+        keys.add(first);
+        while (keys.size() < webhook.getMaxItems() && queue.peek() instanceof ContentKey) {
+            keys.add((ContentKey) queue.poll());
+        }
+        if (keys.size() == 1) {
+            return first;
+        }
+        return new ContentKeyBatch(keys);
     }
 
     public void start(Webhook webhook, ContentPath startingPath) {
         channel = webhook.getChannelName();
         queryGenerator = new QueryGenerator(startingPath.getTime(), channel);
+        webhookNotifier = HubProvider.getInstance(WebhookNotifier.class);
+        webhookNotifier.register(channel, wakeListener);
         ThreadFactory factory = new ThreadFactoryBuilder().setNameFormat("single-webhook-" + webhook.getName() + "-%s").build();
         executorService = Executors.newSingleThreadExecutor(factory);
         executorService.submit(new Runnable() {
@@ -105,7 +156,7 @@ class SingleWebhookStrategy implements WebhookStrategy {
                 try {
                     while (!shouldExit.get()) {
                         if (!doWork()) {
-                            Sleeper.sleep(1000);
+                            awaitWork();
                         }
                     }
                 } catch (InterruptedException | RuntimeInterruptedException e) {
@@ -120,6 +171,23 @@ class SingleWebhookStrategy implements WebhookStrategy {
                 }
             }
 
+            /**
+             * Live webhooks without heartbeats wait to be woken by WebhookNotifier, and only check the latest item
+             * every webhook.pollSeconds, skipping the idle time instead of querying each second of it.
+             */
+            private void awaitWork() throws InterruptedException {
+                if (webhook.isHeartbeat() || !channelConfig.isLive()) {
+                    wakeups.tryAcquire(1, TimeUnit.SECONDS);
+                } else if (!wakeups.tryAcquire(POLL_SECONDS, TimeUnit.SECONDS)) {
+                    DateTime stable = TimeUtil.stable();
+                    Optional<ContentKey> latest = channelService.getLatest(channel, true);
+                    if (!latest.isPresent() || latest.get().compareTo(lastAdded) <= 0) {
+                        queryGenerator.skipTo(stable);
+                    }
+                }
+                wakeups.drainPermits();
+            }
+
             private boolean doWork() throws InterruptedException {
                 ActiveTraces.start("SingleWebhookStrategy", webhook);
                 try {
@@ -167,6 +235,9 @@ class SingleWebhookStrategy implements WebhookStrategy {
 
     @Override
     public void close() {
+        if (webhookNotifier != null) {
+            webhookNotifier.unregister(channel, wakeListener);
+        }
         WebhookStrategy.close(shouldExit, executorService, queue);
     }
 }
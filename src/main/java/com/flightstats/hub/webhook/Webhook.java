@@ -66,6 +66,10 @@ public class Webhook implements Comparable<Webhook>, NamedType {
     private final Integer maxAttempts;
     @Wither
     private final String errorChannelUrl;
+    @Wither
+    private final Integer maxItems;
+    @Wither
+    private final Integer maxInlineBytes;
 
     static Webhook fromJson(String json, Optional<Webhook> webhookOptional) {
         WebhookBuilder builder = Webhook.builder();
@@ -86,7 +90,9 @@ public class Webhook implements Comparable<Webhook>, NamedType {
                     .tagUrl(existing.tagUrl)
                     .managedByTag(existing.managedByTag)
                     .maxAttempts(existing.maxAttempts)
-                    .errorChannelUrl(existing.errorChannelUrl);
+                    .errorChannelUrl(existing.errorChannelUrl)
+                    .maxItems(existing.maxItems)
+                    .maxInlineBytes(existing.maxInlineBytes);
         }
         try {
             JsonNode root = mapper.readTree(json);
@@ -153,6 +159,12 @@ public class Webhook implements Comparable<Webhook>, NamedType {
             if (root.has("errorChannelUrl")) {
                 builder.errorChannelUrl(root.get("errorChannelUrl").asText());
             }
+            if (root.has("maxItems")) {
+                builder.maxItems(root.get("maxItems").intValue());
+            }
+            if (root.has("maxInlineBytes")) {
+                builder.maxInlineBytes(root.get("maxInlineBytes").intValue());
+            }
         } catch (IOException e) {
             logger.warn("unable to parse json" + json, e);
             throw new InvalidRequestException(e.getMessage());
@@ -197,7 +209,7 @@ public class Webhook implements Comparable<Webhook>, NamedType {
     static Webhook instanceFromTagPrototype(Webhook whp, ChannelConfig channel) {
         String channenUrl = RequestUtils.getHost(whp.getTagUrl()) + "/channel/" + channel.getName();
         String whName = "TAGWH_" + whp.getTagFromTagUrl() + "_" + channel.getName();
-        return new Webhook(whp.callbackUrl, channenUrl, whp.parallelCalls, whName, null, whp.batch, whp.heartbeat, whp.paused, whp.ttlMinutes, whp.maxWaitMinutes, whp.callbackTimeoutSeconds, whp.fastForwardable, null, whp.getTagFromTagUrl(), whp.maxAttempts, whp.errorChannelUrl);
+        return new Webhook(whp.callbackUrl, channenUrl, whp.parallelCalls, whName, null, whp.batch, whp.heartbeat, whp.paused, whp.ttlMinutes, whp.maxWaitMinutes, whp.callbackTimeoutSeconds, whp.fastForwardable, null, whp.getTagFromTagUrl(), whp.maxAttempts, whp.errorChannelUrl, whp.maxItems, whp.maxInlineBytes);
     }
 
     public static Webhook fromJson(String json) {
@@ -249,6 +261,12 @@ public class Webhook implements Comparable<Webhook>, NamedType {
         if (maxAttempts == null) {
             webhook = webhook.withMaxAttempts(0);
         }
+        if (maxItems == null) {
+            webhook = webhook.withMaxItems(1);
+        }
+        if (maxInlineBytes == null) {
+            webhook = webhook.withMaxInlineBytes(0);
+        }
         return webhook;
     }
 
@@ -260,6 +278,20 @@ public class Webhook implements Comparable<Webhook>, NamedType {
         return SECOND.equalsIgnoreCase(getBatch());
     }
 
+    public Integer getMaxItems() {
+        if (maxItems == null) {
+            return 1;
+        }
+        return maxItems;
+    }
+
+    public Integer getMaxInlineBytes() {
+        if (maxInlineBytes == null) {
+            return 0;
+        }
+        return maxInlineBytes;
+    }
+
     public Integer getTtlMinutes() {
         if (ttlMinutes == null) {
             return 0;
@@ -0,0 +1,89 @@
+package com.flightstats.hub.webhook;
+
+import com.flightstats.hub.app.HubProperties;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+/**
+ * WebhookClient is the delivery engine shared by every webhook on this server.
+ * Callbacks are sent with one asynchronous http client, which pools and keeps alive connections per
+ * destination host, retries wait on a timer instead of a sleeping thread, and the work done when a
+ * delivery completes runs on a small shared pool, so the thread count does not grow with the number of webhooks.
+ */
+@Singleton
+class WebhookClient {
+
+    private final static Logger logger = LoggerFactory.getLogger(WebhookClient.class);
+
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("WebhookClient-retry").setDaemon(true).build());
+    private final ExecutorService completions = Executors.newFixedThreadPool(
+            HubProperties.getProperty("webhook.client.completionThreads", 16),
+            new ThreadFactoryBuilder().setNameFormat("WebhookClient-%d").setDaemon(true).build());
+
+    WebhookClient() {
+        httpClient = new HttpClient(new SslContextFactory(true));
+        QueuedThreadPool threadPool = new QueuedThreadPool(HubProperties.getProperty("webhook.client.threads", 32));
+        threadPool.setName("WebhookClient-http");
+        threadPool.setDaemon(true);
+        httpClient.setExecutor(threadPool);
+        httpClient.setScheduler(new ScheduledExecutorScheduler("WebhookClient-scheduler", true));
+        httpClient.setMaxConnectionsPerDestination(HubProperties.getProperty("webhook.client.maxConnectionsPerHost", 100));
+        httpClient.setMaxRequestsQueuedPerDestination(HubProperties.getProperty("webhook.client.maxQueuedPerHost", 10000));
+        httpClient.setConnectTimeout(TimeUnit.SECONDS.toMillis(HubProperties.getProperty("webhook.connectTimeoutSeconds", 60)));
+        httpClient.setIdleTimeout(HubProperties.getProperty("webhook.client.keepAliveMillis", 60 * 1000));
+        httpClient.setFollowRedirects(true);
+        try {
+            httpClient.start();
+        } catch (Exception e) {
+            logger.error("unable to start webhook client", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * POSTs the json payload, and completes with the response status on the shared completion pool.
+     * The request may take connectTimeoutSeconds to connect, including any time spent waiting for a pooled
+     * connection to the host, and readTimeoutSeconds waiting for the response.
+     */
+    CompletableFuture<Integer> post(String url, String payload, int connectTimeoutSeconds, int readTimeoutSeconds) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        try {
+            httpClient.newRequest(url)
+                    .method(HttpMethod.POST)
+                    .content(new StringContentProvider("application/json", payload, StandardCharsets.UTF_8))
+                    .idleTimeout(readTimeoutSeconds, TimeUnit.SECONDS)
+                    .timeout(connectTimeoutSeconds + readTimeoutSeconds, TimeUnit.SECONDS)
+                    .send(result -> execute(() -> {
+                        if (result.isFailed()) {
+                            future.completeExceptionally(result.getFailure());
+                        } else {
+                            future.complete(result.getResponse().getStatus());
+                        }
+                    }));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    void schedule(Runnable runnable, long delayMillis) {
+        scheduler.schedule(() -> execute(runnable), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void execute(Runnable runnable) {
+        completions.execute(runnable);
+    }
+}
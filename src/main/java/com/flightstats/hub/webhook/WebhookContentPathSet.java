@@ -1,76 +1,387 @@
 package com.flightstats.hub.webhook;
 
+import com.flightstats.hub.app.HubProperties;
+import com.flightstats.hub.app.HubServices;
 import com.flightstats.hub.model.ContentPath;
+import com.flightstats.hub.spoke.SpokeStore;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * WebhookContentPathSet tracks the items each webhook has in flight.
+ * <p>
+ * Changes are appended to a local write-ahead log, which is synced every webhook.inFlight.syncMillis,
+ * so a leader does not write to ZooKeeper for every item it sends.  Every webhook.inFlight.checkpointSeconds,
+ * the set of each webhook which has changed is written as the data of /GroupInFlight/{name}, and a leader which
+ * takes over on another server starts from that checkpoint.  Items which were in flight for less than a checkpoint
+ * interval when a leader failed can be missed; a leader which stops cleanly writes its checkpoint on the way out.
+ * <p>
+ * Children of /GroupInFlight/{name}, written by servers which predate the checkpoint, are still read,
+ * and are removed once a leader has taken them over.
+ */
+@Singleton
 class WebhookContentPathSet {
     private final static Logger logger = LoggerFactory.getLogger(WebhookContentPathSet.class);
+    private static final String LOG_NAME = "inFlight.log";
 
     private final CuratorFramework curator;
+    private final File directory;
+    private final File logFile;
+    private final Map<String, InFlight> webhooks = new HashMap<>();
+    private final Set<String> dirty = new HashSet<>();
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("WebhookInFlight").setDaemon(true).build());
+    private FileOutputStream fileOutput;
+    private Writer writer;
+    private boolean unsynced;
+    private long records;
 
     @Inject
-    public WebhookContentPathSet(CuratorFramework curator) {
+    public WebhookContentPathSet(CuratorFramework curator) throws IOException {
+        this(curator, new File(HubProperties.getProperty("webhook.inFlight.path",
+                new File(HubProperties.getSpokePath(SpokeStore.WRITE)).getParent() + "/webhookInFlight")));
+        HubServices.registerPreStop(new WebhookContentPathSetService());
+    }
+
+    WebhookContentPathSet(CuratorFramework curator, File directory) throws IOException {
         this.curator = curator;
+        this.directory = directory;
+        this.logFile = new File(directory, LOG_NAME);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+        replay();
+        compact();
+        long syncMillis = HubProperties.getProperty("webhook.inFlight.syncMillis", 100);
+        long checkpointSeconds = HubProperties.getProperty("webhook.inFlight.checkpointSeconds", 10);
+        executorService.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        executorService.scheduleWithFixedDelay(this::checkpointAll, checkpointSeconds, checkpointSeconds, TimeUnit.SECONDS);
+    }
+
+    private static class InFlight {
+        private final Set<String> keys = new HashSet<>();
+        private long modified;
+    }
+
+    private static class Checkpoint {
+        private final Set<String> keys = new HashSet<>();
+        private final Set<String> legacyKeys = new HashSet<>();
+        private long time;
     }
 
     public void add(String webhookName, ContentPath key) {
-        String path = getPath(webhookName, key);
+        update("A", webhookName, key.toZk());
+    }
+
+    public void remove(String webhookName, ContentPath key) {
+        update("R", webhookName, key.toZk());
+    }
+
+    private synchronized void update(String type, String webhookName, String key) {
+        long now = System.currentTimeMillis();
+        if (apply(type, now, webhookName, key)) {
+            append(type, now, webhookName, key);
+            dirty.add(webhookName);
+        }
+    }
+
+    /**
+     * @return the in flight set from the local log if it is newer than the checkpoint, otherwise from the checkpoint.
+     */
+    Set<ContentPath> getSet(String webhookName, ContentPath type) {
+        Checkpoint checkpoint = readCheckpoint(webhookName);
+        Set<String> keys = new HashSet<>(checkpoint.legacyKeys);
+        synchronized (this) {
+            InFlight inFlight = webhooks.get(webhookName);
+            if (inFlight != null && inFlight.modified >= checkpoint.time) {
+                keys.addAll(inFlight.keys);
+            } else {
+                keys.addAll(checkpoint.keys);
+            }
+        }
+        return toPaths(keys, type);
+    }
+
+    /**
+     * Called by a new leader, which continues from the newer of the local log and the checkpoint.
+     * Any legacy children are moved into the checkpoint.
+     */
+    Set<ContentPath> takeOver(String webhookName, ContentPath type) {
+        Checkpoint checkpoint = readCheckpoint(webhookName);
+        Set<String> keys;
+        synchronized (this) {
+            InFlight inFlight = webhooks.get(webhookName);
+            keys = new HashSet<>(inFlight != null && inFlight.modified >= checkpoint.time ? inFlight.keys : checkpoint.keys);
+            keys.addAll(checkpoint.legacyKeys);
+            long now = System.currentTimeMillis();
+            apply("S", now, webhookName, null);
+            append("S", now, webhookName, "");
+            for (String key : keys) {
+                apply("A", now, webhookName, key);
+                append("A", now, webhookName, key);
+            }
+        }
+        if (checkpoint(webhookName)) {
+            for (String legacyKey : checkpoint.legacyKeys) {
+                deleteNode(getPath(webhookName) + "/" + legacyKey);
+            }
+        }
+        return toPaths(keys, type);
+    }
+
+    public void delete(String webhookName) {
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            apply("D", now, webhookName, null);
+            append("D", now, webhookName, "");
+            dirty.remove(webhookName);
+        }
+        String path = getPath(webhookName);
         try {
-            curator.create().creatingParentsIfNeeded().forPath(path);
-        } catch (KeeperException.NodeExistsException ignore) {
-            logger.info("node exists " + path);
+            curator.delete().deletingChildrenIfNeeded().forPath(path);
+        } catch (KeeperException.NoNodeException e) {
+            logger.debug("no node for {}", path);
         } catch (Exception e) {
-            logger.warn("unable to create " + path, e);
+            logger.warn("unable to delete {} {}", path, e.getMessage());
         }
     }
 
-    public void remove(String webhookName, ContentPath key) {
-        String path = getPath(webhookName, key);
+    /**
+     * Writes the webhook's set to ZooKeeper.
+     *
+     * @return true if the checkpoint was written
+     */
+    boolean checkpoint(String webhookName) {
+        byte[] data;
+        synchronized (this) {
+            dirty.remove(webhookName);
+            InFlight inFlight = webhooks.get(webhookName);
+            if (inFlight == null) {
+                return true;
+            }
+            data = (inFlight.modified + "\n" + StringUtils.join(inFlight.keys, "\n")).getBytes(StandardCharsets.UTF_8);
+        }
+        String path = getPath(webhookName);
         try {
-            curator.delete().forPath(path);
+            try {
+                curator.setData().forPath(path, data);
+            } catch (KeeperException.NoNodeException e) {
+                curator.create().creatingParentsIfNeeded().forPath(path, data);
+            }
+            return true;
         } catch (Exception e) {
-            logger.warn("unable to delete " + path, e);
+            logger.warn("unable to checkpoint " + path, e);
+            synchronized (this) {
+                dirty.add(webhookName);
+            }
+            return false;
         }
     }
 
-    Set<ContentPath> getSet(String webhookName, ContentPath type) {
+    private void checkpointAll() {
+        List<String> names;
+        synchronized (this) {
+            names = new ArrayList<>(dirty);
+        }
+        for (String name : names) {
+            checkpoint(name);
+        }
+    }
+
+    private Checkpoint readCheckpoint(String webhookName) {
         String path = getPath(webhookName);
-        Set<ContentPath> keys = new HashSet<>();
+        Checkpoint checkpoint = new Checkpoint();
         try {
-            List<String> strings = curator.getChildren().forPath(path);
-            for (String string : strings) {
-                keys.add(type.fromZk(string));
+            String data = new String(curator.getData().forPath(path), StandardCharsets.UTF_8);
+            String[] lines = StringUtils.split(data, "\n");
+            if (lines.length > 0 && StringUtils.isNumeric(lines[0])) {
+                checkpoint.time = Long.parseLong(lines[0]);
+                checkpoint.keys.addAll(Arrays.asList(lines).subList(1, lines.length));
             }
+            checkpoint.legacyKeys.addAll(curator.getChildren().forPath(path));
         } catch (KeeperException.NoNodeException e) {
-            logger.info("no node for {}", path);
+            logger.debug("no node for {}", path);
         } catch (Exception e) {
             logger.warn("unable to get set " + path, e);
         }
-        return keys;
+        return checkpoint;
     }
 
-    private String getPath(String webhookName) {
-        return "/GroupInFlight/" + webhookName;
+    private Set<ContentPath> toPaths(Set<String> keys, ContentPath type) {
+        Set<ContentPath> paths = new HashSet<>();
+        for (String key : keys) {
+            paths.add(type.fromZk(key));
+        }
+        return paths;
     }
 
-    private String getPath(String webhookName, ContentPath key) {
-        return getPath(webhookName) + "/" + key.toZk();
+    private boolean apply(String type, long time, String webhookName, String key) {
+        InFlight inFlight = webhooks.get(webhookName);
+        switch (type) {
+            case "A":
+                if (inFlight == null) {
+                    inFlight = new InFlight();
+                    webhooks.put(webhookName, inFlight);
+                }
+                if (!inFlight.keys.add(key)) {
+                    return false;
+                }
+                break;
+            case "R":
+                if (inFlight == null || !inFlight.keys.remove(key)) {
+                    return false;
+                }
+                break;
+            case "S":
+                inFlight = new InFlight();
+                webhooks.put(webhookName, inFlight);
+                break;
+            case "D":
+                return webhooks.remove(webhookName) != null;
+            default:
+                return false;
+        }
+        inFlight.modified = Math.max(inFlight.modified, time);
+        return true;
     }
 
-    public void delete(String webhookName) {
-        String path = getPath(webhookName);
+    private void append(String type, long time, String webhookName, String key) {
+        if (writer == null) {
+            logger.warn("in flight log {} is closed, not writing {} {}", logFile, webhookName, key);
+            return;
+        }
         try {
-            curator.delete().deletingChildrenIfNeeded().forPath(path);
+            writer.write(type + "\t" + time + "\t" + webhookName + "\t" + key + "\n");
+            unsynced = true;
+            if (++records > Math.max(10000, 4 * liveRecords())) {
+                compact();
+            }
+        } catch (IOException e) {
+            logger.warn("unable to write in flight log " + logFile, e);
+        }
+    }
+
+    private int liveRecords() {
+        int live = 0;
+        for (InFlight inFlight : webhooks.values()) {
+            live += inFlight.keys.size() + 1;
+        }
+        return live;
+    }
+
+    private synchronized void sync() {
+        if (!unsynced) {
+            return;
+        }
+        try {
+            writer.flush();
+            fileOutput.getFD().sync();
+            unsynced = false;
+        } catch (IOException e) {
+            logger.warn("unable to sync in flight log " + logFile, e);
+        }
+    }
+
+    private void replay() throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 4 || !StringUtils.isNumeric(parts[1])) {
+                    logger.info("skipping partial record in {}", logFile);
+                    continue;
+                }
+                apply(parts[0], Long.parseLong(parts[1]), parts[2], parts[3]);
+            }
+        }
+        logger.info("replayed {} with {} webhooks", logFile, webhooks.size());
+    }
+
+    /**
+     * Rewrites the log with one record per item in flight.
+     */
+    private synchronized void compact() throws IOException {
+        closeLog();
+        File temp = new File(directory, LOG_NAME + ".tmp");
+        records = 0;
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            Writer tempWriter = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            for (Map.Entry<String, InFlight> entry : webhooks.entrySet()) {
+                InFlight inFlight = entry.getValue();
+                tempWriter.write("S\t" + inFlight.modified + "\t" + entry.getKey() + "\t\n");
+                for (String key : inFlight.keys) {
+                    tempWriter.write("A\t" + inFlight.modified + "\t" + entry.getKey() + "\t" + key + "\n");
+                }
+                records += inFlight.keys.size() + 1;
+            }
+            tempWriter.flush();
+            output.getFD().sync();
+        }
+        Files.move(temp.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fileOutput = new FileOutputStream(logFile, true);
+        writer = new BufferedWriter(new OutputStreamWriter(fileOutput, StandardCharsets.UTF_8));
+    }
+
+    private void closeLog() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            fileOutput = null;
+        }
+    }
+
+    synchronized void close() {
+        executorService.shutdown();
+        sync();
+        try {
+            closeLog();
+        } catch (IOException e) {
+            logger.warn("unable to close " + logFile, e);
+        }
+    }
+
+    private void deleteNode(String path) {
+        try {
+            curator.delete().forPath(path);
         } catch (Exception e) {
-            logger.warn("unable to delete {} {}", path, e.getMessage());
+            logger.warn("unable to delete " + path, e);
+        }
+    }
+
+    private String getPath(String webhookName) {
+        return "/GroupInFlight/" + webhookName;
+    }
+
+    private class WebhookContentPathSetService extends AbstractIdleService {
+
+        @Override
+        protected void startUp() throws Exception {
+            //do nothing
+        }
+
+        @Override
+        protected void shutDown() throws Exception {
+            checkpointAll();
+            close();
         }
     }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.flightstats.hub.dao.ChannelService;
 import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentPath;
 import com.flightstats.hub.util.RequestUtils;
 import com.flightstats.hub.util.StringUtils;
 import com.flightstats.hub.util.TimeUtil;
@@ -123,25 +124,27 @@ class WebhookError {
         }
 
         String error = errors.get(errors.size() - 1);
-        byte[] bytes = buildPayload(attempt, error);
-        Content content = Content.builder()
-                .withContentType("application/json")
-                .withContentLength((long) bytes.length)
-                .withData(bytes)
-                .build();
-
-        try {
-            channelService.insert(getChannelName(attempt.getWebhook().getErrorChannelUrl()), content);
-        } catch (Exception e) {
-            logger.warn("unable to publish errors for " + attempt.getWebhook().getName(), e);
+        for (ContentPath failedItem : ContentKeyBatch.getPaths(attempt.getContentPath())) {
+            byte[] bytes = buildPayload(attempt, failedItem, error);
+            Content content = Content.builder()
+                    .withContentType("application/json")
+                    .withContentLength((long) bytes.length)
+                    .withData(bytes)
+                    .build();
+
+            try {
+                channelService.insert(getChannelName(attempt.getWebhook().getErrorChannelUrl()), content);
+            } catch (Exception e) {
+                logger.warn("unable to publish errors for " + attempt.getWebhook().getName(), e);
+            }
         }
     }
 
-    private byte[] buildPayload(DeliveryAttempt attempt, String error) {
+    private byte[] buildPayload(DeliveryAttempt attempt, ContentPath failedItem, String error) {
         ObjectMapper objectMapper = new ObjectMapper();
         ObjectNode root = objectMapper.createObjectNode();
         root.put("webhookUrl", buildWebhookUrl(attempt));
-        root.put("failedItemUrl", attempt.getWebhook().getChannelUrl() + "/" + attempt.getContentPath().toUrl());
+        root.put("failedItemUrl", attempt.getWebhook().getChannelUrl() + "/" + failedItem.toUrl());
         root.put("callbackUrl", attempt.getWebhook().getCallbackUrl());
         root.put("numberOfAttempts", attempt.getNumber() - 1);
         root.put("lastAttemptTime", extractTimestamp(error));
@@ -4,6 +4,7 @@ import com.flightstats.hub.cluster.*;
 import com.flightstats.hub.dao.ChannelService;
 import com.flightstats.hub.metrics.ActiveTraces;
 import com.flightstats.hub.metrics.MetricsService;
+import com.flightstats.hub.metrics.Traces;
 import com.flightstats.hub.model.ChannelConfig;
 import com.flightstats.hub.model.ContentPath;
 import com.flightstats.hub.util.RuntimeInterruptedException;
@@ -44,10 +45,11 @@ class WebhookLeader implements Lockable {
     private WebhookContentPathSet webhookInProcess;
     @Inject
     private WebhookError webhookError;
+    @Inject
+    private WebhookClient webhookClient;
 
     private Webhook webhook;
 
-    private ExecutorService executorService;
     private Semaphore semaphore;
     private Leadership leadership;
     private WebhookRetryer retryer;
@@ -89,10 +91,10 @@ class WebhookLeader implements Lockable {
             return;
         }
         logger.info("taking leadership {} {}", webhook, leadership.hasLeadership());
-        executorService = Executors.newCachedThreadPool();
         semaphore = new Semaphore(webhook.getParallelCalls());
         retryer = WebhookRetryer.builder()
                 .readTimeoutSeconds(webhook.getCallbackTimeoutSeconds())
+                .webhookClient(webhookClient)
                 .tryLaterIf(this::doesNotHaveLeadership)
                 .tryLaterIf(this::webhookIsPaused)
                 .giveUpIf(this::webhookTTLExceeded)
@@ -125,10 +127,12 @@ class WebhookLeader implements Lockable {
             if (deleteOnExit.get()) {
                 delete();
             }
-            stopExecutor();
+            stopDeliveries();
+            if (!deleteOnExit.get()) {
+                webhookInProcess.checkpoint(webhook.getName());
+            }
             logger.info("stopped last completed at {} {}", webhookStrategy.getLastCompleted(), webhook.getName());
             webhookStrategy = null;
-            executorService = null;
         }
     }
 
@@ -188,7 +192,7 @@ class WebhookLeader implements Lockable {
     }
 
     private void sendInProcess(ContentPath lastCompletedPath) throws InterruptedException {
-        Set<ContentPath> inProcessSet = webhookInProcess.getSet(webhook.getName(), lastCompletedPath);
+        Set<ContentPath> inProcessSet = webhookInProcess.takeOver(webhook.getName(), lastCompletedPath);
         logger.debug("sending in process {} to {}", inProcessSet, webhook.getName());
         for (ContentPath toSend : inProcessSet) {
             if (toSend.compareTo(lastCompletedPath) < 0) {
@@ -206,37 +210,64 @@ class WebhookLeader implements Lockable {
         }
     }
 
+    /**
+     * Waits for one of the webhook's parallelCalls, and hands the item to the shared WebhookClient.
+     * The payload is built, and the delivery completes, on the client's pool, so reading inlined items for
+     * parallelCalls deliveries happens at once, and this webhook holds no threads while items are in flight.
+     */
     private void send(ContentPath contentPath) throws InterruptedException {
         semaphore.acquire();
         logger.trace("sending {} to {}", contentPath, webhook.getName());
-        String parentName = Thread.currentThread().getName();
-        executorService.submit(() -> {
-            String workerName = Thread.currentThread().getName();
-            Thread.currentThread().setName(workerName + "|" + parentName);
-            ActiveTraces.start("WebhookLeader.send", webhook, contentPath);
-            webhookInProcess.add(webhook.getName(), contentPath);
+        ActiveTraces.start("WebhookLeader.send", webhook, contentPath);
+        Traces traces = ActiveTraces.getLocal();
+        CompletableFuture<Boolean> delivery;
+        long start = System.currentTimeMillis();
+        try {
+            for (ContentPath path : ContentKeyBatch.getPaths(contentPath)) {
+                webhookInProcess.add(webhook.getName(), path);
+            }
+            metricsService.time("webhook.delta", contentPath.getTime().getMillis(), "name:" + webhook.getName());
+            delivery = CompletableFuture.supplyAsync(() -> {
+                ActiveTraces.setLocal(traces);
+                try {
+                    return retryer.send(webhook, contentPath, webhookStrategy.createResponse(contentPath));
+                } finally {
+                    ActiveTraces.setLocal(null);
+                }
+            }, webhookClient::execute).thenCompose(sent -> sent);
+        } catch (Exception e) {
+            logger.warn("exception sending " + contentPath + " to " + webhook.getName(), e);
+            semaphore.release();
+            ActiveTraces.end();
+            return;
+        }
+        ActiveTraces.setLocal(null);
+        delivery.whenComplete((shouldGoToNextItem, throwable) -> {
+            ActiveTraces.setLocal(traces);
             try {
-                metricsService.time("webhook.delta", contentPath.getTime().getMillis(), "name:" + webhook.getName());
-                long start = System.currentTimeMillis();
-                boolean shouldGoToNextItem = retryer.send(webhook, contentPath, webhookStrategy.createResponse(contentPath));
+                if (throwable != null) {
+                    logger.warn("exception sending " + contentPath + " to " + webhook.getName(), throwable);
+                    return;
+                }
                 metricsService.time("webhook", start, "name:" + webhook.getName());
                 if (shouldGoToNextItem) {
-                    if (increaseLastUpdated(contentPath)) {
+                    ContentPath progress = ContentKeyBatch.getProgress(contentPath);
+                    if (increaseLastUpdated(progress)) {
                         if (!deleteOnExit.get()) {
-                            lastContentPath.updateIncrease(contentPath, webhook.getName(), WEBHOOK_LAST_COMPLETED);
+                            lastContentPath.updateIncrease(progress, webhook.getName(), WEBHOOK_LAST_COMPLETED);
                         }
                     }
                 }
-                webhookInProcess.remove(webhook.getName(), contentPath);
+                for (ContentPath path : ContentKeyBatch.getPaths(contentPath)) {
+                    webhookInProcess.remove(webhook.getName(), path);
+                }
                 logger.trace("done sending {} to {} ", contentPath, webhook.getName());
             } catch (Exception e) {
                 logger.warn("exception sending " + contentPath + " to " + webhook.getName(), e);
             } finally {
                 semaphore.release();
                 ActiveTraces.end();
-                Thread.currentThread().setName(workerName);
             }
-            return null;
         });
     }
 
@@ -261,24 +292,29 @@ class WebhookLeader implements Lockable {
             curatorLock.stopWorking();
         }
         closeStrategy();
-        stopExecutor();
+        stopDeliveries();
         if (null != curatorLock) {
             curatorLock.delete();
         }
         logger.info("exited webhook " + name);
     }
 
-    private void stopExecutor() {
-        if (executorService == null) {
+    private void stopDeliveries() {
+        if (semaphore == null) {
             return;
         }
         String name = webhook.getName();
-        logger.info("stopExecutor " + name);
+        logger.info("stopDeliveries " + name);
         try {
-            executorService.shutdown();
-            logger.info("awating termination " + name);
-            executorService.awaitTermination(webhook.getCallbackTimeoutSeconds() + 10, TimeUnit.SECONDS);
-            logger.info("stopped Executor " + name);
+            retryer.stop();
+            int parallelCalls = webhook.getParallelCalls();
+            logger.info("awaiting deliveries " + name);
+            if (semaphore.tryAcquire(parallelCalls, webhook.getCallbackTimeoutSeconds() + 10, TimeUnit.SECONDS)) {
+                semaphore.release(parallelCalls);
+                logger.info("stopped deliveries " + name);
+            } else {
+                logger.warn("deliveries still in flight " + name);
+            }
         } catch (InterruptedException e) {
             logger.warn("unable to stop?" + name, e);
         }
@@ -0,0 +1,146 @@
+package com.flightstats.hub.webhook;
+
+import com.flightstats.hub.app.HubHost;
+import com.flightstats.hub.app.HubProperties;
+import com.flightstats.hub.cluster.Cluster;
+import com.flightstats.hub.cluster.CuratorCluster;
+import com.flightstats.hub.dao.Dao;
+import com.flightstats.hub.rest.RestClient;
+import com.flightstats.hub.util.HubUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * WebhookNotifier wakes the webhook strategies of a channel when the channel has new items,
+ * so idle webhooks do not need to poll for them.
+ * <p>
+ * Each server collects the channels with webhooks it has written to, and every webhook.notify.millis
+ * sends them to every hub server with a POST to /internal/webhook/notify.  The receiving server wakes
+ * the strategies for those channels once the new items are stable.  Notifications are best effort,
+ * and are dropped when a server can not keep up, so the strategies still poll every webhook.pollSeconds.
+ */
+@Singleton
+public class WebhookNotifier {
+
+    private final static Logger logger = LoggerFactory.getLogger(WebhookNotifier.class);
+    private static final long STABLE_MILLIS = TimeUnit.SECONDS.toMillis(HubProperties.getProperty("app.stable_seconds", 5));
+
+    private final Map<String, Set<Runnable>> listeners = new ConcurrentHashMap<>();
+    private final Map<String, Long> scheduledWakes = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Client client = RestClient.createClient(1, 2, true, false);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("WebhookNotifier").setDaemon(true).build());
+    private final int senderThreads = HubProperties.getProperty("webhook.notify.threads", 4);
+    private final ExecutorService senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1000), new ThreadFactoryBuilder().setNameFormat("WebhookNotifier-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.DiscardPolicy());
+    private final Dao<Webhook> webhookDao;
+    private final CuratorCluster hubCluster;
+    private volatile Set<String> webhookChannels = Collections.emptySet();
+
+    @Inject
+    public WebhookNotifier(@Named("Webhook") Dao<Webhook> webhookDao, @Named("HubCuratorCluster") CuratorCluster hubCluster) {
+        this.webhookDao = webhookDao;
+        this.hubCluster = hubCluster;
+        long notifyMillis = HubProperties.getProperty("webhook.notify.millis", 100);
+        scheduler.scheduleWithFixedDelay(this::send, notifyMillis, notifyMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::refreshChannels, 0, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Called after items are written to the channel.
+     */
+    public void notify(String channel) {
+        if (webhookChannels.contains(channel.toLowerCase())) {
+            pending.add(channel);
+        }
+    }
+
+    /**
+     * Called with the channels which another server, or this one, has written to.
+     */
+    void wake(Collection<String> channels) {
+        long now = System.currentTimeMillis();
+        long wakeTime = now - now % 1000 + STABLE_MILLIS + 1050;
+        for (String channel : channels) {
+            String key = channel.toLowerCase();
+            Long scheduled = scheduledWakes.get(key);
+            if (scheduled != null && scheduled >= wakeTime) {
+                continue;
+            }
+            scheduledWakes.put(key, wakeTime);
+            scheduler.schedule(() -> {
+                scheduledWakes.remove(key, wakeTime);
+                for (Runnable listener : listeners.getOrDefault(key, Collections.emptySet())) {
+                    listener.run();
+                }
+            }, wakeTime - now, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void register(String channel, Runnable listener) {
+        listeners.computeIfAbsent(channel.toLowerCase(), name -> ConcurrentHashMap.newKeySet()).add(listener);
+    }
+
+    void unregister(String channel, Runnable listener) {
+        Set<Runnable> channelListeners = listeners.get(channel.toLowerCase());
+        if (channelListeners != null) {
+            channelListeners.remove(listener);
+        }
+    }
+
+    private void refreshChannels() {
+        try {
+            Set<String> channels = new HashSet<>();
+            for (Webhook webhook : webhookDao.getAll(true)) {
+                if (StringUtils.isBlank(webhook.getTagUrl())) {
+                    channels.add(webhook.getChannelName().toLowerCase());
+                }
+            }
+            webhookChannels = channels;
+        } catch (Exception e) {
+            logger.warn("unable to refresh webhook channels", e);
+        }
+    }
+
+    private void send() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> channels = new ArrayList<>(pending);
+        pending.removeAll(channels);
+        wake(channels);
+        String body = StringUtils.join(channels, "\n");
+        Set<String> servers = new HashSet<>(hubCluster.getAllServers());
+        servers.remove(Cluster.getHost(true));
+        servers.remove(Cluster.getHost(false));
+        for (String server : servers) {
+            senders.submit(() -> post(HubHost.getScheme() + server + "/internal/webhook/notify", body));
+        }
+    }
+
+    private void post(String url, String body) {
+        ClientResponse response = null;
+        try {
+            response = client.resource(url).post(ClientResponse.class, body);
+            if (response.getStatus() != 200) {
+                logger.debug("unexpected response {} {}", url, response.getStatus());
+            }
+        } catch (Exception e) {
+            logger.debug("unable to notify {} {}", url, e.getMessage());
+        } finally {
+            HubUtils.close(response);
+        }
+    }
+}
@@ -111,6 +111,8 @@ public class WebhookResource {
             root.put("callbackTimeoutSeconds", webhook.getCallbackTimeoutSeconds());
             root.put("maxAttempts", webhook.getMaxAttempts());
             root.put("errorChannelUrl", webhook.getErrorChannelUrl());
+            root.put("maxItems", webhook.getMaxItems());
+            root.put("maxInlineBytes", webhook.getMaxInlineBytes());
             if (webhook.isTagPrototype()) {
                 root.put("tagUrl", webhook.getTagUrl());
                 root.put("isTagPrototype", webhook.isTagPrototype());
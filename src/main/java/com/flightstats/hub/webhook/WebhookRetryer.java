@@ -8,12 +8,7 @@ import com.flightstats.hub.metrics.DataDog;
 import com.flightstats.hub.metrics.Traces;
 import com.flightstats.hub.model.ContentPath;
 import com.flightstats.hub.model.RecurringTrace;
-import com.flightstats.hub.rest.RestClient;
-import com.flightstats.hub.util.HubUtils;
 import com.google.common.annotations.VisibleForTesting;
-import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientHandlerException;
-import com.sun.jersey.api.client.ClientResponse;
 import com.timgroup.statsd.StatsDClient;
 import lombok.Builder;
 import lombok.Singular;
@@ -21,16 +16,21 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 
 /**
  *  This class is responsible for trying to deliver a payload
  *  until a set of configurable criteria is met.
+ *  Attempts are sent through the shared WebhookClient, and retries wait on its timer, so a retrying
+ *  delivery does not hold a thread.
  */
 class WebhookRetryer {
 
@@ -41,14 +41,19 @@ class WebhookRetryer {
     private List<Predicate<DeliveryAttempt>> tryLaterIfs = new ArrayList<>();
 
     private WebhookError webhookError;
-    private Client httpClient;
+    private WebhookClient webhookClient;
+    private int connectTimeoutSeconds;
+    private int readTimeoutSeconds;
+    private final Set<Runnable> waiting = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopped;
 
     @Builder
     WebhookRetryer(@Singular List<Predicate<DeliveryAttempt>> giveUpIfs,
                    @Singular List<Predicate<DeliveryAttempt>> tryLaterIfs,
                    Integer connectTimeoutSeconds,
-                   Integer readTimeoutSeconds) {
-        this(giveUpIfs, tryLaterIfs, connectTimeoutSeconds, readTimeoutSeconds, HubProvider.getInstance(WebhookError.class));
+                   Integer readTimeoutSeconds,
+                   WebhookClient webhookClient) {
+        this(giveUpIfs, tryLaterIfs, connectTimeoutSeconds, readTimeoutSeconds, HubProvider.getInstance(WebhookError.class), webhookClient);
     }
 
     @VisibleForTesting
@@ -57,90 +62,133 @@ class WebhookRetryer {
                    Integer connectTimeoutSeconds,
                    Integer readTimeoutSeconds,
                    WebhookError webhookError) {
+        this(giveUpIfs, tryLaterIfs, connectTimeoutSeconds, readTimeoutSeconds, webhookError, null);
+    }
+
+    @VisibleForTesting
+    WebhookRetryer(List<Predicate<DeliveryAttempt>> giveUpIfs,
+                   List<Predicate<DeliveryAttempt>> tryLaterIfs,
+                   Integer connectTimeoutSeconds,
+                   Integer readTimeoutSeconds,
+                   WebhookError webhookError,
+                   WebhookClient webhookClient) {
         this.giveUpIfs = giveUpIfs;
         this.tryLaterIfs = tryLaterIfs;
         this.webhookError = webhookError;
+        this.webhookClient = webhookClient;
         if (connectTimeoutSeconds == null) connectTimeoutSeconds = HubProperties.getProperty("webhook.connectTimeoutSeconds", 60);
         if (readTimeoutSeconds == null) readTimeoutSeconds = HubProperties.getProperty("webhook.readTimeoutSeconds", 60);
-        this.httpClient = RestClient.createClient(connectTimeoutSeconds, readTimeoutSeconds, true, false);
+        this.connectTimeoutSeconds = connectTimeoutSeconds;
+        this.readTimeoutSeconds = readTimeoutSeconds;
     }
 
-    boolean send(Webhook webhook, ContentPath contentPath, ObjectNode body) {
+    /**
+     * Completes with true when the webhook is done with the item, either delivered or given up on,
+     * and false when the item should be tried later.
+     */
+    CompletableFuture<Boolean> send(Webhook webhook, ContentPath contentPath, ObjectNode body) {
         Traces traces = ActiveTraces.getLocal();
         traces.add("WebhookRetryer.send start");
         RecurringTrace recurringTrace = new RecurringTrace("WebhookRetryer.send start");
         traces.add(recurringTrace);
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        attempt(1, webhook, contentPath, body.toString(), recurringTrace, future);
+        return future.whenComplete((isDoneWithItem, e) -> recurringTrace.update("WebhookRetryer.send completed"));
+    }
 
-        int attemptNumber = 0;
-        boolean isDoneWithItem = false;
-        boolean isRetrying = true;
-        while (isRetrying) {
-
-            DeliveryAttempt attempt = DeliveryAttempt.builder()
-                    .number(++attemptNumber)
-                    .webhook(webhook)
-                    .contentPath(contentPath)
-                    .payload(body.toString())
-                    .build();
-
-            boolean shouldGiveUp = shouldGiveUp(attempt);
-            boolean shouldTryLater = shouldTryLater(attempt);
-
-            if (shouldGiveUp || shouldTryLater) {
-                logger.debug("{} {} stopping delivery before attempt #{}", attempt.getWebhook().getName(), attempt.getContentPath().toUrl(), attempt.getNumber());
-                isRetrying = false;
-                if (shouldGiveUp) {
-                    isDoneWithItem = true;
-                    webhookError.publishToErrorChannel(attempt);
-                }
-
-                continue;
-            }
+    /**
+     * Completes the future exceptionally if the attempt throws, since retries run as bare tasks on the
+     * WebhookClient's pool, where the exception would otherwise be lost and the delivery never completed.
+     */
+    private void attempt(int attemptNumber, Webhook webhook, ContentPath contentPath, String payload,
+                         RecurringTrace recurringTrace, CompletableFuture<Boolean> future) {
+        try {
+            tryAttempt(attemptNumber, webhook, contentPath, payload, recurringTrace, future);
+        } catch (Exception e) {
+            logger.warn("unable to attempt delivery of " + contentPath + " to " + webhook.getName(), e);
+            future.completeExceptionally(e);
+        }
+    }
 
-            String payload = body.toString();
-            logger.debug("{} {} delivery attempt #{} {} {}", attempt.getWebhook().getName(), attempt.getContentPath().toUrl(), attempt.getNumber(), webhook.getCallbackUrl(), payload);
-            ClientResponse response = null;
-            try {
-                response = httpClient.resource(attempt.getWebhook().getCallbackUrl())
-                        .type(MediaType.APPLICATION_JSON_TYPE)
-                        .post(ClientResponse.class, payload);
-                attempt.setStatusCode(response.getStatus());
-            } catch (ClientHandlerException e) {
-                attempt.setException(e);
-            } finally {
-                HubUtils.close(response);
+    private void tryAttempt(int attemptNumber, Webhook webhook, ContentPath contentPath, String payload,
+                            RecurringTrace recurringTrace, CompletableFuture<Boolean> future) {
+        DeliveryAttempt attempt = DeliveryAttempt.builder()
+                .number(attemptNumber)
+                .webhook(webhook)
+                .contentPath(contentPath)
+                .payload(payload)
+                .build();
+
+        boolean shouldGiveUp = shouldGiveUp(attempt);
+        boolean shouldTryLater = stopped || shouldTryLater(attempt);
+
+        if (shouldGiveUp || shouldTryLater) {
+            logger.debug("{} {} stopping delivery before attempt #{}", attempt.getWebhook().getName(), attempt.getContentPath().toUrl(), attempt.getNumber());
+            if (shouldGiveUp) {
+                webhookError.publishToErrorChannel(attempt);
             }
+            future.complete(shouldGiveUp);
+            return;
+        }
 
-            String requestResult = determineResult(attempt);
-            logger.debug("{} {} to {} response {}", attempt.getWebhook().getName(), attempt.getContentPath().toUrl(), attempt.getWebhook().getCallbackUrl(), requestResult);
-            recurringTrace.update("WebhookLeader.send", "attempt " + attempt.getNumber(), ": " + requestResult);
-
-            if (attempt.getStatusCode() != null && attempt.getStatusCode() < 400) {
-                isRetrying = false;
-                isDoneWithItem = true;
-                continue;
-            } else {
-                webhookError.add(attempt.getWebhook().getName(), new DateTime() + " " + attempt.getContentPath() + " " + requestResult);
-                statsd.incrementCounter("webhook.errors", "name:" + attempt.getWebhook().getName(), "status:" + attempt.getStatusCode());
-            }
+        logger.debug("{} {} delivery attempt #{} {} {}", attempt.getWebhook().getName(), attempt.getContentPath().toUrl(), attempt.getNumber(), webhook.getCallbackUrl(), payload);
+        webhookClient.post(webhook.getCallbackUrl(), payload, connectTimeoutSeconds, readTimeoutSeconds)
+                .whenComplete((statusCode, throwable) -> {
+                    try {
+                        if (throwable == null) {
+                            attempt.setStatusCode(statusCode);
+                        } else {
+                            attempt.setException(throwable instanceof Exception ? (Exception) throwable : new RuntimeException(throwable));
+                        }
+                        String requestResult = determineResult(attempt);
+                        logger.debug("{} {} to {} response {}", attempt.getWebhook().getName(), attempt.getContentPath().toUrl(), attempt.getWebhook().getCallbackUrl(), requestResult);
+                        recurringTrace.update("WebhookLeader.send", "attempt " + attempt.getNumber(), ": " + requestResult);
+
+                        if (attempt.getStatusCode() != null && attempt.getStatusCode() < 400) {
+                            future.complete(true);
+                            return;
+                        }
+                        webhookError.add(attempt.getWebhook().getName(), new DateTime() + " " + attempt.getContentPath() + " " + requestResult);
+                        statsd.incrementCounter("webhook.errors", "name:" + attempt.getWebhook().getName(), "status:" + attempt.getStatusCode());
+
+                        long exponentialMultiplier = 1000;
+                        long maximumSleepTimeMS = TimeUnit.MINUTES.toMillis(attempt.getWebhook().getMaxWaitMinutes());
+                        long sleepTimeMS = calculateSleepTimeMS(attempt, exponentialMultiplier, maximumSleepTimeMS);
+                        logger.debug("{} {} waiting {} seconds until retrying", attempt.getWebhook().getName(), attempt.getContentPath().toUrl(), TimeUnit.MILLISECONDS.toSeconds(sleepTimeMS));
+                        retryLater(() -> attempt(attemptNumber + 1, webhook, contentPath, payload, recurringTrace, future), sleepTimeMS);
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                });
+    }
 
-            try {
-                long exponentialMultiplier = 1000;
-                long maximumSleepTimeMS = TimeUnit.MINUTES.toMillis(attempt.getWebhook().getMaxWaitMinutes());
-                long sleepTimeMS = calculateSleepTimeMS(attempt, exponentialMultiplier, maximumSleepTimeMS);
-                logger.debug("{} {} waiting {} seconds until retrying", attempt.getWebhook().getName(), attempt.getContentPath().toUrl(), TimeUnit.MILLISECONDS.toSeconds(sleepTimeMS));
-                Thread.sleep(sleepTimeMS);
-            } catch (InterruptedException e) {
-                String message = String.format("%s %s to %s interrupted", attempt.getWebhook().getName(), attempt.getContentPath().toUrl(), attempt.getWebhook().getCallbackUrl());
-                logger.debug(message, e);
-                statsd.incrementCounter("webhook.errors", "name:" + webhook.getName(), "status:500");
-                Thread.currentThread().interrupt();
-                isRetrying = false;
+    private void retryLater(Runnable retry, long delayMillis) {
+        AtomicBoolean started = new AtomicBoolean();
+        Runnable once = new Runnable() {
+            @Override
+            public void run() {
+                if (started.compareAndSet(false, true)) {
+                    waiting.remove(this);
+                    retry.run();
+                }
             }
+        };
+        waiting.add(once);
+        if (stopped) {
+            once.run();
+        } else {
+            webhookClient.schedule(once, delayMillis);
         }
+    }
 
-        recurringTrace.update("WebhookRetryer.send completed");
-        return isDoneWithItem;
+    /**
+     * Deliveries waiting to retry are completed as try later instead of waiting for their timers.
+     */
+    void stop() {
+        stopped = true;
+        for (Runnable retry : waiting) {
+            webhookClient.execute(retry);
+        }
     }
 
     @VisibleForTesting
@@ -11,6 +11,9 @@ import java.net.URISyntaxException;
 
 public class WebhookValidator {
 
+    private static final int MAX_ITEMS = HubProperties.getProperty("webhook.maxItems.limit", 1000);
+    private static final int MAX_INLINE_BYTES = HubProperties.getProperty("webhook.maxInlineBytes.limit", 1024 * 1024);
+
     void validate(Webhook webhook) {
         String name = webhook.getName();
         if (StringUtils.isEmpty(name)) {
@@ -51,6 +54,18 @@ public class WebhookValidator {
         if (webhook.isHeartbeat() && Webhook.SINGLE.equals(webhook.getBatch())) {
             throw new InvalidRequestException("{\"error\": \"SINGLE webhooks can not have a heartbeat'\"}");
         }
+        if (webhook.getMaxItems() < 1 || webhook.getMaxItems() > MAX_ITEMS) {
+            throw new InvalidRequestException("{\"error\": \"maxItems must be between 1 and " + MAX_ITEMS + "\"}");
+        }
+        if (webhook.getMaxItems() > 1 && !Webhook.SINGLE.equals(webhook.getBatch())) {
+            throw new InvalidRequestException("{\"error\": \"maxItems only applies to SINGLE webhooks\"}");
+        }
+        if (webhook.getMaxInlineBytes() < 0 || webhook.getMaxInlineBytes() > MAX_INLINE_BYTES) {
+            throw new InvalidRequestException("{\"error\": \"maxInlineBytes must be between 0 and " + MAX_INLINE_BYTES + "\"}");
+        }
+        if (webhook.getMaxInlineBytes() > 0 && !Webhook.SINGLE.equals(webhook.getBatch())) {
+            throw new InvalidRequestException("{\"error\": \"maxInlineBytes only applies to SINGLE webhooks\"}");
+        }
         isValidCallbackTimeoutSeconds(webhook.getCallbackTimeoutSeconds());
         if (HubProperties.getProperty("hub.type", "aws").equals("aws")) {
             if (webhook.getCallbackUrl().toLowerCase().contains("localhost")) {
@@ -0,0 +1,98 @@
+package com.flightstats.hub.cluster;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RendezvousPlacementTest {
+
+    private static final long HISTORY = 60 * 60 * 1000;
+    private static final long START = 1000;
+    private static final long LATER = START + HISTORY + 1;
+
+    @Test
+    public void testBoundedReplicas() {
+        RendezvousPlacement placement = new RendezvousPlacement(3, HISTORY, START);
+        Set<String> servers = servers(10);
+        List<String> writeServers = placement.getWriteServers("channel", servers, LATER);
+        assertEquals(3, writeServers.size());
+        assertEquals(new HashSet<>(writeServers), placement.getReadServers("channel", servers, servers, LATER));
+        assertEquals(writeServers, new RendezvousPlacement(3, HISTORY, START).getWriteServers("channel", servers(10), LATER));
+    }
+
+    @Test
+    public void testSpread() {
+        RendezvousPlacement placement = new RendezvousPlacement(3, HISTORY, START);
+        Set<String> servers = servers(10);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            for (String server : placement.getWriteServers("channel" + i, servers, LATER)) {
+                counts.merge(server, 1, Integer::sum);
+            }
+        }
+        assertEquals(10, counts.size());
+        for (Integer count : counts.values()) {
+            assertTrue("count " + count, count > 200 && count < 400);
+        }
+    }
+
+    @Test
+    public void testSmallCluster() {
+        RendezvousPlacement placement = new RendezvousPlacement(3, HISTORY, START);
+        Set<String> servers = servers(2);
+        assertEquals(2, placement.getWriteServers("channel", servers, LATER).size());
+    }
+
+    @Test
+    public void testAllServersAfterStart() {
+        RendezvousPlacement placement = new RendezvousPlacement(3, HISTORY, START);
+        Set<String> servers = servers(10);
+        assertEquals(servers, placement.getReadServers("channel", servers, servers, START + 1));
+    }
+
+    @Test
+    public void testMembershipChange() {
+        Set<String> servers = servers(5);
+        Set<String> added = servers(6);
+        RendezvousPlacement finder = new RendezvousPlacement(1, HISTORY, START);
+        String channel = null;
+        for (int i = 0; i < 100 && channel == null; i++) {
+            if (finder.getWriteServers("channel" + i, added, LATER).get(0).equals("server5")) {
+                channel = "channel" + i;
+            }
+        }
+        assertNotNull(channel);
+
+        RendezvousPlacement placement = new RendezvousPlacement(1, HISTORY, START);
+        String original = placement.getWriteServers(channel, servers, LATER).get(0);
+        long changed = LATER + 1000;
+        assertEquals("server5", placement.getWriteServers(channel, added, changed).get(0));
+        Set<String> readServers = placement.getReadServers(channel, added, added, changed + 1000);
+        assertEquals(new HashSet<>(Arrays.asList(original, "server5")), readServers);
+
+        Set<String> expired = placement.getReadServers(channel, added, added, changed + HISTORY + 1);
+        assertEquals(Collections.singleton("server5"), expired);
+    }
+
+    @Test
+    public void testDepartedServersExcluded() {
+        RendezvousPlacement placement = new RendezvousPlacement(3, HISTORY, START);
+        Set<String> servers = servers(5);
+        List<String> writeServers = placement.getWriteServers("channel", servers, LATER);
+        Set<String> remaining = new HashSet<>(servers);
+        remaining.remove(writeServers.get(0));
+        Set<String> readServers = placement.getReadServers("channel", remaining, remaining, LATER + 1000);
+        assertFalse(readServers.contains(writeServers.get(0)));
+        assertTrue(readServers.containsAll(writeServers.subList(1, 3)));
+    }
+
+    private Set<String> servers(int count) {
+        Set<String> servers = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            servers.add("server" + i);
+        }
+        return servers;
+    }
+}
@@ -0,0 +1,69 @@
+package com.flightstats.hub.dao;
+
+import com.google.common.io.Files;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TtlDeleterTest {
+    private File channelDir;
+
+    @Before
+    public void setUp() throws Exception {
+        channelDir = new File(Files.createTempDir(), "channel");
+    }
+
+    @Test
+    public void testDeleteBefore() throws Exception {
+        write("2014/12/31/23/59/01/002A");
+        write("2015/01/01/00/28/30/031C");
+        write("2015/01/01/00/29/00/000A");
+        write("2015/01/01/00/30/31/031B");
+        write("2015/01/01/01/00/00/000A");
+        TtlDeleter deleter = new TtlDeleter(1000);
+        deleter.deleteBefore(channelDir, new DateTime(2015, 1, 1, 0, 30, DateTimeZone.UTC));
+        assertEquals(3, deleter.getFiles());
+        assertEquals(9, deleter.getBytes());
+        assertFalse(new File(channelDir, "2014").exists());
+        assertFalse(new File(channelDir, "2015/01/01/00/28").exists());
+        assertFalse(new File(channelDir, "2015/01/01/00/29").exists());
+        assertTrue(new File(channelDir, "2015/01/01/00/30/31/031B").exists());
+        assertTrue(new File(channelDir, "2015/01/01/01/00/00/000A").exists());
+    }
+
+    @Test
+    public void testDeleteModifiedBefore() throws Exception {
+        File old = write("2015/01/01/00/28/30/031C");
+        File recent = write("2015/01/01/00/29/30/031C");
+        long cutoff = System.currentTimeMillis() - 60 * 1000;
+        assertTrue(old.setLastModified(cutoff - 1000));
+        TtlDeleter deleter = new TtlDeleter(1000);
+        deleter.deleteModifiedBefore(channelDir, cutoff);
+        assertEquals(1, deleter.getFiles());
+        assertFalse(old.exists());
+        assertTrue(recent.exists());
+    }
+
+    @Test
+    public void testDeleteAll() throws Exception {
+        write("2015/01/01/00/28/30/031C");
+        write("2015/01/01/00/29/30/031C");
+        TtlDeleter deleter = new TtlDeleter(1000);
+        deleter.deleteAll(channelDir);
+        assertEquals(2, deleter.getFiles());
+        assertFalse(channelDir.exists());
+    }
+
+    private File write(String path) throws IOException {
+        File file = new File(channelDir, path);
+        Files.createParentDirs(file);
+        Files.write("abc".getBytes(), file);
+        return file;
+    }
+}
@@ -0,0 +1,121 @@
+package com.flightstats.hub.dao.aws;
+
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.google.common.io.ByteStreams;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class MultipartDownloadStreamTest {
+
+    private static final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @AfterClass
+    public static void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testParts() throws IOException {
+        FakeS3Client s3Client = new FakeS3Client(createParts(100, 300, 50, 700, 10));
+        assertArrayEquals(s3Client.getBytes(), read(s3Client, 2));
+        assertEquals(5, s3Client.requested.size());
+        assertEquals(new TreeSet<>(Arrays.asList(1, 2, 3, 4, 5)), new TreeSet<>(s3Client.requested));
+    }
+
+    @Test
+    public void testSinglePart() throws IOException {
+        FakeS3Client s3Client = new FakeS3Client(createParts(500));
+        assertArrayEquals(s3Client.getBytes(), read(s3Client, 3));
+        assertEquals(Collections.singletonList(1), s3Client.requested);
+    }
+
+    @Test
+    public void testSmallReads() throws IOException {
+        FakeS3Client s3Client = new FakeS3Client(createParts(3, 5, 7));
+        try (InputStream stream = createStream(s3Client, 1)) {
+            for (byte expected : s3Client.getBytes()) {
+                assertEquals(expected & 0xff, stream.read());
+            }
+            assertEquals(-1, stream.read());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testFailedPart() throws IOException {
+        FakeS3Client s3Client = new FakeS3Client(createParts(100, 100, 100));
+        s3Client.failPart = 3;
+        read(s3Client, 2);
+    }
+
+    private byte[] read(FakeS3Client s3Client, int readAhead) throws IOException {
+        try (InputStream stream = createStream(s3Client, readAhead)) {
+            return ByteStreams.toByteArray(stream);
+        }
+    }
+
+    private MultipartDownloadStream createStream(FakeS3Client s3Client, int readAhead) {
+        GetObjectRequest request = MultipartDownloadStream.firstPart("bucket", "key");
+        S3Object first = s3Client.getObject(request);
+        return new MultipartDownloadStream(s3Client, request, first, readAhead, executorService);
+    }
+
+    private List<byte[]> createParts(int... sizes) {
+        List<byte[]> parts = new ArrayList<>();
+        Random random = new Random(sizes.length);
+        for (int size : sizes) {
+            byte[] part = new byte[size];
+            random.nextBytes(part);
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    private static class FakeS3Client extends HubS3Client {
+        private final List<byte[]> parts;
+        private final List<Integer> requested = Collections.synchronizedList(new ArrayList<>());
+        private int failPart;
+
+        FakeS3Client(List<byte[]> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        S3Object getObject(GetObjectRequest request) {
+            int partNumber = request.getPartNumber();
+            requested.add(partNumber);
+            if (partNumber == failPart) {
+                throw new IllegalStateException("part " + partNumber);
+            }
+            byte[] part = parts.get(partNumber - 1);
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(part.length);
+            if (parts.size() > 1) {
+                metadata.setHeader("x-amz-mp-parts-count", parts.size());
+            }
+            S3Object object = new S3Object();
+            object.setObjectMetadata(metadata);
+            object.setObjectContent(new ByteArrayInputStream(part));
+            return object;
+        }
+
+        byte[] getBytes() throws IOException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            for (byte[] part : parts) {
+                output.write(part);
+            }
+            return output.toByteArray();
+        }
+    }
+}
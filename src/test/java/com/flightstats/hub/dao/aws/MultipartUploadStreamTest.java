@@ -0,0 +1,127 @@
+package com.flightstats.hub.dao.aws;
+
+import com.amazonaws.services.s3.model.*;
+import com.google.common.io.ByteStreams;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class MultipartUploadStreamTest {
+
+    private static final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    @AfterClass
+    public static void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testSinglePut() throws IOException {
+        FakeS3Client s3Client = new FakeS3Client();
+        byte[] bytes = createBytes(1000);
+        try (MultipartUploadStream stream = createStream(s3Client, 1024)) {
+            stream.write(bytes);
+        }
+        assertArrayEquals(bytes, s3Client.put);
+        assertEquals(0, s3Client.parts.size());
+        assertFalse(s3Client.completed);
+    }
+
+    @Test
+    public void testMultipart() throws IOException {
+        FakeS3Client s3Client = new FakeS3Client();
+        byte[] bytes = createBytes(5000);
+        try (MultipartUploadStream stream = createStream(s3Client, 1024)) {
+            stream.write(bytes, 0, 100);
+            for (int i = 100; i < 200; i++) {
+                stream.write(bytes[i]);
+            }
+            stream.write(bytes, 200, bytes.length - 200);
+        }
+        assertNull(s3Client.put);
+        assertTrue(s3Client.completed);
+        assertEquals(5, s3Client.parts.size());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (byte[] part : s3Client.parts.values()) {
+            output.write(part);
+        }
+        assertArrayEquals(bytes, output.toByteArray());
+    }
+
+    @Test
+    public void testAbort() throws IOException {
+        FakeS3Client s3Client = new FakeS3Client();
+        MultipartUploadStream stream = createStream(s3Client, 1024);
+        stream.write(createBytes(3000));
+        stream.abort();
+        assertTrue(s3Client.aborted);
+        assertFalse(s3Client.completed);
+    }
+
+    private MultipartUploadStream createStream(FakeS3Client s3Client, int partSize) {
+        return new MultipartUploadStream(s3Client, "bucket", "key", new ObjectMetadata(), partSize, executorService);
+    }
+
+    private byte[] createBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static class FakeS3Client extends HubS3Client {
+        private final SortedMap<Integer, byte[]> parts = Collections.synchronizedSortedMap(new TreeMap<>());
+        private byte[] put;
+        private boolean completed;
+        private boolean aborted;
+
+        @Override
+        PutObjectResult putObject(PutObjectRequest request) {
+            put = read(request.getInputStream());
+            return new PutObjectResult();
+        }
+
+        @Override
+        InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+            InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+            result.setUploadId("upload");
+            return result;
+        }
+
+        @Override
+        UploadPartResult uploadPart(UploadPartRequest request) {
+            parts.put(request.getPartNumber(), read(request.getInputStream()));
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag" + request.getPartNumber());
+            return result;
+        }
+
+        @Override
+        CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            assertEquals(parts.size(), request.getPartETags().size());
+            completed = true;
+            return new CompleteMultipartUploadResult();
+        }
+
+        @Override
+        void abortMultipartUpload(AbortMultipartUploadRequest request) {
+            aborted = true;
+        }
+
+        private byte[] read(InputStream stream) {
+            try {
+                return ByteStreams.toByteArray(stream);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
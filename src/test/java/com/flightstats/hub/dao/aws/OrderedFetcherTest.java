@@ -0,0 +1,86 @@
+package com.flightstats.hub.dao.aws;
+
+import com.flightstats.hub.util.Sleeper;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrderedFetcherTest {
+
+    private static final ExecutorService executorService = Executors.newFixedThreadPool(10);
+
+    @AfterClass
+    public static void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testOrder() {
+        List<Integer> items = createItems(50);
+        List<Integer> results = new ArrayList<>();
+        new OrderedFetcher(5, executorService).fetch(items, item -> {
+            Sleeper.sleep((item * 7) % 11);
+            return item * 2;
+        }, (item, result) -> {
+            assertEquals(item * 2, (int) result);
+            return results.add(item);
+        });
+        assertEquals(items, results);
+    }
+
+    @Test
+    public void testParallelism() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        new OrderedFetcher(3, executorService).fetch(createItems(30), item -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Sleeper.sleep(5);
+            inFlight.decrementAndGet();
+            return item;
+        }, (item, result) -> true);
+        assertTrue(maxInFlight.get() <= 3);
+        assertTrue(maxInFlight.get() > 1);
+    }
+
+    @Test
+    public void testCancel() {
+        AtomicInteger fetched = new AtomicInteger();
+        List<Integer> results = new ArrayList<>();
+        new OrderedFetcher(4, executorService).fetch(createItems(100), item -> {
+            fetched.incrementAndGet();
+            return item;
+        }, (item, result) -> {
+            results.add(result);
+            return results.size() < 10;
+        });
+        assertEquals(10, results.size());
+        Sleeper.sleep(50);
+        assertTrue(fetched.get() <= 14);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testException() {
+        new OrderedFetcher(4, executorService).fetch(createItems(10), item -> {
+            if (item == 5) {
+                throw new IllegalStateException("item " + item);
+            }
+            return item;
+        }, (item, result) -> true);
+    }
+
+    private List<Integer> createItems(int count) {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+}
@@ -120,6 +120,19 @@ public class S3BatchContentDaoTest {
         query(channel, start.plusMinutes(66), 2, TimeUtil.Unit.HOURS);
     }
 
+    @Test
+    public void testMinuteAfterRollup() throws IOException {
+        String channel = "testMinuteAfterRollup" + StringUtils.randomAlphaNumeric(20);
+        DateTime hour = TimeUtil.Unit.HOURS.round(TimeUtil.now().minusHours(2));
+        writeBatchMinute(channel, new MinutePath(hour.plusMinutes(10)), 2);
+        contentDao.writeRollup(channel, hour, TimeUtil.Unit.HOURS);
+        query(channel, hour, 2, TimeUtil.Unit.HOURS);
+
+        writeBatchMinute(channel, new MinutePath(hour.plusMinutes(20)), 3);
+        query(channel, hour, 5, TimeUtil.Unit.HOURS);
+        queryDirection(channel, new ContentKey(hour, "-"), true, 10, 5);
+    }
+
     private void query(String channel, DateTime start, int expected, TimeUtil.Unit unit) {
         ActiveTraces.start("S3BatchContentDaoTest", channel, start, expected, unit);
         TimeQuery timeQuery = TimeQuery.builder().channelName(channel)
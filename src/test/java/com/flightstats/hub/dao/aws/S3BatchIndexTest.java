@@ -0,0 +1,153 @@
+package com.flightstats.hub.dao.aws;
+
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.MinutePath;
+import com.flightstats.hub.util.TimeUtil;
+import com.google.common.io.ByteStreams;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class S3BatchIndexTest {
+
+    private final MinutePath minutePath = new MinutePath();
+
+    @Test
+    public void testJson() throws IOException {
+        List<ContentKey> keys = createKeys(5);
+        List<S3BatchIndex.Entry> entries = S3BatchIndex.read(S3BatchIndex.toJson(minutePath, keys));
+        assertEquals(keys, getKeys(entries));
+        for (S3BatchIndex.Entry entry : entries) {
+            assertFalse(entry.isLocated());
+        }
+    }
+
+    @Test
+    public void testBinary() throws IOException {
+        List<ContentKey> keys = createKeys(20);
+        byte[] zipBytes = createZip(keys);
+        List<ContentKey> shuffled = new ArrayList<>(keys);
+        Collections.shuffle(shuffled);
+        byte[] index = S3BatchIndex.toBinary(minutePath, shuffled, zipBytes);
+        assertTrue(index.length < S3BatchIndex.toJson(minutePath, keys).length);
+        List<S3BatchIndex.Entry> entries = S3BatchIndex.read(index);
+        assertEquals(keys, getKeys(entries));
+        for (S3BatchIndex.Entry entry : entries) {
+            assertTrue(entry.isLocated());
+            byte[] range = Arrays.copyOfRange(zipBytes, (int) entry.getOffset(), (int) entry.getOffset() + entry.getLength());
+            ZipInputStream zipStream = new ZipInputStream(new ByteArrayInputStream(range));
+            ZipEntry zipEntry = zipStream.getNextEntry();
+            assertEquals(entry.getKey().toUrl(), zipEntry.getName());
+            assertEquals("data " + entry.getKey().toUrl(), new String(ByteStreams.toByteArray(zipStream)));
+        }
+    }
+
+    @Test
+    public void testBinaryMissingEntry() throws IOException {
+        List<ContentKey> keys = createKeys(3);
+        byte[] zipBytes = createZip(keys.subList(0, 2));
+        List<S3BatchIndex.Entry> entries = S3BatchIndex.read(S3BatchIndex.toBinary(minutePath, keys, zipBytes));
+        assertEquals(keys, getKeys(entries));
+        assertTrue(entries.get(0).isLocated());
+        assertFalse(entries.get(2).isLocated());
+    }
+
+    @Test
+    public void testRollup() throws IOException {
+        DateTime day = TimeUtil.Unit.DAYS.round(minutePath.getTime());
+        List<S3BatchIndex.Entry> entries = new ArrayList<>();
+        List<ContentKey> keys = new ArrayList<>();
+        for (int hour = 23; hour >= 0; hour--) {
+            MinutePath minute = new MinutePath(day.plusHours(hour).plusMinutes(59));
+            List<ContentKey> minuteKeys = Arrays.asList(new ContentKey(minute.getTime().plusSeconds(59), "A"),
+                    new ContentKey(minute.getTime(), "B"));
+            entries.addAll(S3BatchIndex.read(S3BatchIndex.toBinary(minute, minuteKeys, createZip(minuteKeys))));
+            keys.addAll(minuteKeys);
+        }
+        List<S3BatchIndex.Entry> rollup = S3BatchIndex.read(S3BatchIndex.toBinary(new MinutePath(day), entries));
+        assertEquals(new ArrayList<>(new TreeSet<>(keys)), getKeys(rollup));
+        for (S3BatchIndex.Entry entry : rollup) {
+            assertTrue(entry.isLocated());
+        }
+    }
+
+    @Test
+    public void testDirectoryFromTail() throws IOException {
+        List<ContentKey> keys = createKeys(50);
+        byte[] zipBytes = createZip(keys);
+        Map<String, long[]> expected = S3BatchIndex.locateEntries(zipBytes);
+        assertEquals(50, expected.size());
+
+        long[] directory = S3BatchIndex.findDirectory(Arrays.copyOfRange(zipBytes, zipBytes.length - 100, zipBytes.length));
+        assertNotNull(directory);
+        assertEquals(zipBytes.length - 22, directory[0] + directory[1]);
+
+        int tailOffset = zipBytes.length - 100;
+        assertTrue(S3BatchIndex.locateEntries(Arrays.copyOfRange(zipBytes, tailOffset, zipBytes.length), tailOffset).isEmpty());
+
+        tailOffset = (int) directory[0];
+        Map<String, long[]> located = S3BatchIndex.locateEntries(Arrays.copyOfRange(zipBytes, tailOffset, zipBytes.length), tailOffset);
+        assertEquals(expected.keySet(), located.keySet());
+        for (String name : expected.keySet()) {
+            assertArrayEquals(expected.get(name), located.get(name));
+        }
+    }
+
+    @Test
+    public void testZip64() throws IOException {
+        List<ContentKey> keys = createKeys(70000);
+        byte[] zipBytes = createZip(keys);
+        assertTrue(S3BatchIndex.locateEntries(zipBytes).isEmpty());
+        assertNull(S3BatchIndex.findDirectory(Arrays.copyOfRange(zipBytes, zipBytes.length - 100, zipBytes.length)));
+
+        List<S3BatchIndex.Entry> entries = S3BatchIndex.read(S3BatchIndex.toBinary(minutePath, keys, zipBytes));
+        assertEquals(keys.size(), entries.size());
+        for (S3BatchIndex.Entry entry : entries) {
+            assertFalse(entry.isLocated());
+        }
+    }
+
+    @Test
+    public void testNotZip() {
+        assertTrue(S3BatchIndex.locateEntries(new byte[100]).isEmpty());
+        assertTrue(S3BatchIndex.locateEntries(new byte[0]).isEmpty());
+    }
+
+    private List<ContentKey> createKeys(int count) {
+        List<ContentKey> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(new ContentKey(minutePath.getTime().plusMillis(i * 1000), "hash" + i));
+        }
+        return keys;
+    }
+
+    private byte[] createZip(List<ContentKey> keys) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ZipOutputStream output = new ZipOutputStream(baos);
+        for (ContentKey key : keys) {
+            ZipEntry zipEntry = new ZipEntry(key.toUrl());
+            zipEntry.setExtra("{\"contentType\":\"text/plain\"}".getBytes());
+            output.putNextEntry(zipEntry);
+            output.write(("data " + key.toUrl()).getBytes());
+        }
+        output.close();
+        return baos.toByteArray();
+    }
+
+    private List<ContentKey> getKeys(List<S3BatchIndex.Entry> entries) {
+        List<ContentKey> keys = new ArrayList<>();
+        for (S3BatchIndex.Entry entry : entries) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+}
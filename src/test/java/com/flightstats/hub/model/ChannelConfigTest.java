@@ -189,4 +189,14 @@ public class ChannelConfigTest {
         assertFalse(testZeroBytes.isAllowZeroBytes());
     }
 
+    @Test
+    public void testCompression() {
+        ChannelConfig config = ChannelConfig.builder().name("testCompression").compression(" snappy ").build();
+        assertEquals("SNAPPY", config.getCompression());
+        assertEquals(config, ChannelConfig.createFromJson(config.toJson()));
+        ChannelConfig updated = ChannelConfig.updateFromJson(config, "{\"compression\": \"\"}");
+        assertEquals("", updated.getCompression());
+        assertEquals("", ChannelConfig.builder().name("defaultCompression").build().getCompression());
+    }
+
 }
@@ -2,8 +2,10 @@ package com.flightstats.hub.model;
 
 import com.flightstats.hub.util.TimeUtil;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.Test;
 
+import java.util.Random;
 import java.util.TreeSet;
 
 import static org.junit.Assert.*;
@@ -74,5 +76,63 @@ public class ContentKeyTest {
         ContentKey nextMinute = new ContentKey(minutePath.getTime().plusMinutes(1), "0");
         assertTrue(nextMinute.compareTo(minutePath) > 0);
     }
-}
 
+    @Test
+    public void testUrlMatchesFormatter() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            DateTime time = new DateTime(Math.abs(random.nextLong()) % 253402300800000L, DateTimeZone.UTC);
+            ContentKey key = new ContentKey(time, "hash" + i);
+            assertEquals(TimeUtil.millis(time) + "hash" + i, key.toUrl());
+            assertEquals(key, ContentKey.fromUrl(key.toUrl()).get());
+            assertEquals(time, ContentKey.fromUrl(key.toUrl()).get().getTime());
+        }
+    }
+
+    @Test
+    public void testFieldConstructor() {
+        ContentKey key = new ContentKey(2016, 2, 29, 23, 59, 59, 999, "A");
+        assertEquals(new DateTime(2016, 2, 29, 23, 59, 59, 999, DateTimeZone.UTC), key.getTime());
+        assertEquals("2016/02/29/23/59/59/999/A", key.toUrl());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidField() {
+        new ContentKey(2015, 2, 29, 0, 0, 0, 0, "A");
+    }
+
+    @Test
+    public void testInvalidUrls() {
+        assertFalse(ContentKey.fromUrl("2015/01/23/21/11/19/407").isPresent());
+        assertFalse(ContentKey.fromUrl("2015/13/23/21/11/19/407/A").isPresent());
+        assertFalse(ContentKey.fromUrl("2015/01/23/24/11/19/407/A").isPresent());
+        assertFalse(ContentKey.fromUrl("2015/0a/23/21/11/19/407/A").isPresent());
+        assertFalse(ContentKey.fromUrl("2015/01/23/21/11").isPresent());
+        assertEquals("", ContentKey.fromUrl("2015/01/23/21/11/19/407/").get().getHash());
+    }
+
+    @Test
+    public void testZone() {
+        DateTime time = new DateTime(2015, 1, 23, 21, 11, 19, 407, DateTimeZone.forOffsetHours(-7));
+        ContentKey key = new ContentKey(time, "A");
+        assertEquals(new ContentKey(time.withZone(DateTimeZone.UTC), "A"), key);
+        assertEquals(DateTimeZone.UTC, key.getTime().getZone());
+        assertEquals("2015/01/24/04/11/19/407/A", key.toUrl());
+    }
+
+    @Test
+    public void testBulkKey() {
+        ContentKey master = new ContentKey(TimeUtil.now(), "master");
+        assertEquals("master000000", ContentKey.bulkKey(master, 0).getHash());
+        assertEquals("master000042", ContentKey.bulkKey(master, 42).getHash());
+        assertEquals("master1234567", ContentKey.bulkKey(master, 1234567).getHash());
+        assertEquals(master.getMillis(), ContentKey.bulkKey(master, 1).getMillis());
+    }
+
+    @Test
+    public void testCompareSecondPath() {
+        SecondPath secondPath = new SecondPath();
+        assertTrue(new ContentKey(secondPath.getTime().plusMillis(999), "0").compareTo(secondPath) < 0);
+        assertTrue(new ContentKey(secondPath.getTime().plusSeconds(1), "0").compareTo(secondPath) > 0);
+    }
+}
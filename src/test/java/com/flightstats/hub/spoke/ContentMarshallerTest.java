@@ -1,15 +1,16 @@
 package com.flightstats.hub.spoke;
 
+import com.flightstats.hub.dao.Compression;
 import com.flightstats.hub.dao.ContentMarshaller;
 import com.flightstats.hub.model.Content;
 import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.util.StringUtils;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 public class ContentMarshallerTest {
 
@@ -62,6 +63,49 @@ public class ContentMarshallerTest {
         verify(content, 1024);
     }
 
+    @Test
+    public void testCompressions() throws IOException {
+        int size = 100 * 1024;
+        for (Compression compression : Compression.values()) {
+            Content content = getContent(size);
+            content.setCompression(compression);
+            verify(content, size);
+        }
+    }
+
+    @Test
+    public void testNoContentType() throws IOException {
+        Content content = Content.builder()
+                .withData(StringUtils.randomAlphaNumeric(10).getBytes())
+                .withContentKey(new ContentKey())
+                .withCompression(Compression.SNAPPY)
+                .build();
+        Content cycled = ContentMarshaller.toContent(ContentMarshaller.toBytes(content), content.getContentKey().get());
+        assertFalse(cycled.getContentType().isPresent());
+        assertEquals(10, cycled.getData().length);
+    }
+
+    @Test
+    public void testStreamKeepsCompression() throws IOException {
+        for (Compression compression : Compression.values()) {
+            Content content = getContent(1024);
+            content.setCompression(compression);
+            byte[] bytes = ContentMarshaller.toBytes(content);
+            Content cycled = ContentMarshaller.toContent(new ByteArrayInputStream(bytes), content.getContentKey().get());
+            assertEquals(compression, cycled.getCompression());
+            assertEquals(1024, cycled.getSize().longValue());
+            assertEquals(1024, cycled.getData().length);
+        }
+    }
+
+    @Test
+    public void testUncompressedIsSmall() throws IOException {
+        Content content = getContent(10);
+        content.setCompression(Compression.NONE);
+        byte[] bytes = ContentMarshaller.toBytes(content);
+        assertEquals(14 + 2 + "application/json".length() + 10, bytes.length);
+    }
+
     private void verify(Content content, int size) throws IOException {
         Content cycled = ContentMarshaller.toContent(ContentMarshaller.toBytes(content), content.getContentKey().get());
         assertTrue(content.equals(cycled));
@@ -15,10 +15,12 @@ import org.slf4j.LoggerFactory;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -44,6 +46,29 @@ public class FileSpokeStoreTest {
         assertArrayEquals(BYTES, read);
     }
 
+    @Test
+    public void testReadBuffer() throws Exception {
+        String small = "testReadBuffer/" + new ContentKey().toUrl();
+        assertTrue(spokeStore.insert(small, BYTES));
+        assertArrayEquals(BYTES, toBytes(spokeStore.readBuffer(small)));
+
+        byte[] large = new byte[256 * 1024];
+        new Random().nextBytes(large);
+        String largePath = "testReadBuffer/" + new ContentKey().toUrl();
+        assertTrue(spokeStore.insert(largePath, large));
+        ByteBuffer buffer = spokeStore.readBuffer(largePath);
+        assertTrue(buffer.hasArray());
+        assertArrayEquals(large, toBytes(buffer));
+
+        assertNull(spokeStore.readBuffer("testReadBuffer/" + new ContentKey().toUrl()));
+    }
+
+    private byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
     @Test
     public void testPathTranslation() throws Exception {
         String incoming = "/test_0_4274725520517677/2014/11/18/00/57/24/015/NV2cl5";
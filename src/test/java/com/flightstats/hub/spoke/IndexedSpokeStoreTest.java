@@ -0,0 +1,133 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.app.HubProperties;
+import com.flightstats.hub.dao.ContentKeyUtil;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.util.TimeUtil;
+import com.google.common.io.Files;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class IndexedSpokeStoreTest {
+    private static final byte[] BYTES = new byte[]{0, 2, 3, 4, 5, 6};
+    private static final int ttlMinutes = HubProperties.getSpokeTtlMinutes(SpokeStore.WRITE);
+    private String tempDir;
+    private FileSpokeStore fileStore;
+    private IndexedSpokeStore spokeStore;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDir().getPath();
+        fileStore = new FileSpokeStore(tempDir, ttlMinutes);
+        spokeStore = new IndexedSpokeStore(fileStore, tempDir, ttlMinutes);
+        assertTrue(spokeStore.awaitRebuild(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRebuild() throws Exception {
+        DateTime now = TimeUtil.now();
+        String key = "testRebuild/" + new ContentKey(now.minusMinutes(5), "A").toUrl();
+        assertTrue(fileStore.insert(key, BYTES));
+        IndexedSpokeStore rebuilt = new IndexedSpokeStore(fileStore, tempDir, ttlMinutes);
+        assertTrue(rebuilt.awaitRebuild(10, TimeUnit.SECONDS));
+        assertEquals(key, rebuilt.getLatest("testRebuild", ContentKey.lastKey(now).toUrl()));
+    }
+
+    @Test
+    public void testMatchesDisk() throws Exception {
+        String channel = "testMatchesDisk";
+        DateTime start = TimeUtil.now().minusMinutes(20);
+        DateTime time = start;
+        for (int i = 0; i < 30; i++) {
+            time = time.plusSeconds(20);
+            assertTrue(spokeStore.insert(channel + "/" + new ContentKey(time, "A").toUrl(), BYTES));
+            assertTrue(spokeStore.insert(channel + "/" + new ContentKey(time.plusMillis(1), "B").toUrl(), BYTES));
+        }
+        for (int i = 0; i < 12; i++) {
+            String minute = channel + "/" + TimeUtil.minutes(start.plusMinutes(i));
+            assertEquals(keys(fileStore.readKeysInBucket(minute)), keys(spokeStore.readKeysInBucket(minute)));
+            String second = channel + "/" + TimeUtil.seconds(start.plusSeconds(i * 20));
+            assertEquals(keys(fileStore.readKeysInBucket(second)), keys(spokeStore.readKeysInBucket(second)));
+        }
+        for (int i = 0; i < 30; i++) {
+            String limit = new ContentKey(start.plusSeconds(i * 17), "A").toUrl();
+            assertEquals(fileStore.getLatest(channel, limit), spokeStore.getLatest(channel, limit));
+        }
+        String startKey = new ContentKey(start.plusMinutes(3), "A").toUrl();
+        List<String> next = getNext(spokeStore, channel, startKey, 5);
+        assertEquals(5, next.size());
+        List<ContentKey> fileNext = new ArrayList<>(keys(String.join(",", getNext(fileStore, channel, startKey, 5))));
+        assertEquals(new TreeSet<>(fileNext.subList(0, 5)), keys(String.join(",", next)));
+    }
+
+    @Test
+    public void testOldBucketsUseDisk() throws Exception {
+        String path = "testOldBucketsUseDisk/2014/11/18/00/57/24/015/1";
+        assertTrue(spokeStore.insert(path, BYTES));
+        assertEquals(path + ",", spokeStore.readKeysInBucket("testOldBucketsUseDisk/2014/11/18/00/57"));
+        assertEquals(path, spokeStore.getLatest("testOldBucketsUseDisk", "2014/11/18/00/58/00/000/A"));
+    }
+
+    @Test
+    public void testQueriesFollowTtl() throws Exception {
+        String channel = "testQueriesFollowTtl";
+        IndexedSpokeStore noTtl = new IndexedSpokeStore(fileStore, tempDir, 0);
+        assertTrue(noTtl.awaitRebuild(10, TimeUnit.SECONDS));
+        ContentKey key = new ContentKey(TimeUtil.now().minusSeconds(2), "A");
+        assertTrue(fileStore.insert(channel + "/" + key.toUrl(), BYTES));
+        String limit = new ContentKey(key.getTime().plusSeconds(1), "A").toUrl();
+        assertEquals(channel + "/" + key.toUrl(), noTtl.getLatest(channel, limit));
+        assertEquals(channel + "/" + key.toUrl() + ",", noTtl.readKeysInBucket(channel + "/" + TimeUtil.seconds(key.getTime())));
+    }
+
+    @Test
+    public void testDeleteFile() throws Exception {
+        String channel = "testDeleteFile";
+        ContentKey key = new ContentKey(TimeUtil.now().minusMinutes(1), "A");
+        assertTrue(spokeStore.insert(channel + "/" + key.toUrl(), BYTES));
+        String limit = ContentKey.lastKey(TimeUtil.now()).toUrl();
+        assertEquals(channel + "/" + key.toUrl(), spokeStore.getLatest(channel, limit));
+        assertTrue(spokeStore.deleteFile(channel + "/" + key.toUrl()));
+        assertNull(spokeStore.getLatest(channel, limit));
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        String channel = "testDelete";
+        ContentKey key = new ContentKey(TimeUtil.now().minusMinutes(1), "A");
+        assertTrue(spokeStore.insert(channel + "/" + key.toUrl(), BYTES));
+        spokeStore.delete(channel);
+        assertEquals("", spokeStore.readKeysInBucket(channel + "/" + TimeUtil.minutes(key.getTime())));
+    }
+
+    @Test
+    public void testBucketOutsideTimeRange() {
+        DateTime old = new DateTime(2014, 12, 31, 23, 30, 1, 2, DateTimeZone.UTC);
+        assertEquals("", spokeStore.readKeysInBucket("testBucketOutsideTimeRange/" + TimeUtil.hours(old)));
+    }
+
+    private List<String> getNext(LocalSpokeStore store, String channel, String startKey, int count) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        store.getNext(channel, startKey, count, baos);
+        return Arrays.asList(baos.toString().split(","));
+    }
+
+    private SortedSet<ContentKey> keys(String keys) {
+        SortedSet<ContentKey> contentKeys = new TreeSet<>();
+        ContentKeyUtil.convertKeyStrings(keys, contentKeys);
+        return contentKeys;
+    }
+}
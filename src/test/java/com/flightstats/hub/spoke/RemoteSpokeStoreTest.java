@@ -1,8 +1,26 @@
 package com.flightstats.hub.spoke;
 
+import com.flightstats.hub.metrics.DelegatingMetricsService;
+import com.flightstats.hub.metrics.Traces;
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.junit.Test;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class RemoteSpokeStoreTest {
 
@@ -18,4 +36,62 @@ public class RemoteSpokeStoreTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testBulkToManyServers() throws Exception {
+        List<byte[]> bodies = Collections.synchronizedList(new ArrayList<>());
+        List<Server> servers = new ArrayList<>();
+        List<String> serverNames = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Server server = new Server(0);
+            server.setHandler(new AbstractHandler() {
+                @Override
+                public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                    baseRequest.setHandled(true);
+                    bodies.add(ByteStreams.toByteArray(request.getInputStream()));
+                    response.setStatus(201);
+                }
+            });
+            server.start();
+            servers.add(server);
+            serverNames.add("localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort());
+        }
+        try {
+            List<Content> items = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                byte[] data = new byte[1024];
+                Arrays.fill(data, (byte) i);
+                items.add(Content.builder().withContentKey(new ContentKey()).withData(data).build());
+            }
+            byte[] expected = toBytes(SpokeBulkMarshaller.toBuffers(items));
+            RemoteSpokeStore spokeStore = new RemoteSpokeStore(null, new DelegatingMetricsService());
+            for (int i = 0; i < 20; i++) {
+                bodies.clear();
+                assertTrue(spokeStore.insertBulk(SpokeStore.WRITE, "testBulkToManyServers", items, serverNames, new Traces("bulk")));
+                long end = System.currentTimeMillis() + 10 * 1000;
+                while (bodies.size() < serverNames.size() && System.currentTimeMillis() < end) {
+                    Thread.sleep(10);
+                }
+                assertEquals(serverNames.size(), bodies.size());
+                for (byte[] body : bodies) {
+                    assertArrayEquals(expected, body);
+                }
+            }
+        } finally {
+            for (Server server : servers) {
+                server.stop();
+            }
+        }
+    }
+
+    private byte[] toBytes(ByteBuffer[] buffers) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : buffers) {
+            ByteBuffer duplicate = buffer.duplicate();
+            byte[] bytes = new byte[duplicate.remaining()];
+            duplicate.get(bytes);
+            output.write(bytes, 0, bytes.length);
+        }
+        return output.toByteArray();
+    }
+
+}
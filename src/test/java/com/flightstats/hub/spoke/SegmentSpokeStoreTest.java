@@ -0,0 +1,218 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.app.HubProperties;
+import com.flightstats.hub.dao.ContentKeyUtil;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.util.TimeUtil;
+import com.google.common.io.Files;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.NotFoundException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SegmentSpokeStoreTest {
+    private static final byte[] BYTES = new byte[]{0, 2, 3, 4, 5, 6};
+    private static final int ttlMinutes = HubProperties.getSpokeTtlMinutes(SpokeStore.WRITE);
+    private String tempDir;
+    private SegmentSpokeStore spokeStore;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDir().getPath();
+        spokeStore = new SegmentSpokeStore(tempDir, ttlMinutes);
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        String path = "channelWR/" + new ContentKey().toUrl();
+        assertTrue(spokeStore.insert(path, BYTES));
+        assertArrayEquals(BYTES, spokeStore.read(path));
+    }
+
+    @Test
+    public void testReadBuffer() throws Exception {
+        String small = "testReadBuffer/" + new ContentKey().toUrl();
+        assertTrue(spokeStore.insert(small, BYTES));
+        assertArrayEquals(BYTES, toBytes(spokeStore.readBuffer(small)));
+
+        byte[] large = new byte[256 * 1024];
+        new Random().nextBytes(large);
+        String largePath = "testReadBuffer/" + new ContentKey().toUrl();
+        assertTrue(spokeStore.insert(largePath, large));
+        ByteBuffer buffer = spokeStore.readBuffer(largePath);
+        assertTrue(buffer.hasArray());
+        assertArrayEquals(large, toBytes(buffer));
+
+        assertNull(spokeStore.readBuffer("testReadBuffer/" + new ContentKey().toUrl()));
+    }
+
+    private byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testOneFilePerMinute() throws Exception {
+        DateTime time = new DateTime(2014, 11, 18, 0, 57, 24, 15, DateTimeZone.UTC);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(spokeStore.insert("testOneFilePerMinute/" + new ContentKey(time.plusSeconds(i), "" + i).toUrl(), ("" + i).getBytes()));
+        }
+        File minute = new File(tempDir + "/testOneFilePerMinute/2014/11/18/00/57");
+        assertTrue(minute.isFile());
+        for (int i = 0; i < 10; i++) {
+            String path = "testOneFilePerMinute/" + new ContentKey(time.plusSeconds(i), "" + i).toUrl();
+            assertArrayEquals(("" + i).getBytes(), spokeStore.read(path));
+        }
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testMissing() throws Exception {
+        spokeStore.insert("testMissing/2014/11/18/00/57/24/015/A", BYTES);
+        spokeStore.read("testMissing/2014/11/18/00/57/24/015/B");
+    }
+
+    @Test
+    public void testPartialRecordIgnored() throws Exception {
+        String path = "testPartial/2014/11/18/00/57/24/015/A";
+        assertTrue(spokeStore.insert(path, BYTES));
+        File minute = new File(tempDir + "/testPartial/2014/11/18/00/57");
+        try (RandomAccessFile file = new RandomAccessFile(minute, "rw")) {
+            file.seek(file.length());
+            file.write(new byte[]{0, 1, 0, 1, 'B', -1, -1, -1, -1, -1, -1, -1, -1, 7, 7});
+        }
+        assertEquals(1, keys("testPartial/2014/11/18/00/57").size());
+        String next = "testPartial/2014/11/18/00/57/25/015/C";
+        assertTrue(spokeStore.insert(next, BYTES));
+        assertArrayEquals(BYTES, spokeStore.read(path));
+        assertArrayEquals(BYTES, spokeStore.read(next));
+        assertEquals(2, keys("testPartial/2014/11/18/00/57").size());
+    }
+
+    @Test
+    public void testAdjacentPaths() throws Exception {
+        String path1 = "testAdjacentPaths/2014/11/18/00/57/24/015/1";
+        String path2 = "testAdjacentPaths/2014/11/18/00/57/24/015/2";
+        String path3 = "testAdjacentPaths/2014/11/18/00/57/24/015/3";
+        spokeStore.insert(path1, BYTES);
+        spokeStore.insert(path2, BYTES);
+        spokeStore.insert(path3, BYTES);
+        spokeStore.insert("testAdjacentPaths/2014/11/18/00/57/23/015/1", BYTES);
+        spokeStore.insert("testAdjacentPaths/2014/11/18/00/57/25/015/1", BYTES);
+        spokeStore.insert("testAdjacentPaths/2014/11/18/00/57/24/014/1", BYTES);
+        spokeStore.insert("testAdjacentPaths/2014/11/18/00/57/24/016/1", BYTES);
+        spokeStore.insert("testAdjacentPaths/2014/11/18/00/58/01/016/1", BYTES);
+
+        List<ContentKey> keys = keys("testAdjacentPaths/2014/11/18/00/57");
+        assertEquals(7, keys.size());
+        assertTrue(keys.contains(ContentKey.fromUrl("2014/11/18/00/57/24/015/2").get()));
+
+        assertEquals(5, keys("testAdjacentPaths/2014/11/18/00/57/24").size());
+        assertEquals(8, keys("testAdjacentPaths/2014/11/18/00").size());
+        assertEquals(8, keys("testAdjacentPaths/2014/11").size());
+    }
+
+    @Test
+    public void testDeleteFile() throws Exception {
+        String path1 = "testDeleteFile/2014/11/18/00/57/24/015/1";
+        String path2 = "testDeleteFile/2014/11/18/00/57/24/015/2";
+        spokeStore.insert(path1, BYTES);
+        spokeStore.insert(path2, "two".getBytes());
+        assertTrue(spokeStore.deleteFile(path1));
+        assertFalse(spokeStore.deleteFile(path1));
+        assertEquals(1, keys("testDeleteFile/2014/11/18/00/57").size());
+        assertArrayEquals("two".getBytes(), spokeStore.read(path2));
+    }
+
+    @Test
+    public void testLastFile() {
+        DateTime time = new DateTime(2014, 12, 31, 23, 30, 1, 2, DateTimeZone.UTC);
+        for (int i = 0; i < 30; i++) {
+            time = time.plusMinutes(2);
+            spokeStore.insert("testLastFile/" + new ContentKey(time, "A").toUrl(), BYTES);
+            time = time.plusSeconds(1);
+            spokeStore.insert("testLastFile/" + new ContentKey(time, "B").toUrl(), BYTES);
+            time = time.plusMillis(1);
+            spokeStore.insert("testLastFile/" + new ContentKey(time, "C").toUrl(), BYTES);
+        }
+        ContentKey limitKey = new ContentKey(time.minusMinutes(1), "A");
+        assertEquals("testLastFile/2015/01/01/00/28/30/031/C", spokeStore.getLatest("testLastFile", limitKey.toUrl()));
+
+        limitKey = new ContentKey(time, "B");
+        assertEquals("testLastFile/2015/01/01/00/30/31/031/B", spokeStore.getLatest("testLastFile", limitKey.toUrl()));
+
+        limitKey = new ContentKey(time.plusMinutes(1), "D");
+        assertEquals("testLastFile/2015/01/01/00/30/31/032/C", spokeStore.getLatest("testLastFile", limitKey.toUrl()));
+    }
+
+    @Test
+    public void testLatestCycle() {
+        DateTime now = TimeUtil.now();
+        assertNull(spokeStore.getLatest("testLatestCycle", ContentKey.lastKey(now).toUrl()));
+        String key = new ContentKey(now, "0").toUrl();
+        assertTrue(spokeStore.insert("testLatestCycle/" + key, BYTES));
+        assertNull(spokeStore.getLatest("testLatestCycle", key));
+        assertEquals("testLatestCycle/" + key, spokeStore.getLatest("testLatestCycle", ContentKey.lastKey(now.plusMinutes(1)).toUrl()));
+    }
+
+    @Test
+    public void testNextN() throws IOException {
+        String name = "testNextN";
+        DateTime startTime = TimeUtil.now().minusMinutes(59);
+        DateTime time = startTime;
+        for (int i = 0; i < 30; i++) {
+            time = time.plusMinutes(2);
+            spokeStore.insert(name + "/" + new ContentKey(time, "A").toUrl(), BYTES);
+            time = time.plusSeconds(1);
+            spokeStore.insert(name + "/" + new ContentKey(time, "B").toUrl(), BYTES);
+            time = time.plusMillis(1);
+            spokeStore.insert(name + "/" + new ContentKey(time, "C").toUrl(), BYTES);
+        }
+        assertEquals(87, getNextTesting(name, new ContentKey(startTime, "A").toUrl(), 90).size());
+        assertEquals(45, getNextTesting(name, new ContentKey(startTime.plusMinutes(30), "A").toUrl(), 45).size());
+    }
+
+    @Test
+    public void testEnforceTtl() {
+        String channel = "testEnforceTtl";
+        DateTime startTime = new DateTime(2014, 12, 31, 23, 45, 1, 2, DateTimeZone.UTC);
+        DateTime time = startTime;
+        for (int i = 0; i < 30; i++) {
+            time = time.plusMinutes(1);
+            spokeStore.insert(channel + "/" + new ContentKey(time, "" + i).toUrl(), BYTES);
+        }
+        String startQuery = channel + "/" + TimeUtil.hours(startTime);
+        String endQuery = channel + "/" + TimeUtil.hours(time);
+        assertEquals(14, keys(startQuery).size());
+        assertEquals(16, keys(endQuery).size());
+
+        spokeStore.enforceTtl(channel, startTime.plusMinutes(17));
+        assertEquals(0, keys(startQuery).size());
+        assertEquals(13, keys(endQuery).size());
+    }
+
+    private List<String> getNextTesting(String channel, String startKey, int count) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        spokeStore.getNext(channel, startKey, count, baos);
+        return Arrays.asList(baos.toString().split(","));
+    }
+
+    private List<ContentKey> keys(String path) {
+        ArrayList<ContentKey> keys = new ArrayList<>();
+        ContentKeyUtil.convertKeyStrings(spokeStore.readKeysInBucket(path), keys);
+        return keys;
+    }
+}
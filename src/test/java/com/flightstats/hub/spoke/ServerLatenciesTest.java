@@ -0,0 +1,66 @@
+package com.flightstats.hub.spoke;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ServerLatenciesTest {
+
+    @Test
+    public void testDefault() {
+        ServerLatencies latencies = new ServerLatencies(10, 90, 50, 5, 1000);
+        assertEquals(50, latencies.threshold("server1"));
+        for (int i = 0; i < 9; i++) {
+            latencies.record("server1", 10);
+        }
+        assertEquals(50, latencies.threshold("server1"));
+    }
+
+    @Test
+    public void testPercentile() {
+        ServerLatencies latencies = new ServerLatencies(10, 90, 50, 5, 1000);
+        for (int i = 1; i <= 10; i++) {
+            latencies.record("server1", i * 10);
+        }
+        assertEquals(90, latencies.threshold("server1"));
+        assertEquals(50, latencies.threshold("server2"));
+    }
+
+    @Test
+    public void testLimits() {
+        ServerLatencies latencies = new ServerLatencies(10, 90, 50, 5, 1000);
+        for (int i = 0; i < 10; i++) {
+            latencies.record("fast", 1);
+            latencies.record("slow", 5000);
+        }
+        assertEquals(5, latencies.threshold("fast"));
+        assertEquals(1000, latencies.threshold("slow"));
+    }
+
+    @Test
+    public void testWindowMoves() {
+        ServerLatencies latencies = new ServerLatencies(8, 50, 50, 1, 1000);
+        for (int i = 0; i < 8; i++) {
+            latencies.record("server1", 10);
+        }
+        assertEquals(10, latencies.threshold("server1"));
+        for (int i = 0; i < 8; i++) {
+            latencies.record("server1", 200);
+        }
+        assertEquals(200, latencies.threshold("server1"));
+    }
+
+    @Test
+    public void testLongRunningCount() {
+        ServerLatencies latencies = new ServerLatencies(8, 50, 50, 1, 1000);
+        latencies.startCount("server1", Integer.MAX_VALUE - 3);
+        for (int i = 0; i < 20; i++) {
+            latencies.record("server1", 30);
+        }
+        assertEquals(30, latencies.threshold("server1"));
+        for (int i = 0; i < 8; i++) {
+            latencies.record("server1", 300);
+        }
+        assertEquals(300, latencies.threshold("server1"));
+    }
+}
@@ -0,0 +1,138 @@
+package com.flightstats.hub.spoke;
+
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SpokeBulkMarshallerTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<Content> items = createItems(5);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SpokeBulkMarshaller.write(items, baos);
+        assertItems(items, read(baos.toByteArray()));
+    }
+
+    @Test
+    public void testLegacyRoundTrip() throws Exception {
+        List<Content> items = createItems(5);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SpokeBulkMarshaller.writeLegacy(items, baos);
+        assertItems(items, read(baos.toByteArray()));
+    }
+
+    @Test
+    public void testLegacyWriter() throws Exception {
+        List<Content> items = createItems(3);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream stream = new ObjectOutputStream(baos);
+        stream.writeInt(items.size());
+        for (Content content : items) {
+            String itemKey = content.getContentKey().get().toUrl();
+            stream.writeInt(itemKey.length());
+            stream.write(itemKey.getBytes());
+            stream.writeInt(content.getData().length);
+            stream.write(content.getData());
+        }
+        stream.flush();
+        ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        SpokeBulkMarshaller.writeLegacy(items, legacy);
+        assertArrayEquals(baos.toByteArray(), legacy.toByteArray());
+    }
+
+    @Test
+    public void testStreamingWriter() throws Exception {
+        List<Content> items = createItems(4);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (SpokeBulkMarshaller.Writer writer = new SpokeBulkMarshaller.Writer(baos)) {
+            for (int i = 0; i < items.size(); i++) {
+                Content content = items.get(i);
+                ByteBuffer buffer = ByteBuffer.wrap(content.getData());
+                if (i % 2 == 1) {
+                    buffer = ByteBuffer.allocateDirect(content.getData().length).put(buffer);
+                    buffer.flip();
+                }
+                writer.write(content.getContentKey().get().toUrl(), buffer);
+            }
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        SpokeBulkMarshaller.write(items, expected);
+        assertArrayEquals(expected.toByteArray(), baos.toByteArray());
+        assertItems(items, read(baos.toByteArray()));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SpokeBulkMarshaller.write(new ArrayList<>(), baos);
+        assertTrue(read(baos.toByteArray()).isEmpty());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncated() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SpokeBulkMarshaller.write(createItems(2), baos);
+        byte[] bytes = baos.toByteArray();
+        read(Arrays.copyOf(bytes, bytes.length - 10));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testUnknownVersion() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SpokeBulkMarshaller.write(createItems(1), baos);
+        byte[] bytes = baos.toByteArray();
+        bytes[4] = 99;
+        read(bytes);
+    }
+
+    @Test
+    public void testWriterFailure() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SpokeBulkMarshaller.write(createItems(3), baos);
+        List<String> keys = new ArrayList<>();
+        assertFalse(SpokeBulkMarshaller.read(new ByteArrayInputStream(baos.toByteArray()), (key, payload) -> {
+            keys.add(key);
+            return keys.size() < 2;
+        }));
+        assertEquals(2, keys.size());
+    }
+
+    private List<Content> createItems(int count) {
+        List<Content> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(Content.builder()
+                    .withContentKey(new ContentKey())
+                    .withData(("item " + i + " of " + count).getBytes())
+                    .build());
+        }
+        return items;
+    }
+
+    private Map<String, byte[]> read(byte[] bytes) throws IOException {
+        Map<String, byte[]> read = new LinkedHashMap<>();
+        assertTrue(SpokeBulkMarshaller.read(new ByteArrayInputStream(bytes), (key, payload) -> {
+            read.put(key, ByteStreams.toByteArray(payload));
+            return true;
+        }));
+        return read;
+    }
+
+    private void assertItems(List<Content> items, Map<String, byte[]> read) {
+        assertEquals(items.size(), read.size());
+        for (Content content : items) {
+            assertArrayEquals(content.getData(), read.get(content.getContentKey().get().toUrl()));
+        }
+    }
+}
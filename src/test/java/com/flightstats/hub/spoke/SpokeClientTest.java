@@ -0,0 +1,90 @@
+package com.flightstats.hub.spoke;
+
+import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.ByteBufferContentProvider;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+public class SpokeClientTest {
+
+    private static Server server;
+    private static String baseUri;
+    private static SpokeClient client;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                if (request.getMethod().equals("PUT")) {
+                    response.setStatus(201);
+                    response.getOutputStream().write(ByteStreams.toByteArray(request.getInputStream()));
+                } else if (request.getMethod().equals("DELETE")) {
+                    response.setStatus(202);
+                } else {
+                    response.setStatus(target.endsWith("missing") ? 404 : 200);
+                    response.getOutputStream().write(target.getBytes());
+                }
+            }
+        });
+        server.start();
+        baseUri = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        client = new SpokeClient();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        ContentResponse response = client.get(baseUri + "/internal/spoke/latest/channel", 5).get();
+        assertEquals(200, response.getStatus());
+        assertEquals("/internal/spoke/latest/channel", response.getContentAsString());
+        assertEquals(404, client.get(baseUri + "/missing", 5).get().getStatus());
+    }
+
+    @Test
+    public void testPutBuffers() throws Exception {
+        ByteBufferContentProvider content = new ByteBufferContentProvider(
+                ByteBuffer.wrap("one,".getBytes()), ByteBuffer.wrap("two".getBytes()));
+        for (int i = 0; i < 3; i++) {
+            ContentResponse response = client.put(baseUri + "/put", content, 5).get();
+            assertEquals(201, response.getStatus());
+            assertEquals("one,two", response.getContentAsString());
+        }
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        assertEquals(202, client.delete(baseUri + "/delete", 5).get().getStatus());
+    }
+
+    @Test
+    public void testConnectFailure() throws Exception {
+        try {
+            client.get("http://localhost:1/nothing", 5).get();
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ConnectException);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.flightstats.hub.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ChunkOutputStreamTest {
+
+    private static final int MEGABYTES = 1024 * 1024;
+
+    @Test
+    public void testBulkWrites() throws IOException {
+        byte[] bytes = new byte[12 * MEGABYTES + 100];
+        new Random(1).nextBytes(bytes);
+        Map<Integer, byte[]> chunks = new ConcurrentSkipListMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ChunkOutputStream stream = new ChunkOutputStream(2, chunk -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            chunks.put(chunk.getCount(), chunk.getBytes().clone());
+            Sleeper.sleep(20);
+            inFlight.decrementAndGet();
+            return "ok";
+        });
+        stream.write(bytes, 0, 1000);
+        for (int i = 1000; i < 2000; i++) {
+            stream.write(bytes[i]);
+        }
+        stream.write(bytes, 2000, bytes.length - 2000);
+        stream.close();
+
+        assertEquals(3, chunks.size());
+        assertEquals(5 * MEGABYTES, chunks.get(1).length);
+        assertTrue(maxInFlight.get() <= 2);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks.values()) {
+            output.write(chunk);
+        }
+        assertArrayEquals(bytes, output.toByteArray());
+        assertTrue(ChunkPool.getPooledBytes() > 0);
+    }
+
+    @Test
+    public void testFailure() {
+        ChunkOutputStream stream = new ChunkOutputStream(1, chunk -> {
+            throw new IllegalStateException("chunk " + chunk.getCount());
+        });
+        byte[] bytes = new byte[MEGABYTES];
+        try {
+            for (int i = 0; i < 20; i++) {
+                stream.write(bytes);
+            }
+            stream.close();
+            fail("expected the chunk failure");
+        } catch (Exception e) {
+            assertNotNull(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.flightstats.hub.util;
+
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DiskQueueTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(Files.createTempDir(), "queue");
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        DiskQueue queue = new DiskQueue(directory, 3);
+        for (int i = 0; i < 10; i++) {
+            queue.add("record" + i);
+        }
+        assertEquals(10, queue.size());
+        for (int i = 0; i < 10; i++) {
+            DiskQueue.Record record = queue.poll(1, TimeUnit.SECONDS);
+            assertEquals("record" + i, record.getValue());
+            queue.complete(record);
+        }
+        assertEquals(0, queue.size());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    public void testInterleaved() throws Exception {
+        DiskQueue queue = new DiskQueue(directory, 100);
+        for (int i = 0; i < 5; i++) {
+            queue.add("first" + i);
+            queue.add("second" + i);
+            assertEquals("first" + i, queue.poll(1, TimeUnit.SECONDS).getValue());
+            assertEquals("second" + i, queue.poll(1, TimeUnit.SECONDS).getValue());
+        }
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        DiskQueue queue = new DiskQueue(directory, 4);
+        for (int i = 0; i < 10; i++) {
+            queue.add("record" + i);
+        }
+        for (int i = 0; i < 6; i++) {
+            DiskQueue.Record record = queue.poll(1, TimeUnit.SECONDS);
+            if (i != 5) {
+                queue.complete(record);
+            }
+        }
+        queue.close();
+        try (FileOutputStream output = new FileOutputStream(new File(directory, lastFile()), true)) {
+            output.write("partial".getBytes());
+        }
+
+        DiskQueue restarted = new DiskQueue(directory, 4);
+        assertEquals(6, restarted.size());
+        List<String> values = new ArrayList<>();
+        DiskQueue.Record record;
+        while ((record = restarted.poll(10, TimeUnit.MILLISECONDS)) != null) {
+            values.add(record.getValue());
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 4; i < 10; i++) {
+            expected.add("record" + i);
+        }
+        assertEquals(expected, values);
+    }
+
+    @Test
+    public void testWaits() throws Exception {
+        DiskQueue queue = new DiskQueue(directory, 100);
+        new Thread(() -> {
+            Sleeper.sleep(50);
+            try {
+                queue.add("late");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }).start();
+        assertEquals("late", queue.poll(5, TimeUnit.SECONDS).getValue());
+    }
+
+    private int countFiles() {
+        return directory.listFiles().length;
+    }
+
+    private String lastFile() {
+        String last = null;
+        for (File file : directory.listFiles()) {
+            if (last == null || file.getName().compareTo(last) > 0) {
+                last = file.getName();
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,114 @@
+package com.flightstats.hub.webhook;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.flightstats.hub.dao.ChannelService;
+import com.flightstats.hub.model.Content;
+import com.flightstats.hub.model.ContentKey;
+import com.flightstats.hub.model.StreamResults;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InlineItemsTest {
+
+    private final List<ContentKey> read = new ArrayList<>();
+    private final Set<ContentKey> missing = new HashSet<>();
+    private final ChannelService channelService = new ChannelService() {
+        @Override
+        public void get(StreamResults streamResults) {
+            assertTrue(streamResults.isBulkOnly());
+            for (ContentKey key : streamResults.getKeys()) {
+                read.add(key);
+                if (missing.contains(key)) {
+                    continue;
+                }
+                streamResults.getCallback().accept(Content.builder()
+                        .withContentKey(key)
+                        .withContentType("text/plain")
+                        .withData(new byte[100])
+                        .build());
+            }
+        }
+    };
+
+    @Test
+    public void testStopsReadingAtBudget() {
+        List<ContentKey> keys = createKeys(100);
+        ArrayNode items = read(1000, keys);
+        assertEquals(100, items.size());
+        assertEquals(10, inlined(items));
+        assertEquals("http://hub/channel/inline/" + keys.get(0).toUrl(), items.get(0).get("uri").asText());
+        assertEquals("text/plain", items.get(0).get("contentType").asText());
+        assertEquals("http://hub/channel/inline/" + keys.get(10).toUrl(), items.get(10).get("uri").asText());
+        assertFalse(items.get(10).has("data"));
+        assertEquals(keys.subList(0, 10), read);
+    }
+
+    @Test
+    public void testItemDoesNotFit() {
+        List<ContentKey> keys = createKeys(10);
+        ArrayNode items = read(250, keys);
+        assertEquals(10, items.size());
+        assertEquals(2, inlined(items));
+        assertFalse(items.get(2).has("data"));
+        assertEquals(keys.subList(0, 3), read);
+    }
+
+    @Test
+    public void testAllFit() {
+        List<ContentKey> keys = createKeys(10);
+        assertEquals(10, inlined(read(10000, keys)));
+        assertEquals(keys, read);
+    }
+
+    @Test
+    public void testMissingItemIsNotReadAgain() {
+        List<ContentKey> keys = createKeys(10);
+        missing.add(keys.get(3));
+        ArrayNode items = read(10000, keys);
+        assertEquals(10, items.size());
+        assertEquals(9, inlined(items));
+        assertEquals("http://hub/channel/inline/" + keys.get(3).toUrl(), items.get(3).get("uri").asText());
+        assertFalse(items.get(3).has("data"));
+        assertEquals(keys, read);
+    }
+
+    private int inlined(ArrayNode items) {
+        int count = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).has("data")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private ArrayNode read(int maxInlineBytes, List<ContentKey> keys) {
+        Webhook webhook = Webhook.builder()
+                .name("inline")
+                .channelUrl("http://hub/channel/inline")
+                .maxInlineBytes(maxInlineBytes)
+                .build();
+        ArrayNode items = new ObjectMapper().createArrayNode();
+        new InlineItems(webhook, items).read(channelService, keys);
+        return items;
+    }
+
+    private List<ContentKey> createKeys(int count) {
+        DateTime start = new DateTime().minusMinutes(1);
+        List<ContentKey> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(new ContentKey(start.plusMillis(i), "key" + i));
+        }
+        return keys;
+    }
+}
@@ -7,6 +7,7 @@ import org.joda.time.DateTimeZone;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class QueryGeneratorTest {
 
@@ -29,6 +30,23 @@ public class QueryGeneratorTest {
         assertEquals("2015/05/07/11/05/03/000/", TimeUtil.millis(query.getStartTime()));
     }
 
+    @Test
+    public void testSkipTo() {
+        DateTime startTime = new DateTime(2015, 5, 7, 11, 5, 1, 2, DateTimeZone.UTC);
+        DateTime latestStableInChannel = new DateTime(2015, 5, 7, 11, 5, 31, 2, DateTimeZone.UTC);
+        QueryGenerator generator = new QueryGenerator(startTime, "test");
+
+        generator.skipTo(new DateTime(2015, 5, 7, 11, 5, 30, 500, DateTimeZone.UTC));
+        TimeQuery query = generator.getQuery(latestStableInChannel);
+        assertEquals(TimeUtil.Unit.SECONDS, query.getUnit());
+        assertEquals("2015/05/07/11/05/30/000/", TimeUtil.millis(query.getStartTime()));
+
+        generator.skipTo(startTime);
+        query = generator.getQuery(latestStableInChannel);
+        assertEquals("2015/05/07/11/05/31/000/", TimeUtil.millis(query.getStartTime()));
+        assertNull(generator.getQuery(latestStableInChannel));
+    }
+
     @Test
     public void testMinuteOffsetTransition() {
         DateTime startTime = new DateTime(2015, 5, 7, 11, 30, 10, 55, DateTimeZone.UTC);
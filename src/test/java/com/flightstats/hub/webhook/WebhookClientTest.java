@@ -0,0 +1,157 @@
+package com.flightstats.hub.webhook;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flightstats.hub.metrics.ActiveTraces;
+import com.flightstats.hub.model.ContentKey;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+public class WebhookClientTest {
+
+    private static Server server;
+    private static String baseUri;
+    private static WebhookClient webhookClient;
+    private static final AtomicInteger failures = new AtomicInteger();
+    private static final AtomicInteger requests = new AtomicInteger();
+
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    private final WebhookError webhookError = new WebhookError(null, null) {
+        @Override
+        public void add(String webhook, String error) {
+            errors.add(error);
+        }
+
+        @Override
+        void publishToErrorChannel(DeliveryAttempt attempt) {
+        }
+    };
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) {
+                baseRequest.setHandled(true);
+                requests.incrementAndGet();
+                response.setStatus(failures.getAndDecrement() > 0 ? 500 : 200);
+            }
+        });
+        server.start();
+        baseUri = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        webhookClient = new WebhookClient();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        server.stop();
+    }
+
+    @Before
+    public void setUp() {
+        requests.set(0);
+    }
+
+    @Test
+    public void testPost() throws Exception {
+        failures.set(0);
+        assertEquals(200, (int) webhookClient.post(baseUri + "/callback", "{}", 5, 5).get());
+        failures.set(1);
+        assertEquals(500, (int) webhookClient.post(baseUri + "/callback", "{}", 5, 5).get());
+        assertEquals(2, requests.get());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void testPostFailure() throws Exception {
+        webhookClient.post("http://localhost:1/callback", "{}", 1, 1).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        failures.set(1);
+        WebhookRetryer retryer = createRetryer();
+        assertTrue(send(retryer).get(10, TimeUnit.SECONDS));
+        assertEquals(2, requests.get());
+        assertEquals(1, errors.size());
+    }
+
+    @Test
+    public void testStopWhileWaiting() throws Exception {
+        failures.set(100);
+        WebhookRetryer retryer = createRetryer();
+        CompletableFuture<Boolean> delivery = send(retryer);
+        while (errors.isEmpty()) {
+            Thread.sleep(10);
+        }
+        retryer.stop();
+        assertFalse(delivery.get(1, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testPredicateThrowsOnRetry() throws Exception {
+        failures.set(1);
+        List<Predicate<DeliveryAttempt>> tryLaterIfs = new ArrayList<>();
+        tryLaterIfs.add(attempt -> {
+            if (attempt.getNumber() > 1) {
+                throw new NullPointerException("no channel");
+            }
+            return false;
+        });
+        WebhookRetryer retryer = new WebhookRetryer(new ArrayList<>(), tryLaterIfs, 5, 5, webhookError, webhookClient);
+        try {
+            send(retryer).get(10, TimeUnit.SECONDS);
+            fail("expected the delivery to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NullPointerException);
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void testPredicateThrowsOnFirstAttempt() throws Exception {
+        List<Predicate<DeliveryAttempt>> giveUpIfs = new ArrayList<>();
+        giveUpIfs.add(attempt -> {
+            throw new IllegalStateException("no channel");
+        });
+        WebhookRetryer retryer = new WebhookRetryer(giveUpIfs, new ArrayList<>(), 5, 5, webhookError, webhookClient);
+        send(retryer).get(10, TimeUnit.SECONDS);
+    }
+
+    private WebhookRetryer createRetryer() {
+        return new WebhookRetryer(new ArrayList<>(), new ArrayList<>(), 5, 5, webhookError, webhookClient);
+    }
+
+    private CompletableFuture<Boolean> send(WebhookRetryer retryer) {
+        Webhook webhook = Webhook.builder()
+                .name("client")
+                .callbackUrl(baseUri + "/callback")
+                .maxWaitMinutes(1)
+                .build();
+        ActiveTraces.start("WebhookClientTest");
+        try {
+            return retryer.send(webhook, new ContentKey(), new ObjectMapper().createObjectNode());
+        } finally {
+            ActiveTraces.end();
+        }
+    }
+}
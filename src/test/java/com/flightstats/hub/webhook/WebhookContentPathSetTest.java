@@ -3,10 +3,12 @@ package com.flightstats.hub.webhook;
 import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.model.ContentPath;
 import com.flightstats.hub.test.Integration;
+import com.google.common.io.Files;
 import org.apache.curator.framework.CuratorFramework;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -24,7 +26,7 @@ public class WebhookContentPathSetTest {
 
     @Test
     public void testLifecycle() throws Exception {
-        groupSet = new WebhookContentPathSet(curator);
+        groupSet = new WebhookContentPathSet(curator, Files.createTempDir());
         ContentKey first = new ContentKey();
         ContentKey second = new ContentKey();
         ContentKey third = new ContentKey();
@@ -53,7 +55,7 @@ public class WebhookContentPathSetTest {
 
     @Test
     public void testDelete() throws Exception {
-        groupSet = new WebhookContentPathSet(curator);
+        groupSet = new WebhookContentPathSet(curator, Files.createTempDir());
         groupName = "testDelete";
         ContentKey contentKey = new ContentKey();
         addAndCompare(contentKey, 1);
@@ -61,7 +63,55 @@ public class WebhookContentPathSetTest {
         addAndCompare(new ContentKey(), 3);
         groupSet.delete(groupName);
         assertEquals(0, groupSet.getSet(groupName, contentKey).size());
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        File directory = Files.createTempDir();
+        groupSet = new WebhookContentPathSet(curator, directory);
+        groupName = "testRestart";
+        ContentKey first = new ContentKey();
+        ContentKey second = new ContentKey();
+        groupSet.add(groupName, first);
+        groupSet.add(groupName, second);
+        groupSet.remove(groupName, first);
+        groupSet.close();
+
+        WebhookContentPathSet restarted = new WebhookContentPathSet(curator, directory);
+        Set<ContentPath> set = restarted.getSet(groupName, first);
+        assertEquals(1, set.size());
+        assertTrue(set.contains(second));
+        restarted.close();
+    }
 
+    @Test
+    public void testCheckpoint() throws Exception {
+        groupSet = new WebhookContentPathSet(curator, Files.createTempDir());
+        groupName = "testCheckpoint";
+        ContentKey first = new ContentKey();
+        ContentKey second = new ContentKey();
+        groupSet.add(groupName, first);
+        groupSet.add(groupName, second);
+        assertTrue(groupSet.checkpoint(groupName));
+
+        WebhookContentPathSet other = new WebhookContentPathSet(curator, Files.createTempDir());
+        Set<ContentPath> set = other.takeOver(groupName, first);
+        assertEquals(2, set.size());
+        other.remove(groupName, first);
+        other.checkpoint(groupName);
+        assertEquals(1, groupSet.getSet(groupName, first).size());
+        other.close();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testLegacyChildren() throws Exception {
+        groupSet = new WebhookContentPathSet(curator, Files.createTempDir());
+        groupName = "testLegacyChildren";
+        ContentKey legacy = new ContentKey();
+        curator.create().creatingParentsIfNeeded().forPath("/GroupInFlight/" + groupName + "/" + legacy.toZk());
+        assertTrue(groupSet.takeOver(groupName, legacy).contains(legacy));
+        assertTrue(curator.getChildren().forPath("/GroupInFlight/" + groupName).isEmpty());
+        assertTrue(groupSet.getSet(groupName, legacy).contains(legacy));
+        groupSet.delete(groupName);
+    }
+}
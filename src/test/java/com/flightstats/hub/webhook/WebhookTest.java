@@ -2,6 +2,7 @@ package com.flightstats.hub.webhook;
 
 import com.flightstats.hub.model.ContentKey;
 import com.flightstats.hub.model.MinutePath;
+import com.google.common.base.Optional;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -53,6 +54,23 @@ public class WebhookTest {
         assertEquals(webhook, cycled);
     }
 
+    @Test
+    public void testMaxItems() {
+        assertEquals(1, (int) webhook.withDefaults().getMaxItems());
+        Webhook cycled = Webhook.fromJson("{\"callbackUrl\":\"end\",\"channelUrl\":\"url\",\"maxItems\":50}");
+        assertEquals(50, (int) cycled.getMaxItems());
+        assertEquals(50, (int) Webhook.fromJson(cycled.toJson()).getMaxItems());
+        assertEquals(50, (int) Webhook.fromJson("{\"paused\":true}", Optional.of(cycled)).getMaxItems());
+    }
+
+    @Test
+    public void testMaxInlineBytes() {
+        assertEquals(0, (int) webhook.withDefaults().getMaxInlineBytes());
+        Webhook cycled = Webhook.fromJson("{\"callbackUrl\":\"end\",\"channelUrl\":\"url\",\"maxInlineBytes\":4096}");
+        assertEquals(4096, (int) cycled.getMaxInlineBytes());
+        assertEquals(4096, (int) Webhook.fromJson("{\"paused\":true}", Optional.of(cycled)).getMaxInlineBytes());
+    }
+
     @Test
     public void testJsonStartItem() {
         ContentKey key = new ContentKey();
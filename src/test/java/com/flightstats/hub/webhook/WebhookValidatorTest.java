@@ -129,4 +129,40 @@ public class WebhookValidatorTest {
         webhookValidator.validate(webhook);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testMaxItems() throws Exception {
+        webhook = webhook.withDefaults().withName("blah").withMaxItems(100);
+        webhookValidator.validate(webhook);
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void testMaxItemsZero() throws Exception {
+        webhook = webhook.withDefaults().withName("blah").withMaxItems(0);
+        webhookValidator.validate(webhook);
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void testMaxItemsMinute() throws Exception {
+        webhook = webhook.withBatch("MINUTE").withDefaults().withName("blah").withMaxItems(10);
+        webhookValidator.validate(webhook);
+    }
+
+    @Test
+    public void testMaxInlineBytes() throws Exception {
+        webhook = webhook.withDefaults().withName("blah").withMaxInlineBytes(64 * 1024);
+        webhookValidator.validate(webhook);
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void testMaxInlineBytesTooBig() throws Exception {
+        webhook = webhook.withDefaults().withName("blah").withMaxInlineBytes(Integer.MAX_VALUE);
+        webhookValidator.validate(webhook);
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void testMaxInlineBytesMinute() throws Exception {
+        webhook = webhook.withBatch("MINUTE").withDefaults().withName("blah").withMaxInlineBytes(1024);
+        webhookValidator.validate(webhook);
+    }
+
+}